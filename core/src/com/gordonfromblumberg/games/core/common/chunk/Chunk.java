@@ -1,7 +1,7 @@
 package com.gordonfromblumberg.games.core.common.chunk;
 
-import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Pool;
+import com.gordonfromblumberg.games.core.common.utils.IndexedArray;
 import com.gordonfromblumberg.games.core.common.utils.IntVector2;
 
 import java.util.Iterator;
@@ -14,7 +14,7 @@ public class Chunk<T> implements Iterable<ChunkItem<T>> {
         }
     };
 
-    final Array<ChunkItem<T>> objects = new Array<>();
+    final IndexedArray<ChunkItem<T>> objects = new IndexedArray<>();
     final IntVector2 bottomLeft = new IntVector2();
     final IntVector2 bottomRight = new IntVector2();
     final IntVector2 topLeft = new IntVector2();
@@ -34,18 +34,15 @@ public class Chunk<T> implements Iterable<ChunkItem<T>> {
         topRight.set(right, top);
     }
 
-    void addObject(T object, int x, int y) {
-        objects.add(chunkItemPool.obtain().set(x, y, object));
+    ChunkItem<T> addObject(T object, int x, int y) {
+        ChunkItem<T> item = chunkItemPool.obtain().set(x, y, object, this);
+        objects.add(item);
+        return item;
     }
 
-    // O(n) of objects inside chunk
-    void removeObject(T object) {
-        Iterator<ChunkItem<T>> it = objects.iterator();
-        while (it.hasNext()) {
-            if (it.next().object == object) {
-                it.remove();
-                break;
-            }
+    void removeObject(ChunkItem<T> item) {
+        if (objects.remove(item)) {
+            chunkItemPool.free(item);
         }
     }
 
@@ -1,23 +1,39 @@
 package com.gordonfromblumberg.games.core.common.chunk;
 
 import com.badlogic.gdx.utils.Pool;
+import com.gordonfromblumberg.games.core.common.utils.IndexedArray;
 
-public class ChunkItem<T> implements Pool.Poolable {
+public class ChunkItem<T> implements Pool.Poolable, IndexedArray.Indexed {
     int x;
     int y;
     T object;
+    Chunk<T> chunk;
+    private int index = -1;
 
-    ChunkItem<T> set(int x, int y, T object) {
+    ChunkItem<T> set(int x, int y, T object, Chunk<T> chunk) {
         this.x = x;
         this.y = y;
         this.object = object;
+        this.chunk = chunk;
         return this;
     }
 
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
     @Override
     public void reset() {
         x = 0;
         y = 0;
         object = null;
+        chunk = null;
+        index = -1;
     }
 }
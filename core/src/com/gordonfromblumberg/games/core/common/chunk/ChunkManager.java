@@ -1,8 +1,17 @@
 package com.gordonfromblumberg.games.core.common.chunk;
 
 import com.badlogic.gdx.utils.Array;
+import com.gordonfromblumberg.games.core.common.utils.IndexedArray;
 import com.gordonfromblumberg.games.core.common.utils.IntVector2;
 
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Keeps objects in square chunks of the grid, so area queries check only objects of intersected chunks.
+ * The grid is wrapped horizontally: x coordinates of queries may be outside of the grid.
+ * Queries pass found objects to a consumer without copying, the consumer must not add or remove objects.
+ */
 public class ChunkManager<T> {
     private final Chunk<T>[][] chunks;
     private final int chunkSize;
@@ -12,6 +21,7 @@ public class ChunkManager<T> {
     private final int chunkGridHeight;
 
     private final Array<T> objects = new Array<>();
+    private final Consumer<T> collector = objects::add;
 
     public ChunkManager(int gridWidth, int gridHeight, int chunkSize) {
         this.gridWidth = gridWidth;
@@ -28,17 +38,36 @@ public class ChunkManager<T> {
         }
     }
 
-    public void addObject(T object, int x, int y) {
-        chunks[x / chunkSize][y / chunkSize].addObject(object, x, y);
+    /**
+     * @return Item of the object, it should be passed to {@link #removeObject(ChunkItem)}
+     */
+    public ChunkItem<T> addObject(T object, int x, int y) {
+        return chunks[x / chunkSize][y / chunkSize].addObject(object, x, y);
     }
 
-    public void removeObject(T object, int x, int y) {
-        chunks[x / chunkSize][y / chunkSize].removeObject(object);
+    /**
+     * Removes the item in O(1), the item is returned to the pool and should not be used after that
+     */
+    public void removeObject(ChunkItem<T> item) {
+        item.chunk.removeObject(item);
     }
 
+    /**
+     * Same as {@link #forEachUnderLine(int, int, int, int, Consumer)}, but collects the objects.
+     * @return Shared array, it is cleared by the next call
+     */
     public Array<T> findObjectsUnderLine(int x1, int y1, int x2, int y2) {
         final Array<T> result = this.objects;
         result.clear();
+        forEachUnderLine(x1, y1, x2, y2, collector);
+        return result;
+    }
+
+    /**
+     * Passes objects which are not above the line from (x1, y1) to (x2, y2) and between its ends to the consumer.
+     * If x2 is less than x1 the line is wrapped through the right edge of the grid
+     */
+    public void forEachUnderLine(int x1, int y1, int x2, int y2, Consumer<? super T> consumer) {
         while (x1 < 0 || x1 >= gridWidth) {
             x1 = (x1 + gridWidth) % gridWidth;
         }
@@ -67,17 +96,189 @@ public class ChunkManager<T> {
                 Chunk<T> chunk = chunkColumn[chunkY];
                 IntVector2 chunkCorner = k > 0 ? chunk.bottomRight : chunk.bottomLeft;
                 if (y1 + k * (chunkCorner.x - x1) >= chunkCorner.y) {
-                    for (ChunkItem<T> item : chunk) {
+                    final IndexedArray<ChunkItem<T>> objects = chunk.objects;
+                    for (int j = 0, n = objects.size; j < n; ++j) {
+                        ChunkItem<T> item = objects.get(j);
                         if ((x1 <= x2 && item.x >= x1 && item.x <= x2
                                 || x1 > x2 && (item.x >= x1 || item.x <= x2))
                                 && y1 + k * (item.x - x1) >= item.y) {
-                            result.add(item.object);
+                            consumer.accept(item.object);
                         }
                     }
                 }
             }
         }
+    }
 
-        return result;
+    /**
+     * Passes objects inside the rectangle or on its border to the consumer.
+     * The rectangle should be narrower than the grid
+     */
+    public void forEachInRect(int x, int y, int width, int height, Consumer<? super T> consumer) {
+        forEachInBox(x, y, x + width - 1, y + height - 1, false, 0, 0, 0, 0, 0, 0, consumer);
+    }
+
+    /**
+     * Passes objects inside the triangle or on its border to the consumer.
+     * The triangle should be narrower than the grid
+     */
+    public void forEachInTriangle(int ax, int ay, int bx, int by, int cx, int cy, Consumer<? super T> consumer) {
+        forEachInBox(Math.min(ax, Math.min(bx, cx)), Math.min(ay, Math.min(by, cy)),
+                Math.max(ax, Math.max(bx, cx)), Math.max(ay, Math.max(by, cy)),
+                true, ax, ay, bx, by, cx, cy, consumer);
+    }
+
+    /**
+     * @return New cursor, it may be reused for any number of queries
+     */
+    public Cursor newCursor() {
+        return new Cursor();
+    }
+
+    // boxes are passed by coordinates instead of shape objects, so queries do not allocate and may run concurrently
+    private void forEachInBox(int minX, int minY, int maxX, int maxY, boolean triangle,
+                              int ax, int ay, int bx, int by, int cx, int cy, Consumer<? super T> consumer) {
+        if (minY < 0) minY = 0;
+        if (maxY >= gridHeight) maxY = gridHeight - 1;
+        if (minY > maxY || minX > maxX) {
+            return;
+        }
+        if (maxX - minX >= gridWidth) {
+            throw new IllegalArgumentException("Query area should be narrower than the grid: " + minX + " - " + maxX);
+        }
+
+        final int gridWidth = this.gridWidth;
+        final int chunkSize = this.chunkSize;
+        final int start = Math.floorMod(minX, gridWidth);
+        final int end = start + maxX - minX;
+        final int startChunk = start / chunkSize;
+        // the area may be wrapped through the right edge of the grid, then it is split into two ranges of chunks
+        final int firstEndChunk = Math.min(end, gridWidth - 1) / chunkSize;
+        final int secondEndChunk = end >= gridWidth ? Math.min((end - gridWidth) / chunkSize, startChunk - 1) : -1;
+        final int minChunkY = minY / chunkSize;
+        final int maxChunkY = maxY / chunkSize;
+        for (int chunkX = 0; chunkX <= secondEndChunk; ++chunkX) {
+            visitColumn(chunkX, minChunkY, maxChunkY, minX, minY, maxX, maxY, triangle, ax, ay, bx, by, cx, cy, consumer);
+        }
+        for (int chunkX = startChunk; chunkX <= firstEndChunk; ++chunkX) {
+            visitColumn(chunkX, minChunkY, maxChunkY, minX, minY, maxX, maxY, triangle, ax, ay, bx, by, cx, cy, consumer);
+        }
+    }
+
+    private void visitColumn(int chunkX, int minChunkY, int maxChunkY, int minX, int minY, int maxX, int maxY,
+                             boolean triangle, int ax, int ay, int bx, int by, int cx, int cy,
+                             Consumer<? super T> consumer) {
+        final Chunk<T>[] chunkColumn = chunks[chunkX];
+        for (int chunkY = minChunkY; chunkY <= maxChunkY; ++chunkY) {
+            final IndexedArray<ChunkItem<T>> objects = chunkColumn[chunkY].objects;
+            for (int j = 0, n = objects.size; j < n; ++j) {
+                ChunkItem<T> item = objects.get(j);
+                int x = unwrap(item.x, minX);
+                int y = item.y;
+                if (x <= maxX && y >= minY && y <= maxY
+                        && (!triangle || isInTriangle(x, y, ax, ay, bx, by, cx, cy))) {
+                    consumer.accept(item.object);
+                }
+            }
+        }
+    }
+
+    // x of the grid moved to the range [minX, minX + gridWidth)
+    private int unwrap(int x, int minX) {
+        return minX + Math.floorMod(x - minX, gridWidth);
+    }
+
+    static boolean isInTriangle(int x, int y, int ax, int ay, int bx, int by, int cx, int cy) {
+        long d1 = (long) (bx - ax) * (y - ay) - (long) (by - ay) * (x - ax);
+        long d2 = (long) (cx - bx) * (y - by) - (long) (cy - by) * (x - bx);
+        long d3 = (long) (ax - cx) * (y - cy) - (long) (ay - cy) * (x - cx);
+        boolean negative = d1 < 0 || d2 < 0 || d3 < 0;
+        boolean positive = d1 > 0 || d2 > 0 || d3 > 0;
+        return !(negative && positive);
+    }
+
+    /**
+     * Iterates over objects inside a rectangle by indices of chunks and items, so it does not allocate.
+     * Objects must not be added or removed during iteration
+     */
+    public class Cursor {
+        private int minX, minY, maxX, maxY;
+        private int minChunkY, maxChunkY;
+        // chunk columns to visit
+        private final int[] chunkColumns = new int[chunkGridWidth];
+        private int columnCount;
+        private int column, chunkY, itemIndex;
+        private ChunkItem<T> next;
+
+        private Cursor() {
+        }
+
+        /**
+         * Starts iteration over the rectangle, see {@link #forEachInRect(int, int, int, int, Consumer)}
+         */
+        public Cursor reset(int x, int y, int width, int height) {
+            minX = x;
+            maxX = x + width - 1;
+            minY = Math.max(y, 0);
+            maxY = Math.min(y + height - 1, gridHeight - 1);
+            if (maxX - minX >= gridWidth) {
+                throw new IllegalArgumentException("Query area should be narrower than the grid: " + minX + " - " + maxX);
+            }
+            columnCount = 0;
+            if (minY <= maxY && minX <= maxX) {
+                final int start = Math.floorMod(minX, gridWidth);
+                final int end = start + maxX - minX;
+                final int startChunk = start / chunkSize;
+                final int firstEndChunk = Math.min(end, gridWidth - 1) / chunkSize;
+                final int secondEndChunk = end >= gridWidth
+                        ? Math.min((end - gridWidth) / chunkSize, startChunk - 1) : -1;
+                for (int chunkX = 0; chunkX <= secondEndChunk; ++chunkX) {
+                    chunkColumns[columnCount++] = chunkX;
+                }
+                for (int chunkX = startChunk; chunkX <= firstEndChunk; ++chunkX) {
+                    chunkColumns[columnCount++] = chunkX;
+                }
+            }
+            minChunkY = minY / chunkSize;
+            maxChunkY = maxY / chunkSize;
+            column = 0;
+            chunkY = minChunkY;
+            itemIndex = 0;
+            next = null;
+            advance();
+            return this;
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T object = next.object;
+            advance();
+            return object;
+        }
+
+        private void advance() {
+            next = null;
+            while (column < columnCount) {
+                final IndexedArray<ChunkItem<T>> objects = chunks[chunkColumns[column]][chunkY].objects;
+                while (itemIndex < objects.size) {
+                    ChunkItem<T> item = objects.get(itemIndex++);
+                    if (unwrap(item.x, minX) <= maxX && item.y >= minY && item.y <= maxY) {
+                        next = item;
+                        return;
+                    }
+                }
+                itemIndex = 0;
+                if (++chunkY > maxChunkY) {
+                    chunkY = minChunkY;
+                    ++column;
+                }
+            }
+        }
     }
 }
@@ -13,6 +13,8 @@ public class LogManager {
     static AtomicQueue<LogEntry> queue;
     static final Array<LogAppender> appenders = new Array<>(false, 4);
     static Thread logThread;
+    static LogLevel minLevel = LogLevel.TRACE;
+    static final Object queueLock = new Object();
 
     private static final Logger log = create(LogManager.class);
     private static final StringBuilder stringBuilder = new StringBuilder();
@@ -64,6 +66,13 @@ public class LogManager {
         return new Logger(clazz);
     }
 
+    /**
+     * Messages with level less than passed one will be skipped before they get to the queue
+     */
+    public static void setLevel(LogLevel level) {
+        minLevel = level;
+    }
+
     public static void addAppender(LogAppender appender) {
         appenders.add(appender);
     }
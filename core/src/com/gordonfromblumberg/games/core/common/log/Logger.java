@@ -34,15 +34,23 @@ public class Logger {
     }
 
     void log(String message, LogLevel level) {
-        LogEntry logEntry = LogEntry.getInstance();
-        logEntry.level = level;
-        logEntry.timestamp = System.currentTimeMillis();
-        logEntry.frameId = Gdx.graphics.getFrameId();
-        logEntry.clazz = this.clazz;
-        logEntry.message = message;
-        if (!LogManager.queue.put(logEntry)) {
-            System.err.println("Log queue is full");
-            logEntry.release();
+        if (level.ordinal() < LogManager.minLevel.ordinal()) {
+            return;
+        }
+
+        // entry pool and queue allow only one producer thread
+        synchronized (LogManager.queueLock) {
+            LogEntry logEntry = LogEntry.getInstance();
+            logEntry.level = level;
+            logEntry.timestamp = System.currentTimeMillis();
+            // there is no graphics in headless mode
+            logEntry.frameId = Gdx.graphics != null ? Gdx.graphics.getFrameId() : 0;
+            logEntry.clazz = this.clazz;
+            logEntry.message = message;
+            if (!LogManager.queue.put(logEntry)) {
+                System.err.println("Log queue is full");
+                logEntry.release();
+            }
         }
     }
 }
@@ -21,6 +21,8 @@ public class GameScreen extends AbstractScreen {
 
     private GameWorld gameWorld;
     private GameWorldRenderer renderer;
+    // the loaded world is initialized already
+    private final boolean loaded;
 
     private final Vector3 viewCoords3 = new Vector3();
     private final Vector3 worldCoords3 = new Vector3();
@@ -29,6 +31,14 @@ public class GameScreen extends AbstractScreen {
         super(batch);
         log.info("GameScreen constructor");
         gameWorld = new GameWorld(worldParams);
+        loaded = false;
+    }
+
+    protected GameScreen(SpriteBatch batch, GameWorld gameWorld) {
+        super(batch);
+        log.info("GameScreen constructor for loaded world");
+        this.gameWorld = gameWorld;
+        loaded = true;
     }
 
     @Override
@@ -36,8 +46,13 @@ public class GameScreen extends AbstractScreen {
         super.initialize();
 
         log.info("GameScreen init");
-        gameWorld.initialize();
+        if (!loaded) {
+            gameWorld.initialize();
+        }
         renderer.initialize();
+        if (AbstractFactory.getInstance().configManager().getBoolean("world.simulationThread")) {
+            gameWorld.startSimulationThread();
+        }
 
         uiRenderer.addListener(new ClickListener(Input.Buttons.LEFT) {
             @Override
@@ -117,6 +132,10 @@ public class GameScreen extends AbstractScreen {
                     gameWorld.pause();
                     return true;
                 }
+                if (keycode == Input.Keys.T) {
+                    gameWorld.setTurbo(!gameWorld.isTurbo());
+                    return true;
+                }
                 return false;
             }
         });
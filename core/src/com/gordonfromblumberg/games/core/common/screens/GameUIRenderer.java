@@ -9,6 +9,7 @@ import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.InputListener;
 import com.badlogic.gdx.scenes.scene2d.ui.*;
+import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
 import com.badlogic.gdx.utils.SnapshotArray;
 import com.gordonfromblumberg.games.core.common.Main;
 import com.gordonfromblumberg.games.core.common.event.Event;
@@ -19,13 +20,12 @@ import com.gordonfromblumberg.games.core.common.log.Logger;
 import com.gordonfromblumberg.games.core.common.ui.*;
 import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
 import com.gordonfromblumberg.games.core.common.utils.CoordsConverter;
+import com.gordonfromblumberg.games.core.common.world.CellProbe;
 import com.gordonfromblumberg.games.core.common.world.GameWorld;
 import com.gordonfromblumberg.games.core.evotree.event.SelectTreeEvent;
 import com.gordonfromblumberg.games.core.evotree.model.*;
-import com.gordonfromblumberg.games.core.evotree.model.Cell;
 import com.gordonfromblumberg.games.core.evotree.model.Tree;
 
-import java.nio.ByteBuffer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -45,7 +45,6 @@ public class GameUIRenderer extends UIRenderer {
     private final CoordsConverter toGameWorld;
     private Label screenCoord, viewCoord, worldCoord;
     private final Consumer<WorldCameraParams> worldCameraParamsGetter;
-    private Cell cell;
     private SaveLoadWindow saveWindow, loadWindow;
 
     public GameUIRenderer(SpriteBatch batch, GameWorld world,
@@ -105,12 +104,7 @@ public class GameUIRenderer extends UIRenderer {
             @Override
             public boolean keyDown(InputEvent event, int keycode) {
                 if (keycode == Input.Keys.F5 && (loadWindow == null || !loadWindow.isVisible())) {
-                    Consumer<ByteBuffer> saveHandler = bb -> {
-                        bb.put((byte) 1);
-                        bb.putChar('H');
-                        bb.putChar('i');
-                        bb.putLong(System.currentTimeMillis());
-                    };
+                    SaveLoadWindow.FileHandler saveHandler = world::save;
                     if (saveWindow == null) {
                         saveWindow = createSaveLoadWindow(false, uiSkin);
                         saveWindow.open(saveHandler);
@@ -119,10 +113,14 @@ public class GameUIRenderer extends UIRenderer {
                     }
                     return true;
                 } else if (keycode == Input.Keys.F6 && (saveWindow == null || !saveWindow.isVisible())) {
-                    Consumer<ByteBuffer> loadHandler = bb -> {
-                        while (bb.hasRemaining()) {
-                            log.debug(String.valueOf(bb.get()));
-                        }
+                    SaveLoadWindow.FileHandler loadHandler = channel -> {
+                        GameWorld loaded = GameWorld.load(channel);
+                        // the screen is replaced after the event, its stage is disposed with it
+                        Gdx.app.postRunnable(() -> {
+                            AbstractScreen current = Main.getInstance().getCurrentScreen();
+                            Main.getInstance().setScreen(new GameScreen(batch, loaded));
+                            current.dispose();
+                        });
                     };
                     if (loadWindow == null) {
                         loadWindow = createSaveLoadWindow(true, uiSkin);
@@ -165,88 +163,106 @@ public class GameUIRenderer extends UIRenderer {
         Table table = UIUtils.createTable();
         table.add(new Label("Turn", uiSkin))
                 .padRight(pad).right();
-        table.add(new UpdatableLabel(uiSkin, () -> world.getTurn()))
+        table.add(new UpdatableLabel(uiSkin, () -> world.getSnapshot().getTurn()))
                 .minWidth(80);
 
+        table.row();
+        table.add(new Label("Turns/sec", uiSkin))
+                .padRight(pad).right();
+        table.add(new UpdatableLabel(uiSkin, () -> world.getActualTurnsPerSecond()))
+                .left();
+
         table.row();
         table.add(new Label("Light", uiSkin))
                 .padRight(pad).right();
-        table.add(new UpdatableLabel(uiSkin, () -> world.getSunLight()))
+        table.add(new UpdatableLabel(uiSkin, () -> world.getSnapshot().getSunLight()))
                 .left();
 
         table.row();
         table.add(new Label("Seeds", uiSkin))
                 .padRight(pad).right();
-        table.add(new UpdatableLabel(uiSkin, () -> world.getSeedCount() + " of " + world.getMaxSeeds()))
+        table.add(new UpdatableLabel(uiSkin, () -> world.getSnapshot().getSeedCount() + " of " + world.getSnapshot().getMaxSeeds()))
                 .left();
 
         table.row();
         table.add(new Label("Trees", uiSkin))
                 .padRight(pad).right();
-        table.add(new UpdatableLabel(uiSkin, () -> world.getTreeCount() + " of " + world.getMaxTrees()))
+        table.add(new UpdatableLabel(uiSkin, () -> world.getSnapshot().getTreeCount() + " of " + world.getSnapshot().getMaxTrees()))
                 .left();
 
         table.row();
         table.add(new Label("Generation", uiSkin))
                 .padRight(pad).right();
-        table.add(new UpdatableLabel(uiSkin, () -> world.getMaxGeneration()))
+        table.add(new UpdatableLabel(uiSkin, () -> world.getSnapshot().getMaxGeneration()))
                 .left();
 
         return table;
     }
 
+    // the hovered cell is read from the snapshot, its objects are changed and released by the simulation
     Table createCellDebugTable(Skin uiSkin) {
         float pad = 10f;
         Table table = UIUtils.createTable();
         table.add(new Label("Cell", uiSkin))
                 .padRight(pad).right();
-        table.add(new UpdatableLabel(uiSkin, () -> cell != null ? cell.getX() + ", " + cell.getY() : "No cell"))
+        table.add(new UpdatableLabel(uiSkin, () -> {
+                    CellProbe probe = probe();
+                    return probe != null ? probe.getX() + ", " + probe.getY() : "No cell";
+                }))
                 .left();
 
         table.row();
         table.add(new Label("Light", uiSkin))
                 .padRight(pad).right();
-        table.add(new UpdatableLabel(uiSkin, () -> cell != null ? cell.getSunLight() + " / " + cell.isUnderSun() : "No cell"))
+        table.add(new UpdatableLabel(uiSkin, () -> {
+                    CellProbe probe = probe();
+                    return probe != null ? probe.getSunLight() + " / " + probe.isUnderSun() : "No cell";
+                }))
                 .left();
 
         table.row();
         table.add(new Label("Absorption", uiSkin))
                 .padRight(pad).right();
-        table.add(new UpdatableLabel(uiSkin, () -> cell != null && cell.getObject() != null
-                ? cell.getObject().getLightAbsorption() : "No tree part")
-        )
+        table.add(new UpdatableLabel(uiSkin, () -> {
+                    CellProbe probe = probe();
+                    return probe != null && probe.hasObject() ? probe.getAbsorption() : "No tree part";
+                }))
                 .left();
 
         table.row();
         table.add(new Label("Energy", uiSkin))
                 .padRight(pad).right();
-        table.add(new UpdatableLabel(uiSkin, () -> cell != null && cell.getObject() instanceof TreePart
-                ? ((TreePart) cell.getObject()).calcEnergy(world.getGrid()) : "No tree part")
-        )
+        table.add(new UpdatableLabel(uiSkin, () -> {
+                    CellProbe probe = treeProbe();
+                    return probe != null ? probe.getPartEnergy() : "No tree part";
+                }))
                 .left();
 
         table.row();
         table.add(new Label("Life time (rest)", uiSkin))
                 .padRight(pad).right();
-        final Function<Tree, String> lifeTime = tree -> tree.getLifetime() + " (" + tree.getRestLifeTime() + ")";
-        table.add(new UpdatableLabel(uiSkin, () -> cell != null && cell.getObject() instanceof TreePart
-                        ? lifeTime.apply(((TreePart) cell.getObject()).getTree()) : "No tree part")
-                )
+        final Function<CellProbe, String> lifeTime = probe -> probe.getLifetime() + " (" + probe.getRestLifetime() + ")";
+        table.add(new UpdatableLabel(uiSkin, () -> {
+                    CellProbe probe = treeProbe();
+                    return probe != null ? lifeTime.apply(probe) : "No tree part";
+                }))
                 .left();
 
         table.row();
         table.add(new Label("Tree", uiSkin))
                 .padRight(pad).right();
         table.add(new UpdatableLabel(uiSkin, () -> {
-                    CellObject cellObject = cell != null ? cell.getObject() : null;
-                    if (cellObject instanceof Seed) {
-                        return "Seed #" + ((Seed) cellObject).getId();
+                    CellProbe probe = probe();
+                    if (probe == null || !probe.hasObject()) {
+                        return "No tree";
+                    }
+                    if (probe.isSeed()) {
+                        return "Seed #" + probe.getSeedId();
                     }
-                    if (cellObject instanceof TreePart) {
-                        TreePart treePart = (TreePart) cellObject;
-                        return "#" + treePart.getTree().getId() + ", " + treePart.getType();
+                    if (TreePart.class.isAssignableFrom(probe.getObjectClass())) {
+                        return probe.hasTree() ? "#" + probe.getTreeId() + ", " + probe.getPartType() : "No tree";
                     }
-                    return cellObject != null ? cellObject.getClass().getSimpleName() : "No tree";
+                    return probe.getObjectClass().getSimpleName();
                 }))
                 .minWidth(160);
 
@@ -254,11 +270,8 @@ public class GameUIRenderer extends UIRenderer {
         table.add(new Label("Tree energy", uiSkin))
                 .padRight(pad).right();
         table.add(new UpdatableLabel(uiSkin, () -> {
-            CellObject treePart = cell != null ? cell.getObject() : null;
-            if (treePart instanceof TreePart) {
-                return  ((TreePart) treePart).getTree().getEnergy();
-            }
-            return "No tree";
+            CellProbe probe = treeProbe();
+            return probe != null ? probe.getTreeEnergy() : "No tree";
         }))
                 .left();
 
@@ -266,17 +279,24 @@ public class GameUIRenderer extends UIRenderer {
         table.add(new Label("Tree size", uiSkin))
                 .padRight(pad).right();
         table.add(new UpdatableLabel(uiSkin, () -> {
-                    CellObject treePart = cell != null ? cell.getObject() : null;
-                    if (treePart instanceof TreePart) {
-                        return  ((TreePart) treePart).getTree().getSize();
-                    }
-                    return "No tree";
+                    CellProbe probe = treeProbe();
+                    return probe != null ? probe.getTreeSize() : "No tree";
                 }))
                 .left();
 
         return table;
     }
 
+    private CellProbe probe() {
+        CellProbe probe = world.getSnapshot().getProbe();
+        return probe.hasCell() ? probe : null;
+    }
+
+    private CellProbe treeProbe() {
+        CellProbe probe = probe();
+        return probe != null && probe.hasTree() ? probe : null;
+    }
+
     Table createControlTable(Skin uiSkin, int initialValue) {
         float pad = 10f;
         Table table = UIUtils.createTable();
@@ -285,19 +305,42 @@ public class GameUIRenderer extends UIRenderer {
 
         IntChangeableLabel speedControl = new IntChangeableLabel(uiSkin, world::setTurnsPerSecond);
         speedControl.setMinValue(4);
-        speedControl.setMaxValue(64);
-        speedControl.setFieldWidth(30);
+        speedControl.setMaxValue(1024);
+        speedControl.setFieldWidth(40);
         speedControl.geometric();
         speedControl.setStep(2);
         speedControl.setValue(initialValue);
         table.add(speedControl)
                 .left();
+
+        table.row();
+        table.add(new Label("Turbo (T)", uiSkin))
+                .padRight(pad).right();
+        final CheckBox turboCheckBox = new CheckBox(null, uiSkin) {
+            @Override
+            public void act(float delta) {
+                super.act(delta);
+                if (isChecked() != world.isTurbo()) {
+                    setProgrammaticChangeEvents(false);
+                    setChecked(world.isTurbo());
+                    setProgrammaticChangeEvents(true);
+                }
+            }
+        };
+        turboCheckBox.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                world.setTurbo(turboCheckBox.isChecked());
+            }
+        });
+        table.add(turboCheckBox)
+                .left();
         return table;
     }
 
     WidgetGroup createDnaDesc(Skin uiSkin) {
         VerticalGroup group = new VerticalGroup();
-        for (int i = 0, n = DNA.GENES_COUNT; i < n; ++i) {
+        for (int i = 0, n = world.getContext().getGenesCount(); i < n; ++i) {
             group.addActor(new Label("", uiSkin));
         }
 
@@ -313,27 +356,26 @@ public class GameUIRenderer extends UIRenderer {
                     DNA dna = tree.getDna();
                     SnapshotArray<Actor> labels = group.getChildren();
                     Actor[] labelArr = labels.begin();
-                    for (int i = 0, n = DNA.GENES_COUNT; i < n; ++i) {
-                        Gene gene = dna.getGene(i);
+                    for (int i = 0, n = dna.getGenesCount(); i < n; ++i) {
                         sb.delete(0, sb.length());
-                        sb.append("     ").append(padLeft(gene.getValue(Direction.up), 2))
+                        sb.append("     ").append(padLeft(dna.getValue(i, Direction.up), 2))
                                 .append("    ")
-                                .append(padLeft(gene.getValue(Gene.LIGHT_ABSORPTION), 2))
+                                .append(padLeft(dna.getValue(i, Gene.LIGHT_ABSORPTION), 2))
                                 .append('\n')
 
                                 .append(padLeft(i, 2)).append(" ")
-                                .append(padLeft(gene.getValue(Direction.left), 2)).append("  ")
-                                .append(padLeft(gene.getValue(Direction.right), 2))
+                                .append(padLeft(dna.getValue(i, Direction.left), 2)).append("  ")
+                                .append(padLeft(dna.getValue(i, Direction.right), 2))
                                 .append("  ")
-                                .append(padLeft(gene.getValue(Gene.CONDITION1), 2)).append(" ")
-                                .append(padLeft(gene.getValue(Gene.PARAMETER1), 2)).append(" ")
+                                .append(padLeft(dna.getValue(i, Gene.CONDITION1), 2)).append(" ")
+                                .append(padLeft(dna.getValue(i, Gene.PARAMETER1), 2)).append(" ")
 //                                .append(padLeft(gene.getValue(Gene.MOVE_TO), 2))
                                 .append('\n')
 
-                                .append("     ").append(padLeft(gene.getValue(Direction.down), 2))
+                                .append("     ").append(padLeft(dna.getValue(i, Direction.down), 2))
                                 .append("    ")
-                                .append(padLeft(gene.getValue(Gene.CONDITION2), 2)).append(" ")
-                                .append(padLeft(gene.getValue(Gene.PARAMETER2), 2));
+                                .append(padLeft(dna.getValue(i, Gene.CONDITION2), 2)).append(" ")
+                                .append(padLeft(dna.getValue(i, Gene.PARAMETER2), 2));
 
                         ((Label) labelArr[i]).setText(sb.toString());
                     }
@@ -365,7 +407,7 @@ public class GameUIRenderer extends UIRenderer {
     @Override
     public void render(float dt) {
         toGameView.convert(Gdx.input.getX(), Gdx.input.getY(), GAME_VIEW_COORDS);
-        cell = world.findCell((int) GAME_VIEW_COORDS.x, (int) GAME_VIEW_COORDS.y);
+        world.probe(GAME_VIEW_COORDS.x, GAME_VIEW_COORDS.y);
         worldCameraParamsGetter.accept(WORLD_CAMERA_PARAMS);
 
         super.render(dt);
@@ -19,11 +19,14 @@ import com.gordonfromblumberg.games.core.common.ui.IntChangeableLabel;
 import com.gordonfromblumberg.games.core.common.ui.SaveLoadWindow;
 import com.gordonfromblumberg.games.core.common.ui.UIUtils;
 import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
 import com.gordonfromblumberg.games.core.common.world.GameWorldParams;
 import com.gordonfromblumberg.games.core.evotree.model.ChangeLightByTime;
 import com.gordonfromblumberg.games.core.evotree.model.ChangeLightByX;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.function.Consumer;
 
 public class MainMenuScreen extends AbstractScreen {
@@ -31,6 +34,7 @@ public class MainMenuScreen extends AbstractScreen {
     private static final String LAST_USED_CONFIG_KEY = "last-used-config";
     private static final String DEFAULT_CONFIG_SAVE_DIR = "saves/config";
     private static final String CONFIG_SAVE_EXTENSION = "conf.dat";
+    private static final int CONFIG_SAVE_SIZE = 1000;
 
     TextButton textButton;
     final GameWorldParams worldParams = new GameWorldParams();
@@ -71,6 +75,7 @@ public class MainMenuScreen extends AbstractScreen {
                 worldParams.save(prefs);
                 prefs.putBoolean("exists", true);
                 prefs.flush();
+                worldParams.setSeed(RandomGen.INSTANCE.nextLong());
                 Main.getInstance().setScreen(new GameScreen(batch, worldParams));
             }
         });
@@ -288,10 +293,22 @@ public class MainMenuScreen extends AbstractScreen {
         window.setWidth(config.getFloat("ui.saveload.width"));
         window.setHeight(config.getFloat("ui.saveload.height"));
 
-        window.open(load ? this::loadAndUpdateView : worldParams::save);
+        window.open(load ? this::loadAndUpdateView : this::saveParams);
     }
 
-    private void loadAndUpdateView(ByteBuffer bb) {
+    private void saveParams(FileChannel channel) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(CONFIG_SAVE_SIZE);
+        worldParams.save(bb);
+        bb.flip();
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+    }
+
+    private void loadAndUpdateView(FileChannel channel) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(CONFIG_SAVE_SIZE);
+        channel.read(bb);
+        bb.flip();
         worldParams.load(bb);
         for (Consumer<GameWorldParams> updater : updateListeners) {
             updater.accept(worldParams);
@@ -17,10 +17,9 @@ import com.gordonfromblumberg.games.core.common.utils.DateTimeFormatter;
 import com.gordonfromblumberg.games.core.common.utils.FileUtils;
 
 import java.io.*;
-import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.function.Consumer;
 
 public class SaveLoadWindow extends DialogExt {
     private enum Type {
@@ -39,7 +38,6 @@ public class SaveLoadWindow extends DialogExt {
     };
 
     private final DateTimeFormatter dateTimeFormatter = new DateTimeFormatter(false);
-    private final ByteBuffer byteBuffer = ByteBuffer.allocateDirect(1000);
 
     private final FileList fileList = new FileList();
     private File saveDir;
@@ -51,7 +49,7 @@ public class SaveLoadWindow extends DialogExt {
     private final TextFieldDialogFactory fileNameEditorFactory;
     private final ConfirmationDialogFactory confirmationFactory;
 
-    private Consumer<ByteBuffer> handler;
+    private FileHandler handler;
 
     public SaveLoadWindow(Stage stage, Skin skin, String path, String extension, boolean load) {
         super(stage, load ? "Load" : "Save", skin);
@@ -113,7 +111,7 @@ public class SaveLoadWindow extends DialogExt {
         });
     }
 
-    public void open(Consumer<ByteBuffer> handler) {
+    public void open(FileHandler handler) {
         this.handler = handler;
         File[] files = saveDir.listFiles(extensionFilter);
         if (files != null) {
@@ -137,7 +135,7 @@ public class SaveLoadWindow extends DialogExt {
         fileList.unselect();
     }
 
-    public void toggle(Consumer<ByteBuffer> handler) {
+    public void toggle(FileHandler handler) {
         if (isVisible())
             hide();
         else
@@ -182,11 +180,8 @@ public class SaveLoadWindow extends DialogExt {
     }
 
     private void saveToFile(File file) {
-        byteBuffer.clear();
-        handler.accept(byteBuffer);
         try (FileOutputStream os = new FileOutputStream(file)) {
-            byteBuffer.flip();
-            os.getChannel().write(byteBuffer);
+            handler.handle(os.getChannel());
         } catch (IOException e) {
             throw new RuntimeException("Could not write to file " + file.getPath(), e);
         }
@@ -194,11 +189,8 @@ public class SaveLoadWindow extends DialogExt {
 
     private void load() {
         if (fileList.selected != null) {
-            byteBuffer.clear();
             try (FileInputStream is = new FileInputStream(fileList.selected.file)) {
-                is.getChannel().read(byteBuffer);
-                byteBuffer.flip();
-                handler.accept(byteBuffer);
+                handler.handle(is.getChannel());
             } catch (IOException e) {
                 throw new RuntimeException("Could not read file " + fileList.selected.file.getPath(), e);
             }
@@ -299,6 +291,14 @@ public class SaveLoadWindow extends DialogExt {
         }
     }
 
+    /**
+     * Writes data to the chosen file or reads it, the channel is closed by the window
+     */
+    @FunctionalInterface
+    public interface FileHandler {
+        void handle(FileChannel channel) throws IOException;
+    }
+
     private FilenameFilter createFileFilter(String extension) {
         String dotExtension = '.' + extension;
         return (dir, name) -> name.endsWith(dotExtension);
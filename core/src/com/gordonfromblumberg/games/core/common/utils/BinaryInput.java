@@ -0,0 +1,130 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads primitives written by {@link BinaryOutput} from a channel through a buffer of fixed size
+ */
+public class BinaryInput {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    public BinaryInput(ReadableByteChannel channel) {
+        this(channel, BinaryOutput.DEFAULT_BUFFER_SIZE);
+    }
+
+    public BinaryInput(ReadableByteChannel channel, int bufferSize) {
+        if (bufferSize < BinaryOutput.MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Buffer size should be at least " + BinaryOutput.MIN_BUFFER_SIZE);
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        buffer.flip();
+    }
+
+    // reads from the channel until the buffer has the number of bytes
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                throw new EOFException("Unexpected end of data");
+            }
+        }
+        buffer.flip();
+    }
+
+    public byte readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public int readInt() throws IOException {
+        require(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException {
+        require(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    public float readFloat() throws IOException {
+        require(Float.BYTES);
+        return buffer.getFloat();
+    }
+
+    public int readVarInt() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = readByte();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public int readSignedVarInt() throws IOException {
+        int value = readVarInt();
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    public long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    public String readString() throws IOException {
+        byte[] bytes = new byte[readVarInt()];
+        readBytes(bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void readBytes(byte[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            require(1);
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(values, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    public void readShorts(short[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            require(Short.BYTES);
+            int count = Math.min(length, buffer.remaining() / Short.BYTES);
+            ShortBuffer shorts = buffer.asShortBuffer();
+            shorts.get(values, offset, count);
+            buffer.position(buffer.position() + count * Short.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+}
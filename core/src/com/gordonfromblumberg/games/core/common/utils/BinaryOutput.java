@@ -0,0 +1,150 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes primitives to a channel through a buffer of fixed size, so data of any size is written
+ * without holding it in memory. Integers may be written as varints: 7 bits per byte from the lowest ones,
+ * the high bit of a byte is set if more bytes follow. Signed varints are zigzag encoded, so small negative
+ * numbers take few bytes too. Read by {@link BinaryInput}.
+ */
+public class BinaryOutput implements Flushable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    // the longest primitive is a varint of long
+    static final int MIN_BUFFER_SIZE = 16;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private long written;
+
+    public BinaryOutput(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BinaryOutput(WritableByteChannel channel, int bufferSize) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Buffer size should be at least " + MIN_BUFFER_SIZE);
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        written += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public void writeByte(int value) throws IOException {
+        ensureRemaining(1);
+        buffer.put((byte) value);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    public void writeFloat(float value) throws IOException {
+        ensureRemaining(Float.BYTES);
+        buffer.putFloat(value);
+    }
+
+    /**
+     * Writes the value as unsigned varint, negative values take 5 bytes
+     */
+    public void writeVarInt(int value) throws IOException {
+        ensureRemaining(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public void writeSignedVarInt(int value) throws IOException {
+        writeVarInt(value << 1 ^ value >> 31);
+    }
+
+    public void writeVarLong(long value) throws IOException {
+        ensureRemaining(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public void writeSignedVarLong(long value) throws IOException {
+        writeVarLong(value << 1 ^ value >> 63);
+    }
+
+    /**
+     * Writes the length and UTF-8 bytes of the string
+     */
+    public void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    public void writeBytes(byte[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureRemaining(1);
+            int count = Math.min(length, buffer.remaining());
+            buffer.put(values, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    public void writeShorts(short[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureRemaining(Short.BYTES);
+            int count = Math.min(length, buffer.remaining() / Short.BYTES);
+            ShortBuffer shorts = buffer.asShortBuffer();
+            shorts.put(values, offset, count);
+            buffer.position(buffer.position() + count * Short.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * @return Number of bytes written so far, including buffered ones
+     */
+    public long getPosition() {
+        return written + buffer.position();
+    }
+
+    /**
+     * Writes the buffered bytes to the channel, the channel is not closed
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+}
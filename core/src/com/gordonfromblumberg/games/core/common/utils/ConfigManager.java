@@ -3,6 +3,7 @@ package com.gordonfromblumberg.games.core.common.utils;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Preferences;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.ObjectMap;
 import com.gordonfromblumberg.games.core.common.Main;
 
@@ -20,6 +21,13 @@ public class ConfigManager {
     public ConfigManager() {
     }
 
+    /**
+     * Creates a copy of the config, so properties of a world may be changed without changing the base config
+     */
+    public ConfigManager(ConfigManager base) {
+        configProperties.putAll(base.configProperties);
+    }
+
     public void init() {
         loadConfig(DEFAULT_CONFIG_FILE);
         loadConfig(DEFAULT_UI_CONFIG_FILE);
@@ -121,6 +129,28 @@ public class ConfigManager {
         }
     }
 
+    /**
+     * Writes all properties, so the config of a saved world may be restored by {@link #read(BinaryInput)}
+     */
+    public void write(BinaryOutput out) throws IOException {
+        // own iterator, the config may be iterated by other thread;
+        // sorted, so the same config is written the same way whatever the order of the map
+        final Array<String> keys = new ObjectMap.Keys<>(configProperties).toArray();
+        keys.sort();
+        out.writeVarInt(keys.size);
+        for (String key : keys) {
+            out.writeString(key);
+            out.writeString(configProperties.get(key));
+        }
+    }
+
+    public void read(BinaryInput in) throws IOException {
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            String key = in.readString();
+            configProperties.put(key, in.readString());
+        }
+    }
+
     public boolean contains(String propertyName) {
         String property = configProperties.get(propertyName);
         return property != null && !property.trim().isEmpty();
@@ -0,0 +1,145 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Unordered array of items which know their index in it, so an item is found and removed in O(1).
+ * Removed item is replaced by the last one. An item may be contained only in one indexed array at a time.
+ * Iteration with index is stable during removal of the current item if the index is not increased after removal:
+ * <pre>
+ * for (int i = 0; i &lt; array.size; ) {
+ *     if (shouldRemove(array.get(i))) array.removeIndex(i);
+ *     else ++i;
+ * }
+ * </pre>
+ * {@link Iterator#remove()} of the iterator works the same way.
+ */
+public class IndexedArray<T extends IndexedArray.Indexed> implements Iterable<T> {
+    private Indexed[] items;
+    public int size;
+
+    public IndexedArray() {
+        this(16);
+    }
+
+    public IndexedArray(int capacity) {
+        items = new Indexed[capacity];
+    }
+
+    public void add(T item) {
+        if (item.getIndex() != -1) {
+            throw new IllegalArgumentException("Item is already added to an indexed array");
+        }
+        if (size == items.length) {
+            Indexed[] newItems = new Indexed[Math.max(8, size + (size >> 1))];
+            System.arraycopy(items, 0, newItems, 0, size);
+            items = newItems;
+        }
+        item.setIndex(size);
+        items[size++] = item;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index can't be >= size: " + index + " >= " + size);
+        }
+        return (T) items[index];
+    }
+
+    public boolean contains(T item) {
+        int index = item.getIndex();
+        return index >= 0 && index < size && items[index] == item;
+    }
+
+    /**
+     * @return false if the item is not contained in this array
+     */
+    public boolean remove(T item) {
+        if (!contains(item)) {
+            return false;
+        }
+        removeIndex(item.getIndex());
+        return true;
+    }
+
+    /**
+     * Removes the item at the index, the last item takes its place
+     */
+    @SuppressWarnings("unchecked")
+    public T removeIndex(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index can't be >= size: " + index + " >= " + size);
+        }
+        final Indexed[] items = this.items;
+        Indexed removed = items[index];
+        Indexed last = items[--size];
+        items[index] = last;
+        last.setIndex(index);
+        items[size] = null;
+        removed.setIndex(-1);
+        return (T) removed;
+    }
+
+    public void clear() {
+        final Indexed[] items = this.items;
+        for (int i = 0, n = size; i < n; ++i) {
+            items[i].setIndex(-1);
+            items[i] = null;
+        }
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean notEmpty() {
+        return size > 0;
+    }
+
+    /**
+     * Unlike iterators of libGDX collections the iterator is created on each call, so nested iteration is allowed
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next;
+            private boolean removable;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public T next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                removable = true;
+                return get(next++);
+            }
+
+            @Override
+            public void remove() {
+                if (!removable) {
+                    throw new IllegalStateException("next() should be called before remove()");
+                }
+                removable = false;
+                // the last item takes the place of the removed one and should be returned next
+                removeIndex(--next);
+            }
+        };
+    }
+
+    /**
+     * Item of {@link IndexedArray}, its index is -1 if it is not contained in any array
+     */
+    public interface Indexed {
+        int getIndex();
+
+        void setIndex(int index);
+    }
+}
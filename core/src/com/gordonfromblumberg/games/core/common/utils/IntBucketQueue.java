@@ -0,0 +1,73 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+/**
+ * Monotone priority queue of ints with small non-negative integer priorities.
+ * Values are removed from the highest priority to the lowest, values with the same priority are removed in order
+ * of addition. Adding a value with priority greater than the last removed one is allowed.
+ */
+public class IntBucketQueue {
+    private IntQueue[] buckets = new IntQueue[64];
+    // all buckets above are empty
+    private int top = -1;
+    private int lastPriority;
+    public int size;
+
+    public void add(int value, int priority) {
+        if (priority >= buckets.length) {
+            int newLength = buckets.length << 1;
+            while (newLength <= priority) newLength <<= 1;
+            IntQueue[] newBuckets = new IntQueue[newLength];
+            System.arraycopy(buckets, 0, newBuckets, 0, buckets.length);
+            buckets = newBuckets;
+        }
+        IntQueue bucket = buckets[priority];
+        if (bucket == null) {
+            bucket = new IntQueue();
+            buckets[priority] = bucket;
+        }
+        bucket.addLast(value);
+        if (priority > top) {
+            top = priority;
+        }
+        ++size;
+    }
+
+    /**
+     * @return Value with the highest priority, the priority is returned by {@link #getLastPriority()}
+     */
+    public int removeFirst() {
+        if (size == 0) {
+            throw new IllegalStateException("Queue is empty");
+        }
+        final IntQueue[] buckets = this.buckets;
+        IntQueue bucket;
+        while ((bucket = buckets[top]) == null || bucket.isEmpty()) {
+            --top;
+        }
+        --size;
+        lastPriority = top;
+        return bucket.removeFirst();
+    }
+
+    public int getLastPriority() {
+        return lastPriority;
+    }
+
+    public boolean notEmpty() {
+        return size > 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i <= top; ++i) {
+            if (buckets[i] != null) {
+                buckets[i].clear();
+            }
+        }
+        top = -1;
+        size = 0;
+    }
+}
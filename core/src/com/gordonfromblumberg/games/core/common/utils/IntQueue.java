@@ -0,0 +1,83 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+/**
+ * Resizable ring buffer of primitive ints, works like {@link com.badlogic.gdx.utils.Queue} without boxing
+ */
+public class IntQueue {
+    private int[] values;
+    private int head;
+    private int tail;
+    public int size;
+
+    public IntQueue() {
+        this(16);
+    }
+
+    public IntQueue(int initialSize) {
+        values = new int[initialSize > 0 ? initialSize : 1];
+    }
+
+    public void addLast(int value) {
+        int[] values = this.values;
+        if (size == values.length) {
+            resize(values.length << 1);
+            values = this.values;
+        }
+        values[tail++] = value;
+        if (tail == values.length) {
+            tail = 0;
+        }
+        ++size;
+    }
+
+    public int removeFirst() {
+        if (size == 0) {
+            throw new IllegalStateException("Queue is empty");
+        }
+        final int[] values = this.values;
+        int result = values[head++];
+        if (head == values.length) {
+            head = 0;
+        }
+        --size;
+        return result;
+    }
+
+    /**
+     * @return Value at the index from the first one
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index can't be >= size: " + index + " >= " + size);
+        }
+        int i = head + index;
+        return values[i < values.length ? i : i - values.length];
+    }
+
+    public boolean notEmpty() {
+        return size > 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = tail = size = 0;
+    }
+
+    private void resize(int newSize) {
+        final int[] values = this.values;
+        final int[] newValues = new int[newSize];
+        if (head < tail) {
+            System.arraycopy(values, head, newValues, 0, size);
+        } else if (size > 0) {
+            int headPart = values.length - head;
+            System.arraycopy(values, head, newValues, 0, headPart);
+            System.arraycopy(values, 0, newValues, headPart, tail);
+        }
+        this.values = newValues;
+        head = 0;
+        tail = size;
+    }
+}
@@ -0,0 +1,127 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Pool which counts its objects: live objects are obtained and not freed yet, free objects wait for reuse.
+ * The free list may be filled in advance by {@link #prewarm(int)} and shrunk by {@link #trim(int)}.
+ * Methods are synchronized, so objects may be obtained and freed by several threads.
+ */
+public abstract class ManagedPool<T extends Pool.Poolable> {
+    private final String name;
+    private final Array<T> freeObjects;
+    // counters since creation of the pool
+    private long obtained;
+    private long freed;
+    private long created;
+    // the most live objects since the last call of resetPeak()
+    private int peakLive;
+
+    public ManagedPool(String name) {
+        this(name, 16);
+    }
+
+    public ManagedPool(String name, int initialCapacity) {
+        this.name = name;
+        this.freeObjects = new Array<>(false, initialCapacity);
+    }
+
+    protected abstract T newObject();
+
+    public synchronized T obtain() {
+        ++obtained;
+        int live = getLive();
+        if (live > peakLive) {
+            peakLive = live;
+        }
+        if (freeObjects.size == 0) {
+            ++created;
+            return newObject();
+        }
+        return freeObjects.pop();
+    }
+
+    public synchronized void free(T object) {
+        if (object == null) {
+            throw new IllegalArgumentException("object cannot be null");
+        }
+        ++freed;
+        object.reset();
+        freeObjects.add(object);
+    }
+
+    /**
+     * Creates free objects, so live and free objects together are not less than the count
+     */
+    public synchronized void prewarm(int count) {
+        int toCreate = count - getLive() - freeObjects.size;
+        if (toCreate <= 0) {
+            return;
+        }
+        freeObjects.ensureCapacity(toCreate);
+        for (int i = 0; i < toCreate; ++i) {
+            ++created;
+            freeObjects.add(newObject());
+        }
+    }
+
+    /**
+     * Drops free objects over the limit, so they may be collected
+     * @return Number of dropped objects
+     */
+    public synchronized int trim(int maxFree) {
+        if (maxFree < 0) maxFree = 0;
+        int toDrop = freeObjects.size - maxFree;
+        if (toDrop <= 0) {
+            return 0;
+        }
+        freeObjects.truncate(maxFree);
+        freeObjects.shrink();
+        return toDrop;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getLive() {
+        return (int) (obtained - freed);
+    }
+
+    public synchronized int getFree() {
+        return freeObjects.size;
+    }
+
+    /**
+     * @return Number of obtained objects since creation of the pool
+     */
+    public synchronized long getObtained() {
+        return obtained;
+    }
+
+    /**
+     * @return Number of freed objects since creation of the pool
+     */
+    public synchronized long getFreed() {
+        return freed;
+    }
+
+    /**
+     * @return Number of objects created by the pool, including prewarmed ones
+     */
+    public synchronized long getCreated() {
+        return created;
+    }
+
+    public synchronized int getPeakLive() {
+        return peakLive;
+    }
+
+    /**
+     * Starts the next period of the peak from the current number of live objects
+     */
+    public synchronized void resetPeak() {
+        peakLive = getLive();
+    }
+}
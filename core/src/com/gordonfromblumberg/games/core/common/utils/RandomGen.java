@@ -3,17 +3,50 @@ package com.gordonfromblumberg.games.core.common.utils;
 import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.utils.Array;
 
-import java.util.Random;
+import java.io.IOException;
 
+/**
+ * Generators of a world form a hierarchy of streams: every stream is seeded by {@link #split(long, long)}
+ * of the parent seed and a key, so the numbers do not depend on the order in which the streams are used.
+ */
 public class RandomGen {
     public static final RandomGen INSTANCE = new RandomGen();
 
-    private final Random rand = new RandomXS128();
+    private final RandomXS128 rand;
+
+    public RandomGen() {
+        rand = new RandomXS128();
+    }
+
+    public RandomGen(long seed) {
+        rand = new RandomXS128(seed);
+    }
 
     public static void setSeed(long seed) {
         INSTANCE.rand.setSeed(seed);
     }
 
+    /**
+     * Starts the sequence of this generator again from the seed
+     */
+    public void reseed(long seed) {
+        rand.setSeed(seed);
+    }
+
+    /**
+     * @return Seed of the child stream with the key, streams with different keys are independent
+     */
+    public static long split(long seed, long key) {
+        return mix(mix(seed) ^ key * 0x9E3779B97F4A7C15L);
+    }
+
+    // finalizer of SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * @param to Upper bound (exclusive)
      * @return random int from [0; to)
@@ -58,4 +91,17 @@ public class RandomGen {
     public <T> T getRandomItem(Array<T> array) {
         return array.get(nextInt(array.size));
     }
+
+    /**
+     * Writes the state, the generator continues the same sequence after {@link #readState(BinaryInput)}
+     */
+    public void writeState(BinaryOutput out) throws IOException {
+        out.writeLong(rand.getState(0));
+        out.writeLong(rand.getState(1));
+    }
+
+    public void readState(BinaryInput in) throws IOException {
+        long state0 = in.readLong();
+        rand.setState(state0, in.readLong());
+    }
 }
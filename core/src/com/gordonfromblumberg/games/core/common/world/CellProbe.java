@@ -0,0 +1,135 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.gordonfromblumberg.games.core.evotree.model.*;
+
+/**
+ * State of the cell chosen by the UI, is filled with {@link WorldSnapshot},
+ * so the UI does not read cell objects which are changed and released by the simulation
+ */
+public class CellProbe {
+    int x = -1;
+    int y = -1;
+    int sunLight;
+    boolean underSun;
+    // null for an empty cell
+    Class<? extends CellObject> objectClass;
+    int absorption;
+    int seedId;
+
+    boolean hasTree;
+    int treeId;
+    TreePartType partType;
+    int partEnergy;
+    int lifetime;
+    int restLifetime;
+    int treeEnergy;
+    int treeSize;
+
+    void fill(GameWorld world, int x, int y) {
+        final CellGrid grid = world.cellGrid;
+        if (x < 0 || x >= grid.getWidth() || y < 0 || y >= grid.getHeight()) {
+            this.x = this.y = -1;
+            return;
+        }
+        this.x = x;
+        this.y = y;
+        final Cell cell = grid.getCell(x, y);
+        sunLight = cell.getSunLight();
+        underSun = cell.isUnderSun();
+        final CellObject cellObject = cell.getObject();
+        objectClass = cellObject != null ? cellObject.getClass() : null;
+        absorption = cellObject != null ? cellObject.getLightAbsorption() : 0;
+        seedId = cellObject instanceof Seed ? ((Seed) cellObject).getId() : 0;
+
+        final TreePart part = cellObject instanceof TreePart ? (TreePart) cellObject : null;
+        final Tree tree = part != null ? part.getTree() : null;
+        hasTree = tree != null;
+        if (hasTree) {
+            treeId = tree.getId();
+            partType = part.getType();
+            partEnergy = part.calcEnergy(grid);
+            lifetime = tree.getLifetime();
+            restLifetime = tree.getRestLifeTime();
+            treeEnergy = tree.getEnergy();
+            treeSize = tree.getSize();
+        }
+    }
+
+    /**
+     * @return False if no cell is chosen or it is out of the grid
+     */
+    public boolean hasCell() {
+        return x >= 0;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getSunLight() {
+        return sunLight;
+    }
+
+    public boolean isUnderSun() {
+        return underSun;
+    }
+
+    public boolean hasObject() {
+        return objectClass != null;
+    }
+
+    public Class<? extends CellObject> getObjectClass() {
+        return objectClass;
+    }
+
+    public int getAbsorption() {
+        return absorption;
+    }
+
+    public boolean isSeed() {
+        return objectClass != null && Seed.class.isAssignableFrom(objectClass);
+    }
+
+    public int getSeedId() {
+        return seedId;
+    }
+
+    /**
+     * @return True if the cell holds a part of a living tree, tree getters are valid only then
+     */
+    public boolean hasTree() {
+        return hasTree;
+    }
+
+    public int getTreeId() {
+        return treeId;
+    }
+
+    public TreePartType getPartType() {
+        return partType;
+    }
+
+    public int getPartEnergy() {
+        return partEnergy;
+    }
+
+    public int getLifetime() {
+        return lifetime;
+    }
+
+    public int getRestLifetime() {
+        return restLifetime;
+    }
+
+    public int getTreeEnergy() {
+        return treeEnergy;
+    }
+
+    public int getTreeSize() {
+        return treeSize;
+    }
+}
@@ -1,8 +1,9 @@
 package com.gordonfromblumberg.games.core.common.world;
 
-import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.LongArray;
 
 import com.gordonfromblumberg.games.core.common.Main;
 import com.gordonfromblumberg.games.core.common.event.Event;
@@ -11,61 +12,142 @@ import com.gordonfromblumberg.games.core.common.event.EventProcessor;
 import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
 import com.gordonfromblumberg.games.core.common.log.LogManager;
 import com.gordonfromblumberg.games.core.common.log.Logger;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
 import com.gordonfromblumberg.games.core.common.utils.ClickHandler;
 import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.IndexedArray;
 import com.gordonfromblumberg.games.core.common.utils.RandomGen;
 import com.gordonfromblumberg.games.core.evotree.model.*;
 import com.gordonfromblumberg.games.core.evotree.world.EvoTreeWorld;
 
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.LockSupport;
 
 public class GameWorld implements EvoTreeWorld, Disposable {
     private static final Logger log = LogManager.create(GameWorld.class);
     private static final int LIGHT_SOURCE_MOVE_DELAY = 7;
     private static final int MIN_GAME_OBJECTS = 30;
     private static final int ADD_RANDOM_SEED_DELAY = 50;
-    private static int nextTreeId = 1;
-    private static int nextSeedId = 1;
+    private static final long IDLE_PARK_NANOS = 10_000_000;
+    // "EVOT"
+    private static final int SNAPSHOT_MAGIC = 0x45564F54;
+    private static final int SNAPSHOT_VERSION = 1;
+    private int nextTreeId = 1;
+    private int nextSeedId = 1;
     private int turn = 0;
     private int lastSeedAddedTurn = 0;
-
-    private final Array<Seed> seeds = new Array<>();
-    private final Array<Tree> trees = new Array<>();
+    private final long seed;
+    private long turnSeed;
+    // stream of the world for the current turn
+    private final RandomGen random = new RandomGen();
+
+    final IndexedArray<Seed> seeds = new IndexedArray<>();
+    final IndexedArray<Tree> trees = new IndexedArray<>();
+    private final IntMap<Seed> seedsById = new IntMap<>();
+    private final IntMap<Tree> treesById = new IntMap<>();
     private Tree selectedTree;
+    // live trees by genome
+    private final SpeciesRegistry speciesRegistry;
+    // pollen of the trees which have produced seeds during the turn
+    private final PollenSweep pollenSweep;
+    // (x, y) << 32 | index of the falling seed, see dropSeeds()
+    private final LongArray fallingSeeds = new LongArray();
 
     private final EventProcessor eventProcessor = new EventProcessor();
+    // the world reads only this config, so worlds with different configs may run at the same time
+    private final ConfigManager configManager;
+    private final WorldContext context;
+    // params the world is created with, they are saved with the world
+    private final GameWorldParams params;
+    // seeds, trees and tree parts of this world are obtained from these pools
+    private final WorldPools pools;
 
     CellGrid cellGrid;
     private SimpleLightDistribution simpleLightDistribution;
     LightDistribution lightDistribution;
 
     GeneticRules geneticRules = new GeneticRules();
+    // if not null seeds and trees are updated in parallel
+    StripedUpdate stripedUpdate;
 
-    boolean running;
-    boolean paused;
+    volatile boolean running;
+    volatile boolean paused;
 //    final BitmapFontCache pauseText;
 
     private int maxSeeds = 0;
     private int maxTrees = 0;
     private int maxGeneration = 0;
 
-    private float updateDelay = 0.10f;
+    private volatile float updateDelay = 0.10f;
     private float time = 0;
 
+    // turbo mode ignores update delay and makes as many turns as fit into the budget
+    private volatile boolean turbo;
+    private volatile long turnBudgetNanos = 12_000_000;
+    private int measuredTurns;
+    private float measureTime;
+    private volatile int actualTurnsPerSecond;
+
+    private final SnapshotExchange snapshots;
+    // if not null turns are made by this thread, and the render thread only reads snapshots
+    private Thread simulationThread;
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    // the world is changed after the last published snapshot, is used by the thread which makes turns
+    private boolean changed;
+    // cell which state is copied to snapshots, is used by the thread which makes turns
+    int probeX = -1, probeY = -1;
+    // the last cell passed to probe(), is used by the render thread
+    private int requestedProbeX = -1, requestedProbeY = -1;
+
     final Array<ClickHandler> clickHandlers = new Array<>(1);
 
     public GameWorld(GameWorldParams params) {
+        this(params, AbstractFactory.getInstance().configManager());
+    }
+
+    /**
+     * @param configManager Config of this world, it is not changed by the world
+     */
+    public GameWorld(GameWorldParams params, ConfigManager configManager) {
         log.info("GameWorld constructor");
 
-        final AssetManager assets = Main.getInstance().assets();
 //        pauseText = new BitmapFontCache(assets.get("ui/uiskin.json", Skin.class).getFont("default-font"));
 
-        final ConfigManager configManager = AbstractFactory.getInstance().configManager();
+        this.configManager = configManager;
+        this.params = params.copy();
+        seed = params.getSeed();
+        context = new WorldContext(configManager);
+        pools = context.getPools();
+        pollenSweep = new PollenSweep(context);
+        speciesRegistry = new SpeciesRegistry(context);
         cellGrid = new CellGrid(params.width, params.height,
                 configManager.getInteger("world.cellSize"),
                 configManager.getInteger("world.chunkSize"));
+        cellGrid.setIncrementalLighting(configManager.getBoolean("world.incrementalLighting"));
+        if (configManager.getBoolean("world.parallelLighting"))
+            cellGrid.setLightStrips(ForkJoinPool.getCommonPoolParallelism());
+        if (configManager.getBoolean("world.parallelUpdate")) {
+            // the order of updates depends on the stripes, so their count does not depend on the number of threads
+            int stripes = StripedUpdate.getStripeCount(params.width, cellGrid.getChunkSize());
+            if (stripes >= 4) {
+                stripedUpdate = new StripedUpdate(this, params.width, cellGrid.getChunkSize(), stripes);
+                log.info("Seeds and trees are updated in " + stripes + " stripes");
+            } else {
+                log.warn("The world is too narrow to update seeds and trees in parallel");
+            }
+        }
         simpleLightDistribution = new SimpleLightDistribution(params.width, params.height, params.sunLight, params.lightAbsorptionStep);
         lightDistribution = params.decorate(simpleLightDistribution);
+        snapshots = new SnapshotExchange(params.width, params.height);
 
         for (int i = 0, n = params.getLightSourcesCount(); i < n; ++i) {
             LightSource lightSource = new LightSource(params.getLightSourceStrength());
@@ -76,21 +158,15 @@ public class GameWorld implements EvoTreeWorld, Disposable {
 
     public void initialize() {
         log.info("GameWorld init");
-        ConfigManager configManager = AbstractFactory.getInstance().configManager();
-        if (Main.LIGHTING_TEST) {
-            addClickHandler(this::testLighting);
-        } else {
-            addClickHandler(this::selectTree);
-        }
-
-        if (configManager.contains("world.turnsPerSecond"))
-            updateDelay = 1f / configManager.getInteger("world.turnsPerSecond");
+        prepare();
 
+        startTurnStreams();
         if (!Main.LIGHTING_TEST) {
+            pools.prewarm(cellGrid.getWidth());
             for (int i = 5, w = cellGrid.getWidth(); i < w; i += 5) {
-                Seed seed = Seed.getInstance();
-                seed.init();
-                cellGrid.addCellObject(seed, i, RandomGen.INSTANCE.nextInt(cellGrid.getHeight() / 2));
+                Seed seed = pools.obtainSeed();
+                seed.initRandom(random);
+                cellGrid.addCellObject(seed, i, random.nextInt(cellGrid.getHeight() / 2));
                 seed.setGeneration(1);
                 seed.setEnergy(4000);
                 addSeed(seed);
@@ -98,9 +174,164 @@ public class GameWorld implements EvoTreeWorld, Disposable {
         }
 
         running = true;
+        snapshots.publish(this);
         log.debug("Game world initialized");
     }
 
+    // settings which are not saved with the world
+    private void prepare() {
+        if (Main.LIGHTING_TEST) {
+            addClickHandler(this::testLighting);
+        } else {
+            addClickHandler(this::selectTree);
+        }
+
+        if (configManager.contains("world.turnsPerSecond"))
+            updateDelay = 1f / configManager.getInteger("world.turnsPerSecond");
+        if (configManager.contains("world.turboBudget"))
+            turnBudgetNanos = configManager.getInteger("world.turboBudget") * 1_000_000L;
+    }
+
+    /**
+     * Writes the snapshot of the world: its params and config, counters, the state of the generator, species,
+     * light sources, seeds, trees with their parts and the light of the grid. Each genome is written once
+     * to the genome table. Data is streamed through a buffer of fixed size, so a world of any size may be saved.
+     * If the simulation thread is started, the snapshot is written by it between turns and the caller waits.
+     * The world loaded by {@link #load(ReadableByteChannel)} makes the same turns as this one
+     */
+    public void save(WritableByteChannel channel) throws IOException {
+        if (simulationThread == null || Thread.currentThread() == simulationThread) {
+            writeSnapshot(channel);
+            return;
+        }
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            writeSnapshot(channel);
+            return null;
+        });
+        commands.add(task);
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while the world is saved");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private void writeSnapshot(WritableByteChannel channel) throws IOException {
+        final BinaryOutput out = new BinaryOutput(channel);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeVarInt(SNAPSHOT_VERSION);
+        params.write(out);
+        configManager.write(out);
+
+        out.writeVarInt(turn);
+        out.writeVarInt(lastSeedAddedTurn);
+        out.writeVarInt(nextTreeId);
+        out.writeVarInt(nextSeedId);
+        out.writeVarInt(maxSeeds);
+        out.writeVarInt(maxTrees);
+        out.writeVarInt(maxGeneration);
+        out.writeBoolean(running);
+        random.writeState(out);
+
+        final GenomeTable genomes = new GenomeTable(context);
+        speciesRegistry.write(out, genomes);
+        out.writeVarInt(seeds.size);
+        for (int i = 0, n = seeds.size; i < n; ++i) {
+            seeds.get(i).write(out, genomes);
+        }
+        out.writeVarInt(trees.size);
+        for (int i = 0, n = trees.size; i < n; ++i) {
+            trees.get(i).write(out, genomes);
+        }
+        cellGrid.writeLightSources(out);
+        lightDistribution.writeState(out);
+        cellGrid.writeLight(out);
+        out.flush();
+        log.info("World is saved at turn " + turn + ": " + out.getPosition() + " bytes, " + genomes.size() + " genomes");
+        genomes.release();
+    }
+
+    /**
+     * Reads the world written by {@link #save(WritableByteChannel)}, the world gets the saved config
+     * and should not be initialized
+     */
+    public static GameWorld load(ReadableByteChannel channel) throws IOException {
+        final BinaryInput in = new BinaryInput(channel);
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a saved world");
+        }
+        final int version = in.readVarInt();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported version " + version + " of saved world");
+        }
+        final GameWorldParams params = new GameWorldParams();
+        params.read(in);
+        final ConfigManager configManager = new ConfigManager();
+        configManager.read(in);
+
+        final GameWorld world = new GameWorld(params, configManager);
+        world.readSnapshot(in);
+        return world;
+    }
+
+    private void readSnapshot(BinaryInput in) throws IOException {
+        prepare();
+        turn = in.readVarInt();
+        lastSeedAddedTurn = in.readVarInt();
+        nextTreeId = in.readVarInt();
+        nextSeedId = in.readVarInt();
+        maxSeeds = in.readVarInt();
+        maxTrees = in.readVarInt();
+        maxGeneration = in.readVarInt();
+        running = in.readBoolean();
+        startTurnStreams();
+        random.readState(in);
+
+        pools.prewarm(cellGrid.getWidth());
+        final GenomeTable genomes = new GenomeTable(context);
+        speciesRegistry.read(in, genomes);
+        cellGrid.removeLightSources();
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            Seed seed = pools.obtainSeed();
+            seed.read(in, genomes, cellGrid);
+            seeds.add(seed);
+            seedsById.put(seed.getId(), seed);
+        }
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            Tree tree = pools.obtainTree();
+            tree.read(in, genomes, this, speciesRegistry);
+            trees.add(tree);
+            treesById.put(tree.getId(), tree);
+        }
+        cellGrid.readLightSources(in);
+        lightDistribution.readState(in);
+        cellGrid.readLight(in);
+        genomes.release();
+
+        snapshots.publish(this);
+        log.info("World is loaded at turn " + turn);
+    }
+
+    /**
+     * After this call turns are made by a separate thread, {@link #update(float)} does nothing
+     * and the world state should be read only through {@link #acquireSnapshot()}
+     */
+    public void startSimulationThread() {
+        if (simulationThread != null) {
+            return;
+        }
+        simulationThread = new Thread(this::simulate, "Simulation");
+        simulationThread.setDaemon(true);
+        simulationThread.start();
+        log.info("Simulation thread started");
+    }
+
     public void setSize(int width, int height) {
 //        this.width = width;
 //        this.height = height;
@@ -110,13 +341,15 @@ public class GameWorld implements EvoTreeWorld, Disposable {
     public void addSeed(Seed seed) {
         seeds.add(seed);
         seed.setId(nextSeedId++);
+        seedsById.put(seed.getId(), seed);
         if (seeds.size > maxSeeds) maxSeeds = seeds.size;
         if (seed.getGeneration() > maxGeneration) maxGeneration = seed.getGeneration();
     }
 
     @Override
     public void removeSeed(Seed seed) {
-        seeds.removeValue(seed, true);
+        seeds.remove(seed);
+        seedsById.remove(seed.getId());
         seed.release();
     }
 
@@ -124,9 +357,36 @@ public class GameWorld implements EvoTreeWorld, Disposable {
     public void addTree(Tree tree) {
         trees.add(tree);
         tree.setId(nextTreeId++);
+        treesById.put(tree.getId(), tree);
+        speciesRegistry.add(tree, turn);
         if (trees.size > maxTrees) maxTrees = trees.size;
     }
 
+    @Override
+    public void pollinate(Tree tree) {
+        pollenSweep.add(tree);
+    }
+
+    @Override
+    public boolean isAvailableColumn(int x) {
+        return true;
+    }
+
+    void removeTree(Tree tree) {
+        trees.remove(tree);
+        treesById.remove(tree.getId());
+        speciesRegistry.remove(tree);
+        tree.release();
+        if (tree == selectedTree) {
+            selectTree(null);
+        }
+    }
+
+    @Override
+    public long getTurnSeed() {
+        return turnSeed;
+    }
+
     @Override
     public CellGrid getGrid() {
         return cellGrid;
@@ -137,93 +397,253 @@ public class GameWorld implements EvoTreeWorld, Disposable {
         return geneticRules;
     }
 
-    public void update(float delta) {
-        if (running && !paused) {
-            time += delta;
-            if (time < updateDelay) {
-                return;
-            }
-            time = 0;
+    @Override
+    public WorldPools getPools() {
+        return pools;
+    }
 
-            ++turn;
+    public WorldContext getContext() {
+        return context;
+    }
 
-            lightDistribution.nextTurn();
+    public void update(float delta) {
+        if (simulationThread != null) {
+            return;
+        }
 
-            CellGrid grid = this.cellGrid;
-            Iterator<Seed> seedIterator = seeds.iterator();
-            while (seedIterator.hasNext()) {
-                Seed seed = seedIterator.next();
-                if (seed.update(this)) {
-                    seedIterator.remove();
-                    grid.removeCellObject(seed);
-                    seed.release();
+        processCommands();
+        if (running && !paused) {
+            final long start = System.nanoTime();
+            final long budget = turnBudgetNanos;
+            int turns = 0;
+            if (turbo) {
+                do {
+                    nextTurn();
+                    ++turns;
+                } while (running && System.nanoTime() - start < budget);
+                time = 0;
+            } else {
+                time += delta;
+                while (running && time >= updateDelay) {
+                    time -= updateDelay;
+                    nextTurn();
+                    ++turns;
+                    if (System.nanoTime() - start >= budget) {
+                        // can not catch up in this frame, the rest of the lag is dropped
+                        if (time > updateDelay) time = updateDelay;
+                        break;
+                    }
                 }
             }
+            publishChanges();
+            measureTurns(turns, delta);
+        } else {
+            publishChanges();
+            measureTurns(0, delta);
+        }
+    }
 
-            Iterator<Tree> treeIterator = trees.iterator();
-            while (treeIterator.hasNext()) {
-                Tree tree = treeIterator.next();
-                if (tree.update(this)) {
-                    treeIterator.remove();
-                    tree.release();
-                    if (tree == selectedTree) {
-                        selectTree(null);
-                    }
+    /**
+     * Turn loop of the simulation thread
+     */
+    private void simulate() {
+        long last = System.nanoTime();
+        long nextTurnTime = last;
+        while (!Thread.currentThread().isInterrupted()) {
+            processCommands();
+            // changes of commands and turns which were not taken by the reader are published while paused too
+            publishChanges();
+            long now = System.nanoTime();
+            int turns = 0;
+            if (running && !paused) {
+                if (turbo || now >= nextTurnTime) {
+                    nextTurn();
+                    turns = 1;
+                    publishChanges();
+                    final long delay = (long) (updateDelay * 1_000_000_000L);
+                    nextTurnTime += delay;
+                    // lag of more than one turn is dropped
+                    if (nextTurnTime < now - delay) nextTurnTime = now;
+                } else {
+                    LockSupport.parkNanos(nextTurnTime - now);
                 }
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                nextTurnTime = now;
             }
+            measureTurns(turns, (now - last) / 1_000_000_000f);
+            last = now;
+        }
+        log.info("Simulation thread stopped");
+    }
 
-            if (turn % LIGHT_SOURCE_MOVE_DELAY == 0) {
-                cellGrid.moveLightSources();
-            }
-            cellGrid.updateSunLight(lightDistribution);
+    private void processCommands() {
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+            changed = true;
+        }
+    }
 
-            eventProcessor.process();
+    // publishes the world if it is changed after the last snapshot and the reader is waiting for a new one
+    private void publishChanges() {
+        if (changed && snapshots.publish(this)) {
+            changed = false;
+        }
+    }
 
-//            if (turn % 30 == 0) {
-//                Gdx.app.log("GameWorld", seeds.size + " seeds in the world of maximum " + maxSeeds);
-//                Gdx.app.log("GameWorld", trees.size + " trees in the world of maximum " + maxTrees);
-//            }
+    private void measureTurns(int turns, float delta) {
+        measuredTurns += turns;
+        measureTime += delta;
+        if (measureTime >= 1f) {
+            actualTurnsPerSecond = (int) (measuredTurns / measureTime);
+            measuredTurns = 0;
+            measureTime = 0;
+        }
+    }
 
-            int dropRandomSeeds = MIN_GAME_OBJECTS - trees.size - seeds.size;
-            if (dropRandomSeeds > 0 || turn - lastSeedAddedTurn >= ADD_RANDOM_SEED_DELAY) {
-                addRandomSeeds(dropRandomSeeds > 0 ? dropRandomSeeds : 1);
-                lastSeedAddedTurn = turn;
+    /**
+     * Makes one turn of simulation regardless of update delay and pause
+     */
+    public void nextTurn() {
+        ++turn;
+        changed = true;
+        startTurnStreams();
+
+        lightDistribution.nextTurn();
+
+        if (stripedUpdate != null) {
+            stripedUpdate.update(seeds, trees);
+        } else {
+            updateSerially();
+        }
+        dropSeeds();
+        pollenSweep.resolve(cellGrid, turnSeed);
+
+        if (turn % LIGHT_SOURCE_MOVE_DELAY == 0) {
+            cellGrid.moveLightSources();
+        }
+        cellGrid.updateSunLight(lightDistribution);
+
+        eventProcessor.process();
+        pools.update(turn);
+
+//        if (turn % 30 == 0) {
+//            Gdx.app.log("GameWorld", seeds.size + " seeds in the world of maximum " + maxSeeds);
+//            Gdx.app.log("GameWorld", trees.size + " trees in the world of maximum " + maxTrees);
+//        }
+
+        int dropRandomSeeds = MIN_GAME_OBJECTS - trees.size - seeds.size;
+        if (dropRandomSeeds > 0 || turn - lastSeedAddedTurn >= ADD_RANDOM_SEED_DELAY) {
+            addRandomSeeds(dropRandomSeeds > 0 ? dropRandomSeeds : 1);
+            lastSeedAddedTurn = turn;
+        }
+
+        int generation = 0;
+        for (Tree tree : trees) {
+            if (tree.getGeneration() > generation)
+                generation = tree.getGeneration();
+        }
+        maxGeneration = generation;
+
+        if (seeds.isEmpty() && trees.isEmpty() && !Main.LIGHTING_TEST) {
+            running = false;
+        }
+    }
+
+    private void startTurnStreams() {
+        turnSeed = RandomGen.split(seed, turn);
+        // ids of seeds and trees are not 0
+        random.reseed(RandomGen.split(turnSeed, 0));
+    }
+
+    private void updateSerially() {
+        CellGrid grid = this.cellGrid;
+        // removed seed or tree is replaced by the last one, so the index is not increased
+        for (int i = 0; i < seeds.size; ) {
+            Seed seed = seeds.get(i);
+            if (seed.update(this)) {
+                grid.removeCellObject(seed);
+                removeSeed(seed);
+            } else {
+                ++i;
             }
+        }
 
-            int generation = 0;
-            for (Tree tree : trees) {
-                if (tree.getGeneration() > generation)
-                    generation = tree.getGeneration();
+        for (int i = 0; i < trees.size; ) {
+            Tree tree = trees.get(i);
+            if (tree.update(this)) {
+                removeTree(tree);
+            } else {
+                ++i;
             }
-            maxGeneration = generation;
+        }
+    }
 
-            if (seeds.isEmpty() && trees.isEmpty() && !Main.LIGHTING_TEST) {
-                running = false;
+    // moves falling seeds bottom up in each column, so a stack of seeds falls together
+    private void dropSeeds() {
+        final CellGrid grid = this.cellGrid;
+        final IndexedArray<Seed> seeds = this.seeds;
+        final LongArray fallingSeeds = this.fallingSeeds;
+        final int height = grid.getHeight();
+        for (int i = 0, n = seeds.size; i < n; ++i) {
+            Cell cell = seeds.get(i).getCell();
+            if (cell.getY() > 0) {
+                fallingSeeds.add((long) (cell.getX() * height + cell.getY()) << 32 | i);
             }
         }
+        if (fallingSeeds.isEmpty()) {
+            return;
+        }
+
+        Arrays.sort(fallingSeeds.items, 0, fallingSeeds.size);
+        for (int i = 0, n = fallingSeeds.size; i < n; ++i) {
+            grid.fall(seeds.get((int) fallingSeeds.get(i)), Seed.FALL_DISTANCE);
+        }
+        fallingSeeds.clear();
     }
 
     private void addRandomSeeds(int count) {
-        final int y = cellGrid.getHeight() - 1;
         while (count-- > 0) {
-            Seed seed = Seed.getInstance();
-            seed.initRandom();
+            Cell cell = cellGrid.findFreeTopCell(random.nextInt(cellGrid.getWidth()));
+            if (cell == null) {
+                return;
+            }
+            Seed seed = pools.obtainSeed();
+            seed.initRandom(random);
             seed.setGeneration(1);
             seed.setEnergy(4000);
             addSeed(seed);
-            int x = RandomGen.INSTANCE.nextInt(cellGrid.getWidth());
-            Cell cell = cellGrid.cells[x][y];
-            while (cell.getObject() != null) {
-                cell = cellGrid.getCell(cell, Direction.right);
-            }
             cellGrid.addCellObject(seed, cell);
         }
     }
 
+    /**
+     * @return Seed with the id or null if there is no such seed in the world
+     */
+    public Seed getSeed(int id) {
+        return seedsById.get(id);
+    }
+
+    /**
+     * @return Tree with the id or null if there is no such tree in the world
+     */
+    public Tree getTree(int id) {
+        return treesById.get(id);
+    }
+
+    public SpeciesRegistry getSpeciesRegistry() {
+        return speciesRegistry;
+    }
+
     public int getTurn() {
         return turn;
     }
 
+    public boolean isRunning() {
+        return running;
+    }
+
     public int getSeedCount() {
         return seeds.size;
     }
@@ -252,10 +672,72 @@ public class GameWorld implements EvoTreeWorld, Disposable {
         updateDelay = 1f / turnsPerSecond;
     }
 
+    /**
+     * Should be called by the render thread once per frame
+     * @return The latest world snapshot
+     */
+    public WorldSnapshot acquireSnapshot() {
+        return snapshots.acquire();
+    }
+
+    /**
+     * @return The snapshot which was acquired last by {@link #acquireSnapshot()}
+     */
+    public WorldSnapshot getSnapshot() {
+        return snapshots.current();
+    }
+
+    public int getActualTurnsPerSecond() {
+        return actualTurnsPerSecond;
+    }
+
+    public boolean isTurbo() {
+        return turbo;
+    }
+
+    public void setTurbo(boolean turbo) {
+        this.turbo = turbo;
+        this.time = 0;
+    }
+
+    /**
+     * @param turnBudget Maximum time in milliseconds which may be spent on turns during one frame
+     */
+    public void setTurnBudget(int turnBudget) {
+        this.turnBudgetNanos = turnBudget * 1_000_000L;
+    }
+
     // world coords
     public void click(int button, float x, float y) {
-        for (ClickHandler handler : clickHandlers)
-            handler.onClick(button, x, y);
+        // handlers change the world, so they are called by the thread which makes turns
+        commands.add(() -> {
+            for (ClickHandler handler : clickHandlers)
+                handler.onClick(button, x, y);
+        });
+    }
+
+    /**
+     * Chooses the cell which state is copied to the following snapshots, see {@link WorldSnapshot#getProbe()}
+     * @param x World x coordinate, the cell is reset if the point is out of the grid
+     */
+    public void probe(float x, float y) {
+        final int cellSize = cellGrid.getCellSize();
+        int cellX = x >= 0 ? (int) x / cellSize : -1;
+        int cellY = y >= 0 ? (int) y / cellSize : -1;
+        if (cellX >= cellGrid.getWidth() || cellY >= cellGrid.getHeight() || cellX < 0 || cellY < 0) {
+            cellX = cellY = -1;
+        }
+        if (cellX == requestedProbeX && cellY == requestedProbeY) {
+            return;
+        }
+        requestedProbeX = cellX;
+        requestedProbeY = cellY;
+        final int probeX = cellX, probeY = cellY;
+        // the command marks the world changed, so the cell is published while paused too
+        commands.add(() -> {
+            this.probeX = probeX;
+            this.probeY = probeY;
+        });
     }
 
     public void addClickHandler(ClickHandler handler) {
@@ -316,6 +798,7 @@ public class GameWorld implements EvoTreeWorld, Disposable {
                     ((LightingTest) cellObject).setLightAbsorption(absorption);
                 }
             }
+            cellGrid.markDirty(cell);
         }
     }
 
@@ -333,6 +816,14 @@ public class GameWorld implements EvoTreeWorld, Disposable {
 
     @Override
     public void dispose() {
-
+        if (simulationThread != null) {
+            simulationThread.interrupt();
+            try {
+                simulationThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            simulationThread = null;
+        }
     }
 }
@@ -3,11 +3,14 @@ package com.gordonfromblumberg.games.core.common.world;
 import com.badlogic.gdx.Preferences;
 import com.badlogic.gdx.utils.ObjectMap;
 import com.badlogic.gdx.utils.Queue;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
 import com.gordonfromblumberg.games.core.common.utils.ByteBufferUtils;
 import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
 import com.gordonfromblumberg.games.core.evotree.model.AbstractLightDistributionDecorator;
 import com.gordonfromblumberg.games.core.evotree.model.LightDistribution;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Map;
 
@@ -24,6 +27,7 @@ public class GameWorldParams {
     float lightAbsorptionStep = 1;
     float lightSourcesRatio = 0;
     int lightSourceStrength = 500;
+    long seed;
     final Queue<String> selectedDecorators = new Queue<>(4);
     final ObjectMap<String, Object> decoratorParams = new ObjectMap<>(8);
 
@@ -67,6 +71,17 @@ public class GameWorldParams {
         this.lightSourcesRatio = lightSourcesRatio;
     }
 
+    /**
+     * @return Seed of the world, all random numbers of the world are derived from it
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
     public int getLightSourcesCount() {
         return (int) (lightSourcesRatio * width);
     }
@@ -103,6 +118,25 @@ public class GameWorldParams {
         return result;
     }
 
+    /**
+     * @return Copy of the params, decorators are not taken from the copy by {@link #decorate(LightDistribution)}
+     */
+    public GameWorldParams copy() {
+        GameWorldParams copy = new GameWorldParams();
+        copy.width = width;
+        copy.height = height;
+        copy.sunLight = sunLight;
+        copy.lightAbsorptionStep = lightAbsorptionStep;
+        copy.lightSourcesRatio = lightSourcesRatio;
+        copy.lightSourceStrength = lightSourceStrength;
+        copy.seed = seed;
+        for (String decorator : selectedDecorators) {
+            copy.selectedDecorators.addLast(decorator);
+        }
+        copy.decoratorParams.putAll(decoratorParams);
+        return copy;
+    }
+
     public boolean isSelected(String decoratorName) {
         for (String selected : selectedDecorators) {
             if (selected.equals(decoratorName)) {
@@ -171,6 +205,61 @@ public class GameWorldParams {
         }
     }
 
+    public void write(BinaryOutput out) throws IOException {
+        out.writeVarInt(width);
+        out.writeVarInt(height);
+        out.writeSignedVarInt(sunLight);
+        out.writeFloat(lightAbsorptionStep);
+        out.writeFloat(lightSourcesRatio);
+        out.writeSignedVarInt(lightSourceStrength);
+        out.writeLong(seed);
+
+        out.writeVarInt(selectedDecorators.size);
+        for (String selectedDecorator : selectedDecorators) {
+            out.writeString(selectedDecorator);
+        }
+
+        out.writeVarInt(decoratorParams.size);
+        for (ObjectMap.Entry<String, Object> entry : decoratorParams) {
+            out.writeString(entry.key);
+            if (entry.value instanceof Integer) {
+                out.writeByte(0);
+                out.writeSignedVarInt((Integer) entry.value);
+            } else if (entry.value instanceof String) {
+                out.writeByte(1);
+                out.writeString((String) entry.value);
+            } else {
+                throw new IllegalStateException("Unexpected decorator parameter: " + entry);
+            }
+        }
+    }
+
+    public void read(BinaryInput in) throws IOException {
+        width = in.readVarInt();
+        height = in.readVarInt();
+        sunLight = in.readSignedVarInt();
+        lightAbsorptionStep = in.readFloat();
+        lightSourcesRatio = in.readFloat();
+        lightSourceStrength = in.readSignedVarInt();
+        seed = in.readLong();
+
+        selectedDecorators.clear();
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            selectedDecorators.addLast(in.readString());
+        }
+
+        decoratorParams.clear();
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            String key = in.readString();
+            byte type = in.readByte();
+            switch (type) {
+                case 0: decoratorParams.put(key, in.readSignedVarInt()); break;
+                case 1: decoratorParams.put(key, in.readString()); break;
+                default: throw new IOException("Unexpected type " + type + " of decorator parameter " + key);
+            }
+        }
+    }
+
     public void save(ByteBuffer bb) {
         bb.putInt(width);
         bb.putInt(height);
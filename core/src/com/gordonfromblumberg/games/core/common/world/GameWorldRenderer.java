@@ -17,7 +17,6 @@ import com.gordonfromblumberg.games.core.common.log.LogManager;
 import com.gordonfromblumberg.games.core.common.log.Logger;
 import com.gordonfromblumberg.games.core.common.screens.AbstractRenderer;
 import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
-import com.gordonfromblumberg.games.core.evotree.model.*;
 
 import java.util.Iterator;
 
@@ -39,6 +38,7 @@ public class GameWorldRenderer extends AbstractRenderer {
     private static final float MAX_ABSORPTION;
 
     private static final Vector3 tempVec3 = new Vector3();
+    private static final Color tempColor = new Color();
 
     static {
         ConfigManager configManager = AbstractFactory.getInstance().configManager();
@@ -72,7 +72,8 @@ public class GameWorldRenderer extends AbstractRenderer {
 
     private final Color pauseColor = Color.GRAY;
 
-    private int lastTurnRendered = -1;
+    // publication number of the last drawn snapshot, the world may be published again at the same turn
+    private int lastSequenceRendered = -1;
 
     public GameWorldRenderer(GameWorld world, Batch batch) {
         super();
@@ -107,7 +108,9 @@ public class GameWorldRenderer extends AbstractRenderer {
         }
 
         final ShapeRenderer shapeRenderer = this.shapeRenderer;
-        if (lastTurnRendered < world.getTurn()) {
+        final WorldSnapshot snapshot = world.acquireSnapshot();
+        // the world may make several turns per frame, only the last of them is drawn
+        if (lastSequenceRendered != snapshot.sequence) {
             fbo.begin();
             Gdx.gl.glClearColor(0, 0, 0, 1);
             Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
@@ -117,7 +120,10 @@ public class GameWorldRenderer extends AbstractRenderer {
             shapeRenderer.identity();
             shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
             int cellSize = world.cellGrid.getCellSize();
-            Cell[][] cells = world.cellGrid.cells;
+            final byte[] types = snapshot.types;
+            final int[] values = snapshot.values;
+            final int[] colors = snapshot.colors;
+            final Color treeColor = tempColor;
             final float nightR = DARK_COLOR.r, nightG = DARK_COLOR.g, nightB = DARK_COLOR.b;
             final float diffR = LIGHT_COLOR.r - DARK_COLOR.r,
                     diffG = LIGHT_COLOR.g - DARK_COLOR.g,
@@ -126,32 +132,35 @@ public class GameWorldRenderer extends AbstractRenderer {
             final float daR = MIN_ABS_COLOR.r - MAX_ABS_COLOR.r,
                     daG = MIN_ABS_COLOR.g - MAX_ABS_COLOR.g,
                     daB = MIN_ABS_COLOR.b - MAX_ABS_COLOR.b;
-            for (int i = 0, w = world.cellGrid.getWidth(); i < w; ++i) {
-                for (int j = 0, h = world.cellGrid.getHeight(); j < h; ++j) {
-                    final Cell cell = cells[i][j];
-                    final CellObject cellObject = cell.getObject();
-                    if (cellObject == null) {
-                        float k = cell.getSunLight() / MAX_SUN_LIGHT;
-                        shapeRenderer.setColor(
-                                nightR + diffR * k,
-                                nightG + diffG * k,
-                                nightB + diffB * k,
-                                1);
-                    } else {
-                        if (cellObject instanceof Seed) {
+            for (int i = 0, w = snapshot.width, h = snapshot.height; i < w; ++i) {
+                for (int j = 0; j < h; ++j) {
+                    final int index = i * h + j;
+                    final byte type = types[index];
+                    switch (type) {
+                        case WorldSnapshot.EMPTY: {
+                            float k = values[index] / MAX_SUN_LIGHT;
+                            shapeRenderer.setColor(
+                                    nightR + diffR * k,
+                                    nightG + diffG * k,
+                                    nightB + diffB * k,
+                                    1);
+                            break;
+                        }
+                        case WorldSnapshot.SEED:
                             shapeRenderer.setColor(SEED_COLOR);
+                            break;
+                        case WorldSnapshot.SHOOT:
+                        case WorldSnapshot.WOOD:
+                        case WorldSnapshot.DEAD: {
+                            Color.rgba8888ToColor(treeColor, colors[index]);
 
-                        } else if (cellObject instanceof TreePart) {
-                            TreePart part = (TreePart) cellObject;
-                            Color treeColor = part.getTree().getColor();
-
-                            float progress = (part.getLightAbsorption() - TREE_PART_MIN_ABSORPTION)
+                            float progress = (values[index] - TREE_PART_MIN_ABSORPTION)
                                     / (float) (TREE_PART_MAX_ABSORPTION - TREE_PART_MIN_ABSORPTION);
                             float o = MathUtils.lerp(0.5f, 1f, progress);
                             if (o > 1f) o = 1f;
                             float k = 1;
-                            if (part.getType() == TreePartType.SHOOT) k = 1.3f;
-                            else if (part.getType() == TreePartType.DEAD) {
+                            if (type == WorldSnapshot.SHOOT) k = 1.3f;
+                            else if (type == WorldSnapshot.DEAD) {
                                 k = 0.5f;
                                 o *= 1.2f;
                             }
@@ -160,11 +169,13 @@ public class GameWorldRenderer extends AbstractRenderer {
                                     (k * treeColor.g - MID_COLOR.g) * o + MID_COLOR.g,
                                     (k * treeColor.b - MID_COLOR.b) * o + MID_COLOR.b,
                                     1f);
-
-                        } else if (cellObject instanceof LightSource) {
+                            break;
+                        }
+                        case WorldSnapshot.LIGHT_SOURCE:
                             shapeRenderer.setColor(LIGHT_SOURCE_COLOR);
-                        } else {
-                            float k = 1 - cellObject.getLightAbsorption() / MAX_ABSORPTION;
+                            break;
+                        default: {
+                            float k = 1 - values[index] / MAX_ABSORPTION;
                             shapeRenderer.setColor(
                                     absR + daR * k,
                                     absG + daG * k,
@@ -180,12 +191,11 @@ public class GameWorldRenderer extends AbstractRenderer {
             shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
 //        Gdx.gl.glEnable(GL20.GL_BLEND);
             Gdx.gl20.glLineWidth(1f / ((OrthographicCamera) viewport.getCamera()).zoom);
-            for (int i = 0, w = world.cellGrid.getWidth(); i < w; ++i) {
-                Cell[] col = cells[i];
-                for (int j = 0, h = world.cellGrid.getHeight(); j < h; ++j) {
-                    CellObject treePart = col[j].getObject();
-                    if (treePart != null) {
-                        if (treePart instanceof TreePart && ((TreePart) treePart).getType() == TreePartType.SHOOT) {
+            for (int i = 0, w = snapshot.width, h = snapshot.height; i < w; ++i) {
+                for (int j = 0; j < h; ++j) {
+                    final byte type = types[i * h + j];
+                    if (type != WorldSnapshot.EMPTY) {
+                        if (type == WorldSnapshot.SHOOT) {
                             shapeRenderer.setColor(0.4f, 0.3f, 0f, 1f);
                         } else {
                             shapeRenderer.setColor(0.5f, 0.5f, 0.5f, 1f);
@@ -197,7 +207,7 @@ public class GameWorldRenderer extends AbstractRenderer {
             shapeRenderer.end();
 
             fbo.end();
-            lastTurnRendered = world.getTurn();
+            lastSequenceRendered = snapshot.sequence;
         }
 
         Texture texture = fbo.getColorBufferTexture();
@@ -0,0 +1,447 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.Pool;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+import com.gordonfromblumberg.games.core.common.utils.IndexedArray;
+import com.gordonfromblumberg.games.core.evotree.model.*;
+
+import java.io.IOException;
+
+/**
+ * State of the world recorded by {@link WorldJournal}: objects of the cells, seeds and trees with their energy.
+ * Is restored by {@link JournalReader} for any recorded turn from a keyframe and the changes of the following turns.
+ */
+public class JournalFrame {
+    final int width;
+    final int height;
+    // cell index = x * height + y, types of WorldSnapshot
+    final byte[] types;
+    // id of the seed or the tree which the cell object belongs to, 0 for other objects
+    final int[] owners;
+    final IntMap<SeedRecord> seeds = new IntMap<>();
+    final IntMap<TreeRecord> trees = new IntMap<>();
+
+    private final Pool<SeedRecord> seedPool = new Pool<SeedRecord>() {
+        @Override
+        protected SeedRecord newObject() {
+            return new SeedRecord();
+        }
+    };
+    private final Pool<TreeRecord> treePool = new Pool<TreeRecord>() {
+        @Override
+        protected TreeRecord newObject() {
+            return new TreeRecord();
+        }
+    };
+
+    // reused by writeDelta
+    private final IntArray changes = new IntArray();
+    // ids of the added and removed records and pairs of id and energy change of the last update
+    private final IntArray added = new IntArray();
+    private final IntArray removed = new IntArray();
+    private final IntArray energyChanges = new IntArray();
+
+    int turn = -1;
+    private int fills;
+
+    public JournalFrame(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.types = new byte[width * height];
+        this.owners = new int[width * height];
+    }
+
+    /**
+     * Copies the whole state of the world
+     */
+    void fill(GameWorld world) {
+        final CellGrid grid = world.cellGrid;
+        for (int i = 0, w = width, h = height; i < w; ++i) {
+            for (int j = 0; j < h; ++j) {
+                updateCell(grid, i, j, i * h + j);
+            }
+        }
+
+        final int stamp = ++fills;
+        updateSeeds(world.seeds, stamp);
+        removeUnstamped(seeds, seedPool, stamp);
+        updateTrees(world.trees, stamp);
+        removeUnstamped(trees, treePool, stamp);
+        turn = world.getTurn();
+    }
+
+    // returns true if the type or the owner of the cell is changed
+    private boolean updateCell(CellGrid grid, int x, int y, int index) {
+        final CellObject cellObject = grid.getObject(x, y);
+        final byte type;
+        final int owner;
+        if (cellObject == null) {
+            type = WorldSnapshot.EMPTY;
+            owner = 0;
+        } else if (cellObject instanceof TreePart) {
+            TreePart part = (TreePart) cellObject;
+            TreePartType partType = part.getType();
+            type = partType == TreePartType.SHOOT ? WorldSnapshot.SHOOT
+                    : partType == TreePartType.WOOD ? WorldSnapshot.WOOD
+                    : WorldSnapshot.DEAD;
+            owner = part.getTree().getId();
+        } else if (cellObject instanceof Seed) {
+            type = WorldSnapshot.SEED;
+            owner = ((Seed) cellObject).getId();
+        } else {
+            type = cellObject instanceof LightSource ? WorldSnapshot.LIGHT_SOURCE : WorldSnapshot.OTHER;
+            owner = 0;
+        }
+        if (types[index] == type && owners[index] == owner) {
+            return false;
+        }
+        types[index] = type;
+        owners[index] = owner;
+        return true;
+    }
+
+    // records are updated in place, records of removed objects are not stamped
+    private void updateSeeds(IndexedArray<Seed> worldSeeds, int stamp) {
+        added.clear();
+        energyChanges.clear();
+        for (int i = 0, n = worldSeeds.size; i < n; ++i) {
+            Seed seed = worldSeeds.get(i);
+            SeedRecord record = update(seeds, seedPool, seed.getId(), seed.getEnergy(), stamp);
+            record.generation = seed.getGeneration();
+        }
+    }
+
+    private void updateTrees(IndexedArray<Tree> worldTrees, int stamp) {
+        added.clear();
+        energyChanges.clear();
+        for (int i = 0, n = worldTrees.size; i < n; ++i) {
+            Tree tree = worldTrees.get(i);
+            TreeRecord record = update(trees, treePool, tree.getId(), tree.getEnergy(), stamp);
+            record.generation = tree.getGeneration();
+            record.species = tree.getSpecies() != null ? tree.getSpecies().getId() : 0;
+            record.rootX = tree.getRoot().getX();
+            record.rootY = tree.getRoot().getY();
+        }
+    }
+
+    // collects added records and changes of energy
+    private <T extends ObjectRecord> T update(IntMap<T> records, Pool<T> pool, int id, int energy, int stamp) {
+        T record = records.get(id);
+        if (record == null) {
+            record = pool.obtain();
+            record.id = id;
+            records.put(id, record);
+            added.add(id);
+        } else if (record.energy != energy) {
+            energyChanges.add(id, energy - record.energy);
+        }
+        record.energy = energy;
+        record.stamp = stamp;
+        return record;
+    }
+
+    // collects ids of the removed records
+    private <T extends ObjectRecord> void removeUnstamped(IntMap<T> records, Pool<T> pool, int stamp) {
+        removed.clear();
+        final IntMap.Values<T> values = records.values();
+        while (values.hasNext()) {
+            T record = values.next();
+            if (record.stamp != stamp) {
+                values.remove();
+                removed.add(record.id);
+                pool.free(record);
+            }
+        }
+    }
+
+    private static <T extends ObjectRecord> void clear(IntMap<T> records, Pool<T> pool) {
+        for (T record : records.values()) {
+            pool.free(record);
+        }
+        records.clear();
+    }
+
+    void writeKeyframe(BinaryOutput out) throws IOException {
+        out.writeBytes(types, 0, types.length);
+        for (int owner : owners) {
+            out.writeVarInt(owner);
+        }
+        out.writeVarInt(seeds.size);
+        for (SeedRecord seed : seeds.values()) {
+            seed.write(out);
+        }
+        out.writeVarInt(trees.size);
+        for (TreeRecord tree : trees.values()) {
+            tree.write(out);
+        }
+    }
+
+    void readKeyframe(BinaryInput in) throws IOException {
+        in.readBytes(types, 0, types.length);
+        for (int i = 0; i < owners.length; ++i) {
+            owners[i] = in.readVarInt();
+        }
+        clear(seeds, seedPool);
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            SeedRecord seed = seedPool.obtain();
+            seed.read(in);
+            seeds.put(seed.id, seed);
+        }
+        clear(trees, treePool);
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            TreeRecord tree = treePool.obtain();
+            tree.read(in);
+            trees.put(tree.id, tree);
+        }
+    }
+
+    /**
+     * Updates the frame to the state of the world and writes the changes: cells, removed and added seeds and trees,
+     * changes of energy. Only the given cells are compared, so the frame should be filled before
+     * and all cells changed after that should be given, see {@link CellGrid#drainChangedCells(IntArray)}.
+     * Moves of objects and light sources are written as changes of their old and new cells
+     * @param changedCells Cells as {@code x * height + y} in increasing order
+     */
+    void writeDelta(GameWorld world, IntArray changedCells, BinaryOutput out) throws IOException {
+        final CellGrid grid = world.cellGrid;
+        final IntArray changes = this.changes;
+        changes.clear();
+        for (int k = 0, h = height; k < changedCells.size; ++k) {
+            final int index = changedCells.get(k);
+            final int x = index / h;
+            if (updateCell(grid, x, index - x * h, index)) {
+                changes.add(index);
+            }
+        }
+        out.writeVarInt(changes.size);
+        // indices are increasing, so gaps are written
+        int last = -1;
+        for (int k = 0; k < changes.size; ++k) {
+            int i = changes.get(k);
+            out.writeVarInt(i - last - 1);
+            out.writeByte(types[i]);
+            out.writeVarInt(owners[i]);
+            last = i;
+        }
+
+        final int stamp = ++fills;
+        updateSeeds(world.seeds, stamp);
+        writeObjects(seeds, seedPool, stamp, out);
+        updateTrees(world.trees, stamp);
+        writeObjects(trees, treePool, stamp, out);
+        turn = world.getTurn();
+    }
+
+    // writes ids of the removed records, the added records and changes of energy of the last update
+    private <T extends ObjectRecord> void writeObjects(IntMap<T> records, Pool<T> pool, int stamp,
+                                                       BinaryOutput out) throws IOException {
+        removeUnstamped(records, pool, stamp);
+        writeInts(removed, out);
+        final IntArray added = this.added;
+        out.writeVarInt(added.size);
+        for (int i = 0; i < added.size; ++i) {
+            records.get(added.get(i)).write(out);
+        }
+        final IntArray energyChanges = this.energyChanges;
+        out.writeVarInt(energyChanges.size / 2);
+        for (int i = 0; i < energyChanges.size; i += 2) {
+            out.writeVarInt(energyChanges.get(i));
+            out.writeSignedVarInt(energyChanges.get(i + 1));
+        }
+    }
+
+    private static void writeInts(IntArray values, BinaryOutput out) throws IOException {
+        out.writeVarInt(values.size);
+        for (int i = 0; i < values.size; ++i) {
+            out.writeVarInt(values.get(i));
+        }
+    }
+
+    /**
+     * Applies changes written by {@link #writeDelta(GameWorld, IntArray, BinaryOutput)}
+     */
+    void applyDelta(BinaryInput in) throws IOException {
+        final byte[] types = this.types;
+        final int[] owners = this.owners;
+        int index = -1;
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            index += in.readVarInt() + 1;
+            if (index >= types.length) {
+                throw new IOException("Cell " + index + " is out of the grid");
+            }
+            types[index] = in.readByte();
+            owners[index] = in.readVarInt();
+        }
+
+        applyObjects(seeds, seedPool, in);
+        applyObjects(trees, treePool, in);
+    }
+
+    private static <T extends ObjectRecord> void applyObjects(IntMap<T> records, Pool<T> pool,
+                                                              BinaryInput in) throws IOException {
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            int id = in.readVarInt();
+            T record = records.remove(id);
+            if (record == null) {
+                throw new IOException("Removed object #" + id + " is unknown");
+            }
+            pool.free(record);
+        }
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            T record = pool.obtain();
+            record.read(in);
+            records.put(record.id, record);
+        }
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            int id = in.readVarInt();
+            T record = records.get(id);
+            if (record == null) {
+                throw new IOException("Object #" + id + " is unknown");
+            }
+            record.energy += in.readSignedVarInt();
+        }
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return One of the types of {@link WorldSnapshot}
+     */
+    public byte getType(int x, int y) {
+        return types[x * height + y];
+    }
+
+    /**
+     * @return Id of the seed or the tree which the object of the cell belongs to, 0 for other objects
+     */
+    public int getOwner(int x, int y) {
+        return owners[x * height + y];
+    }
+
+    public SeedRecord getSeed(int id) {
+        return seeds.get(id);
+    }
+
+    public TreeRecord getTree(int id) {
+        return trees.get(id);
+    }
+
+    public int getSeedCount() {
+        return seeds.size;
+    }
+
+    public int getTreeCount() {
+        return trees.size;
+    }
+
+    /**
+     * @return Own iterator of the seeds in no particular order
+     */
+    public Iterable<SeedRecord> getSeeds() {
+        return new IntMap.Values<>(seeds);
+    }
+
+    /**
+     * @return Own iterator of the trees in no particular order
+     */
+    public Iterable<TreeRecord> getTrees() {
+        return new IntMap.Values<>(trees);
+    }
+
+    /**
+     * Seed or tree of the frame
+     */
+    public abstract static class ObjectRecord {
+        int id;
+        int generation;
+        int energy;
+        // number of the fill which has updated the record
+        int stamp;
+
+        abstract void write(BinaryOutput out) throws IOException;
+
+        abstract void read(BinaryInput in) throws IOException;
+
+        public int getId() {
+            return id;
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        public int getEnergy() {
+            return energy;
+        }
+    }
+
+    public static class SeedRecord extends ObjectRecord {
+        @Override
+        void write(BinaryOutput out) throws IOException {
+            out.writeVarInt(id);
+            out.writeVarInt(generation);
+            out.writeSignedVarInt(energy);
+        }
+
+        @Override
+        void read(BinaryInput in) throws IOException {
+            id = in.readVarInt();
+            generation = in.readVarInt();
+            energy = in.readSignedVarInt();
+        }
+    }
+
+    public static class TreeRecord extends ObjectRecord {
+        int species;
+        int rootX;
+        int rootY;
+
+        @Override
+        void write(BinaryOutput out) throws IOException {
+            out.writeVarInt(id);
+            out.writeVarInt(generation);
+            out.writeVarInt(species);
+            out.writeVarInt(rootX);
+            out.writeVarInt(rootY);
+            out.writeSignedVarInt(energy);
+        }
+
+        @Override
+        void read(BinaryInput in) throws IOException {
+            id = in.readVarInt();
+            generation = in.readVarInt();
+            species = in.readVarInt();
+            rootX = in.readVarInt();
+            rootY = in.readVarInt();
+            energy = in.readSignedVarInt();
+        }
+
+        /**
+         * @return Id of the species or 0 if the tree is not registered
+         */
+        public int getSpecies() {
+            return species;
+        }
+
+        public int getRootX() {
+            return rootX;
+        }
+
+        public int getRootY() {
+            return rootY;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongArray;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Restores frames of the journal written by {@link WorldJournal}. Only headers of the blocks are read on opening,
+ * a frame is restored from the nearest keyframe before its turn and the following changes.
+ * An incomplete block at the end of the file, e.g. of a crashed run, is ignored.
+ */
+public class JournalReader implements Closeable {
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int keyframeInterval;
+
+    // first turns and positions of the blocks in order of turns
+    private final IntArray blockTurns = new IntArray();
+    private final IntArray blockLastTurns = new IntArray();
+    private final LongArray blockPositions = new LongArray();
+    private final Inflater inflater = new Inflater();
+
+    // the last decompressed block, frames of the same block are read often one after another
+    private int cachedBlock = -1;
+    private byte[] cachedRecords;
+
+    /**
+     * @param channel Channel of the journal file, is closed with the reader
+     */
+    public JournalReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        final ByteBuffer header = read(0, WorldJournal.HEADER_SIZE);
+        if (header.getInt() != WorldJournal.MAGIC) {
+            throw new IOException("Not a journal");
+        }
+        final int version = header.getInt();
+        if (version != WorldJournal.VERSION) {
+            throw new IOException("Unsupported version " + version + " of journal");
+        }
+        width = header.getInt();
+        height = header.getInt();
+        keyframeInterval = header.getInt();
+
+        final long size = channel.size();
+        long position = WorldJournal.HEADER_SIZE;
+        while (position + WorldJournal.BLOCK_HEADER_SIZE <= size) {
+            ByteBuffer blockHeader = read(position, WorldJournal.BLOCK_HEADER_SIZE);
+            int firstTurn = blockHeader.getInt();
+            int lastTurn = blockHeader.getInt();
+            blockHeader.getInt();
+            int compressedLength = blockHeader.getInt();
+            if (position + WorldJournal.BLOCK_HEADER_SIZE + compressedLength > size) {
+                break;
+            }
+            blockTurns.add(firstTurn);
+            blockLastTurns.add(lastTurn);
+            blockPositions.add(position);
+            position += WorldJournal.BLOCK_HEADER_SIZE + compressedLength;
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of journal");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return New frame for {@link #read(int, JournalFrame)}
+     */
+    public JournalFrame createFrame() {
+        return new JournalFrame(width, height);
+    }
+
+    /**
+     * Restores the state of the world at the turn. If the turn was not recorded, the last recorded state before it is restored
+     * @param frame Frame of this journal which is filled
+     * @return The frame
+     */
+    public JournalFrame read(int turn, JournalFrame frame) throws IOException {
+        if (frame.width != width || frame.height != height) {
+            throw new IllegalArgumentException("Frame " + frame.width + "x" + frame.height
+                    + " does not fit journal " + width + "x" + height);
+        }
+        if (blockTurns.isEmpty() || turn < blockTurns.first()) {
+            throw new IllegalArgumentException("Turn " + turn + " is not in the journal");
+        }
+        int block = blockTurns.size - 1;
+        while (blockTurns.get(block) > turn) --block;
+
+        final BinaryInput in = new BinaryInput(Channels.newChannel(new ByteArrayInputStream(getRecords(block))));
+        if (in.readByte() != WorldJournal.KEYFRAME) {
+            throw new IOException("Block " + block + " does not start with keyframe");
+        }
+        frame.turn = in.readVarInt();
+        frame.readKeyframe(in);
+        final int lastTurn = blockLastTurns.get(block);
+        while (frame.turn < lastTurn) {
+            if (in.readByte() != WorldJournal.DELTA) {
+                throw new IOException("Unexpected keyframe in block " + block);
+            }
+            int recordTurn = in.readVarInt();
+            if (recordTurn > turn) {
+                break;
+            }
+            frame.applyDelta(in);
+            frame.turn = recordTurn;
+        }
+        return frame;
+    }
+
+    private byte[] getRecords(int block) throws IOException {
+        if (block == cachedBlock) {
+            return cachedRecords;
+        }
+        final long position = blockPositions.get(block);
+        final ByteBuffer header = read(position, WorldJournal.BLOCK_HEADER_SIZE);
+        header.position(2 * Integer.BYTES);
+        final byte[] records = new byte[header.getInt()];
+        final ByteBuffer compressed = read(position + WorldJournal.BLOCK_HEADER_SIZE, header.getInt());
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, compressed.limit());
+        try {
+            int length = 0;
+            while (length < records.length && !inflater.finished()) {
+                int inflated = inflater.inflate(records, length, records.length - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    throw new IOException("Block " + block + " is truncated");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Block " + block + " is corrupted", e);
+        }
+        cachedBlock = block;
+        cachedRecords = records;
+        return records;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public int getKeyframeCount() {
+        return blockTurns.size;
+    }
+
+    /**
+     * @return First recorded turn or -1 if the journal is empty
+     */
+    public int getFirstTurn() {
+        return blockTurns.isEmpty() ? -1 : blockTurns.first();
+    }
+
+    /**
+     * @return Last recorded turn or -1 if the journal is empty
+     */
+    public int getLastTurn() {
+        return blockLastTurns.isEmpty() ? -1 : blockLastTurns.peek();
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
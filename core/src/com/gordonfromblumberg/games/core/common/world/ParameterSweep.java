@@ -0,0 +1,106 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongArray;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+
+/**
+ * Definition of a parameter sweep: values of config properties to vary and seeds of worlds.
+ * Every combination of the values is run with every seed, runs are numbered from 0
+ * so that the seed changes fastest, then the value of the last varied property and so on.
+ */
+public class ParameterSweep {
+    private final Array<String> keys = new Array<>();
+    private final Array<String[]> values = new Array<>();
+    private final LongArray seeds = new LongArray();
+
+    /**
+     * Adds a property to vary, it takes each of the values in turn
+     * @param key Config property, e.g. {@code world.sunLight} or {@code dna.mutationChance}
+     */
+    public void vary(String key, String... values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("No values of " + key);
+        }
+        if (keys.contains(key, false)) {
+            throw new IllegalArgumentException(key + " is already varied");
+        }
+        keys.add(key);
+        this.values.add(values);
+    }
+
+    /**
+     * Adds a property to vary
+     * @param values Comma-separated values
+     */
+    public void vary(String key, String values) {
+        String[] split = values.split(",");
+        for (int i = 0; i < split.length; ++i) {
+            split[i] = split[i].trim();
+        }
+        vary(key, split);
+    }
+
+    public void addSeed(long seed) {
+        seeds.add(seed);
+    }
+
+    /**
+     * Adds seeds from comma-separated list, each item is a seed or an inclusive range like {@code 1-20}
+     */
+    public void addSeeds(String seeds) {
+        for (String item : seeds.split(",")) {
+            item = item.trim();
+            int dash = item.indexOf('-', 1);
+            if (dash < 0) {
+                addSeed(Long.parseLong(item));
+            } else {
+                long from = Long.parseLong(item.substring(0, dash).trim());
+                long to = Long.parseLong(item.substring(dash + 1).trim());
+                if (to < from) {
+                    throw new IllegalArgumentException("Empty range of seeds " + item);
+                }
+                for (long seed = from; seed <= to; ++seed) {
+                    addSeed(seed);
+                }
+            }
+        }
+    }
+
+    public int getRunCount() {
+        int count = seeds.size;
+        for (String[] keyValues : values) {
+            count *= keyValues.length;
+        }
+        return count;
+    }
+
+    public Array<String> getKeys() {
+        return keys;
+    }
+
+    public long getSeed(int run) {
+        return seeds.get(run % seeds.size);
+    }
+
+    /**
+     * @return Value of the varied property with the index in the run
+     */
+    public String getValue(int run, int key) {
+        int combination = run / seeds.size;
+        for (int i = keys.size - 1; i > key; --i) {
+            combination /= values.get(i).length;
+        }
+        String[] keyValues = values.get(key);
+        return keyValues[combination % keyValues.length];
+    }
+
+    /**
+     * Sets values of the varied properties of the run to the config
+     */
+    public void apply(int run, ConfigManager config) {
+        for (int i = 0; i < keys.size; ++i) {
+            config.setString(keys.get(i), getValue(run, i));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Triple buffer of world snapshots. One thread (simulation) writes to the back snapshot and publishes it,
+ * another one (render) takes the latest published snapshot. Each snapshot is owned by one side at a time,
+ * so none of them is read while being written.
+ */
+public class SnapshotExchange {
+    private final AtomicReference<WorldSnapshot> ready;
+    // is owned by the writer
+    private WorldSnapshot back;
+    // is owned by the reader
+    private WorldSnapshot front;
+    // reader has taken the last published snapshot
+    private volatile boolean requested = true;
+    // number of published snapshots, is owned by the writer
+    private int sequence;
+
+    SnapshotExchange(int width, int height) {
+        ready = new AtomicReference<>(new WorldSnapshot(width, height));
+        back = new WorldSnapshot(width, height);
+        front = new WorldSnapshot(width, height);
+    }
+
+    /**
+     * Writer side. The snapshot is filled only if the previous one has been taken by the reader,
+     * so the simulation does not copy the world more often than it is rendered.
+     * @return False if the snapshot is not filled, the world should be published later
+     */
+    boolean publish(GameWorld world) {
+        if (!requested) {
+            return false;
+        }
+        requested = false;
+        back.fill(world);
+        back.sequence = ++sequence;
+        back = ready.getAndSet(back);
+        return true;
+    }
+
+    /**
+     * Reader side. Takes the latest published snapshot if it is newer than the current one
+     * @return The current snapshot of the reader
+     */
+    WorldSnapshot acquire() {
+        if (ready.get().sequence > front.sequence) {
+            front = ready.getAndSet(front);
+            requested = true;
+        }
+        return front;
+    }
+
+    /**
+     * Reader side
+     * @return The last snapshot taken by {@link #acquire()}
+     */
+    WorldSnapshot current() {
+        return front;
+    }
+}
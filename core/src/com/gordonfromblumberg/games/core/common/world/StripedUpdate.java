@@ -0,0 +1,297 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.badlogic.gdx.utils.Array;
+import com.gordonfromblumberg.games.core.common.utils.IndexedArray;
+import com.gordonfromblumberg.games.core.evotree.model.CellGrid;
+import com.gordonfromblumberg.games.core.evotree.model.GeneticRules;
+import com.gordonfromblumberg.games.core.evotree.model.Seed;
+import com.gordonfromblumberg.games.core.evotree.model.Tree;
+import com.gordonfromblumberg.games.core.evotree.model.WorldPools;
+import com.gordonfromblumberg.games.core.evotree.world.EvoTreeWorld;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates seeds and trees of {@link GameWorld} in vertical stripes on the common fork-join pool.
+ * Each stripe consists of two halves, a stripe may change its own columns and the nearest halves of
+ * the neighbor stripes, so stripes of the same color (even or odd) do not intersect and are updated at the same time.
+ * Even stripes are updated first, then odd ones. Seeds and trees which do not fit into their stripe are updated
+ * serially after that. Half boundaries are multiples of the chunk size, so stripes do not share chunks.
+ * Cross-stripe effects (new seeds and trees, their ids, removal from the world and pollination) are collected
+ * by the stripes and applied at the end of the turn in order of the stripes.
+ */
+class StripedUpdate {
+    // wide stripes leave less seeds and trees to the serial update
+    private static final int MIN_STRIPE_WIDTH = 64;
+
+    private final GameWorld world;
+    private final int width;
+    private final Stripe[] stripes;
+    private final Stripe[][] colors;
+    // seeds and trees which do not fit into any stripe
+    private final Stripe rest;
+    private final int[] stripeByColumn;
+    private final RecursiveAction phase = new RecursiveAction() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            Stripe[] stripes = colors[color];
+            for (Stripe stripe : stripes) {
+                stripe.reinitialize();
+            }
+            invokeAll(stripes);
+        }
+    };
+    private int color;
+    // trees updated by the rest and seeds dropped by them since the creation
+    private long restTreeCount, restNewSeedCount;
+
+    /**
+     * @param stripeCount Number of stripes, should be even and at least 4,
+     *                    see {@link #getMaxStripeCount(int, int)}
+     */
+    StripedUpdate(GameWorld world, int width, int chunkSize, int stripeCount) {
+        if (stripeCount < 4 || stripeCount % 2 != 0 || stripeCount > getMaxStripeCount(width, chunkSize)) {
+            throw new IllegalArgumentException("Incorrect stripe count " + stripeCount
+                    + " for width " + width + " and chunk size " + chunkSize);
+        }
+        this.world = world;
+        this.width = width;
+        this.stripes = new Stripe[stripeCount];
+        this.colors = new Stripe[][] { new Stripe[stripeCount / 2], new Stripe[stripeCount / 2] };
+        this.stripeByColumn = new int[width];
+
+        final int halfCount = 2 * stripeCount;
+        final int[] halfByColumn = new int[width];
+        for (int i = 0; i < halfCount; ++i) {
+            int start = i * width / halfCount / chunkSize * chunkSize;
+            int end = i + 1 < halfCount ? (i + 1) * width / halfCount / chunkSize * chunkSize : width;
+            for (int x = start; x < end; ++x) {
+                halfByColumn[x] = i;
+                stripeByColumn[x] = i / 2;
+            }
+        }
+        for (int i = 0; i < stripeCount; ++i) {
+            boolean[] columns = new boolean[width];
+            for (int x = 0; x < width; ++x) {
+                // own halves and the nearest halves of the neighbors
+                columns[x] = Math.floorMod(halfByColumn[x] - (2 * i - 1), halfCount) < 4;
+            }
+            stripes[i] = new Stripe(columns);
+            colors[i % 2][i / 2] = stripes[i];
+        }
+        this.rest = new Stripe(null);
+    }
+
+    /**
+     * @return Maximum number of stripes for the grid, it is even
+     */
+    static int getMaxStripeCount(int width, int chunkSize) {
+        return width / chunkSize / 2 / 2 * 2;
+    }
+
+    /**
+     * @return Even number of stripes for the grid, it may be less than 4 for narrow grids
+     */
+    static int getStripeCount(int width, int chunkSize) {
+        return Math.min(width / MIN_STRIPE_WIDTH / 2 * 2, getMaxStripeCount(width, chunkSize));
+    }
+
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    long getRestTreeCount() {
+        return restTreeCount;
+    }
+
+    long getRestNewSeedCount() {
+        return restNewSeedCount;
+    }
+
+    boolean isAvailableColumn(int stripe, int x) {
+        return stripes[stripe].isAvailableColumn(x);
+    }
+
+    /**
+     * Makes updates of seeds and trees for one turn
+     */
+    void update(IndexedArray<Seed> seeds, IndexedArray<Tree> trees) {
+        final Stripe[] stripes = this.stripes;
+        final int[] stripeByColumn = this.stripeByColumn;
+        for (int i = 0, n = seeds.size; i < n; ++i) {
+            Seed seed = seeds.get(i);
+            stripes[stripeByColumn[seed.getCell().getX()]].seeds.add(seed);
+        }
+        for (int i = 0, n = trees.size; i < n; ++i) {
+            Tree tree = trees.get(i);
+            stripes[stripeByColumn[tree.getRoot().getX()]].trees.add(tree);
+        }
+
+        final ForkJoinPool pool = ForkJoinPool.commonPool();
+        for (color = 0; color < colors.length; ++color) {
+            phase.reinitialize();
+            pool.invoke(phase);
+        }
+        for (Stripe stripe : stripes) {
+            rest.seeds.addAll(stripe.restSeeds);
+            rest.trees.addAll(stripe.restTrees);
+        }
+        restTreeCount += rest.trees.size;
+        rest.compute();
+        restNewSeedCount += rest.newSeeds.size;
+
+        merge();
+    }
+
+    private void merge() {
+        for (Stripe stripe : stripes) {
+            for (Tree tree : stripe.pollinators) {
+                world.pollinate(tree);
+            }
+        }
+        for (Tree tree : rest.pollinators) {
+            world.pollinate(tree);
+        }
+
+        // in order of the stripes, so the order of seeds and trees in the world is the same in every run
+        for (Stripe stripe : stripes) {
+            remove(stripe);
+        }
+        remove(rest);
+
+        for (Stripe stripe : stripes) {
+            addNew(stripe);
+            stripe.clear();
+        }
+        addNew(rest);
+        rest.clear();
+    }
+
+    private void remove(Stripe stripe) {
+        for (Seed seed : stripe.removedSeeds) {
+            world.removeSeed(seed);
+        }
+        for (Tree tree : stripe.removedTrees) {
+            world.removeTree(tree);
+        }
+    }
+
+    private void addNew(Stripe stripe) {
+        for (Seed seed : stripe.newSeeds) {
+            world.addSeed(seed);
+        }
+        for (Tree tree : stripe.newTrees) {
+            world.addTree(tree);
+            // a tree is not updated at the turn it is sprouted, the update only ends this turn for it
+            tree.update(world);
+        }
+    }
+
+    private class Stripe extends RecursiveAction implements EvoTreeWorld {
+        private static final long serialVersionUID = 1L;
+
+        // null if all columns are available
+        private final boolean[] columns;
+        final Array<Seed> seeds = new Array<>();
+        final Array<Tree> trees = new Array<>();
+        // which did not fit into the stripe at the moment of update
+        final Array<Seed> restSeeds = new Array<>();
+        final Array<Tree> restTrees = new Array<>();
+
+        final Array<Seed> newSeeds = new Array<>();
+        final Array<Seed> removedSeeds = new Array<>();
+        final Array<Tree> newTrees = new Array<>();
+        final Array<Tree> removedTrees = new Array<>();
+        final Array<Tree> pollinators = new Array<>();
+
+        Stripe(boolean[] columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        protected void compute() {
+            final CellGrid grid = world.getGrid();
+            for (Seed seed : seeds) {
+                // the seed may have been pushed by a tree of the previous phase
+                if (!seed.canUpdate(this)) {
+                    restSeeds.add(seed);
+                } else if (seed.update(this)) {
+                    grid.removeCellObject(seed);
+                    removedSeeds.add(seed);
+                }
+            }
+            for (Tree tree : trees) {
+                if (!tree.canUpdate(this)) {
+                    restTrees.add(tree);
+                } else if (tree.update(this)) {
+                    removedTrees.add(tree);
+                }
+            }
+        }
+
+        void clear() {
+            seeds.clear();
+            trees.clear();
+            restSeeds.clear();
+            restTrees.clear();
+            newSeeds.clear();
+            removedSeeds.clear();
+            newTrees.clear();
+            removedTrees.clear();
+            pollinators.clear();
+        }
+
+        @Override
+        public void addSeed(Seed seed) {
+            newSeeds.add(seed);
+        }
+
+        @Override
+        public void removeSeed(Seed seed) {
+            removedSeeds.add(seed);
+        }
+
+        @Override
+        public void addTree(Tree tree) {
+            newTrees.add(tree);
+        }
+
+        @Override
+        public void pollinate(Tree tree) {
+            pollinators.add(tree);
+        }
+
+        @Override
+        public boolean isAvailableColumn(int x) {
+            if (columns == null) {
+                return true;
+            }
+            if (x < 0) x += width;
+            else if (x >= width) x -= width;
+            return columns[x];
+        }
+
+        @Override
+        public long getTurnSeed() {
+            return world.getTurnSeed();
+        }
+
+        @Override
+        public CellGrid getGrid() {
+            return world.getGrid();
+        }
+
+        @Override
+        public GeneticRules getGeneticRules() {
+            return world.getGeneticRules();
+        }
+
+        @Override
+        public WorldPools getPools() {
+            return world.getPools();
+        }
+    }
+}
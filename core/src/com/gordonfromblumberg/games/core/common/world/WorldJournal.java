@@ -0,0 +1,241 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.log.Logger;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+import com.gordonfromblumberg.games.core.evotree.model.CellGrid;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Records the world turn by turn for replaying it later, read by {@link JournalReader}.
+ * A keyframe with the whole {@link JournalFrame} is written every {@code keyframeInterval} turns,
+ * other turns are written as changes from the previous recorded turn. Only the cells changed by the turn
+ * are compared, the grid collects them while the journal is recorded, so a turn costs O(changes + objects).
+ * A keyframe and the following changes make a block. It is collected by the recording thread
+ * and is passed to a background thread which compresses and writes it, so the simulation only compares frames
+ * and meets the writer once a block. A block is passed when the next keyframe is recorded,
+ * so the journal of a crashed run is readable up to the last complete block.
+ * <p>File layout: header ({@code int} magic, version, width, height, keyframe interval), then blocks:
+ * {@code int} first turn, last turn, raw length, compressed length and the deflated records.
+ * A record is a kind byte, the varint turn and the keyframe or the changes.
+ */
+public class WorldJournal implements Closeable {
+    private static final Logger log = LogManager.create(WorldJournal.class);
+
+    // "EVOJ"
+    static final int MAGIC = 0x45564F4A;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 5 * Integer.BYTES;
+    static final int BLOCK_HEADER_SIZE = 4 * Integer.BYTES;
+    static final byte KEYFRAME = 0;
+    static final byte DELTA = 1;
+
+    private static final int QUEUE_CAPACITY = 4;
+    private static final Block END = new Block(null, 0, 0);
+
+    private final WritableByteChannel channel;
+    private final int keyframeInterval;
+    private final BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writerThread;
+    private volatile IOException failure;
+
+    // records of the current block
+    private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+    private final BinaryOutput out = new BinaryOutput(Channels.newChannel(blockBytes));
+    private CellGrid grid;
+    // state of the last recorded turn
+    private JournalFrame frame;
+    private final IntArray changedCells = new IntArray();
+    private int keyframeTurn;
+    private boolean closed;
+
+    /**
+     * @param channel Channel of the journal file, is closed with the journal
+     * @param keyframeInterval Number of turns between keyframes
+     */
+    public WorldJournal(WritableByteChannel channel, int keyframeInterval) {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval should be positive");
+        }
+        this.channel = channel;
+        this.keyframeInterval = keyframeInterval;
+        writerThread = new Thread(this::writeBlocks, "Journal writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Records the state of the world after its turn, should be called by the thread which makes turns
+     */
+    public void record(GameWorld world) throws IOException {
+        checkFailure();
+        if (frame == null) {
+            grid = world.cellGrid;
+            grid.trackChanges();
+            frame = new JournalFrame(grid.getWidth(), grid.getHeight());
+            writeHeader();
+        } else if (world.cellGrid != grid) {
+            throw new IllegalArgumentException("Journal records another world");
+        }
+        changedCells.clear();
+        grid.drainChangedCells(changedCells);
+        final int turn = world.getTurn();
+        final boolean keyframe = frame.turn < 0 || turn - keyframeTurn >= keyframeInterval;
+        if (keyframe) {
+            passBlock();
+        }
+        out.writeByte(keyframe ? KEYFRAME : DELTA);
+        out.writeVarInt(turn);
+        if (keyframe) {
+            frame.fill(world);
+            frame.writeKeyframe(out);
+            keyframeTurn = turn;
+        } else {
+            frame.writeDelta(world, changedCells, out);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(frame.width)
+                .putInt(frame.height)
+                .putInt(keyframeInterval);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    // passes the recorded turns to the writer thread
+    private void passBlock() throws IOException {
+        out.flush();
+        if (blockBytes.size() == 0) {
+            return;
+        }
+        put(new Block(blockBytes.toByteArray(), keyframeTurn, frame.turn));
+        blockBytes.reset();
+    }
+
+    private void put(Block block) throws IOException {
+        try {
+            blocks.put(block);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while the journal is written");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Journal is not written", failure);
+        }
+    }
+
+    /**
+     * Loop of the writer thread
+     */
+    private void writeBlocks() {
+        final Deflater deflater = new Deflater();
+        byte[] compressed = new byte[1 << 16];
+        try {
+            Block block;
+            while ((block = blocks.take()) != END) {
+                // after a failure blocks are taken till the end, so the simulation is not blocked
+                if (failure == null) {
+                    try {
+                        compressed = writeBlock(block, deflater, compressed);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            log.warn("Journal writer is interrupted");
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // returns the buffer for compressed data, it grows if a block does not fit
+    private byte[] writeBlock(Block block, Deflater deflater, byte[] compressed) throws IOException {
+        final byte[] raw = block.records;
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                byte[] grown = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, grown, 0, length);
+                compressed = grown;
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        header.putInt(block.firstTurn)
+                .putInt(block.lastTurn)
+                .putInt(raw.length)
+                .putInt(length);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        final ByteBuffer data = ByteBuffer.wrap(compressed, 0, length);
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        log.debug("Journal block of turns " + block.firstTurn + "-" + block.lastTurn + ": " + raw.length + " -> " + length + " bytes");
+        return compressed;
+    }
+
+    /**
+     * Writes the recorded turns, waits for the writer thread and closes the channel
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (frame != null) {
+                passBlock();
+                grid.stopTrackingChanges();
+            }
+            put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while the journal is closed");
+        } finally {
+            channel.close();
+        }
+        checkFailure();
+    }
+
+    private static class Block {
+        final byte[] records;
+        final int firstTurn;
+        final int lastTurn;
+
+        Block(byte[] records, int firstTurn, int lastTurn) {
+            this.records = records;
+            this.firstTurn = firstTurn;
+            this.lastTurn = lastTurn;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.badlogic.gdx.graphics.Color;
+import com.gordonfromblumberg.games.core.evotree.model.*;
+
+/**
+ * Copy of the world state which is required for rendering.
+ * Is filled by the simulation and is read by the renderer and UI without locks,
+ * see {@link SnapshotExchange}.
+ */
+public class WorldSnapshot {
+    public static final byte EMPTY = 0;
+    public static final byte SEED = 1;
+    public static final byte SHOOT = 2;
+    public static final byte WOOD = 3;
+    public static final byte DEAD = 4;
+    public static final byte LIGHT_SOURCE = 5;
+    public static final byte OTHER = 6;
+
+    final int width;
+    final int height;
+    // cell index = x * height + y
+    final byte[] types;
+    // sun light for empty cells, light absorption for other
+    final int[] values;
+    // rgba8888 tree color for tree parts
+    final int[] colors;
+
+    // number of the publication, the world may be published again at the same turn
+    int sequence;
+    int turn = -1;
+    int seedCount;
+    int maxSeeds;
+    int treeCount;
+    int maxTrees;
+    int maxGeneration;
+    int sunLight;
+    final CellProbe probe = new CellProbe();
+
+    WorldSnapshot(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.types = new byte[width * height];
+        this.values = new int[width * height];
+        this.colors = new int[width * height];
+    }
+
+    void fill(GameWorld world) {
+        final CellGrid grid = world.cellGrid;
+        final byte[] types = this.types;
+        final int[] values = this.values;
+        final int[] colors = this.colors;
+        for (int i = 0, w = width, h = height; i < w; ++i) {
+            for (int j = 0; j < h; ++j) {
+                final int index = i * h + j;
+                final CellObject cellObject = grid.getObject(i, j);
+                if (cellObject == null) {
+                    types[index] = EMPTY;
+                    values[index] = grid.getSunLight(i, j);
+                } else if (cellObject instanceof TreePart) {
+                    TreePart part = (TreePart) cellObject;
+                    TreePartType type = part.getType();
+                    types[index] = type == TreePartType.SHOOT ? SHOOT : type == TreePartType.WOOD ? WOOD : DEAD;
+                    values[index] = part.getLightAbsorption();
+                    colors[index] = Color.rgba8888(part.getTree().getColor());
+                } else {
+                    types[index] = cellObject instanceof Seed ? SEED
+                            : cellObject instanceof LightSource ? LIGHT_SOURCE
+                            : OTHER;
+                    values[index] = cellObject.getLightAbsorption();
+                }
+            }
+        }
+
+        turn = world.getTurn();
+        seedCount = world.getSeedCount();
+        maxSeeds = world.getMaxSeeds();
+        treeCount = world.getTreeCount();
+        maxTrees = world.getMaxTrees();
+        maxGeneration = world.getMaxGeneration();
+        sunLight = world.getSunLight();
+        probe.fill(world, world.probeX, world.probeY);
+    }
+
+    public byte getType(int x, int y) {
+        return types[x * height + y];
+    }
+
+    public int getValue(int x, int y) {
+        return values[x * height + y];
+    }
+
+    public int getColor(int x, int y) {
+        return colors[x * height + y];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * @return Number of the publication, it changes whenever the snapshot should be drawn again
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int getSeedCount() {
+        return seedCount;
+    }
+
+    public int getMaxSeeds() {
+        return maxSeeds;
+    }
+
+    public int getTreeCount() {
+        return treeCount;
+    }
+
+    public int getMaxTrees() {
+        return maxTrees;
+    }
+
+    public int getMaxGeneration() {
+        return maxGeneration;
+    }
+
+    public int getSunLight() {
+        return sunLight;
+    }
+
+    /**
+     * @return State of the cell chosen by {@link GameWorld#probe(float, float)}
+     */
+    public CellProbe getProbe() {
+        return probe;
+    }
+}
@@ -1,5 +1,10 @@
 package com.gordonfromblumberg.games.core.evotree.model;
 
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+
+import java.io.IOException;
+
 public abstract class AbstractLightDistribution implements LightDistribution {
     protected int turn = 1;
     protected int width;
@@ -31,4 +36,14 @@ public abstract class AbstractLightDistribution implements LightDistribution {
     public int nextTurn() {
         return ++turn;
     }
+
+    @Override
+    public void writeState(BinaryOutput out) throws IOException {
+        out.writeSignedVarInt(turn);
+    }
+
+    @Override
+    public void readState(BinaryInput in) throws IOException {
+        turn = in.readSignedVarInt();
+    }
 }
@@ -1,6 +1,10 @@
 package com.gordonfromblumberg.games.core.evotree.model;
 
 import com.badlogic.gdx.utils.ObjectMap;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+
+import java.io.IOException;
 
 public abstract class AbstractLightDistributionDecorator implements LightDistribution {
     protected static final ObjectMap<String, LightDistributionDecoratorProducer> decorators = new ObjectMap<>(4);
@@ -35,6 +39,16 @@ public abstract class AbstractLightDistributionDecorator implements LightDistrib
         return original.nextTurn();
     }
 
+    @Override
+    public void writeState(BinaryOutput out) throws IOException {
+        original.writeState(out);
+    }
+
+    @Override
+    public void readState(BinaryInput in) throws IOException {
+        original.readState(in);
+    }
+
     @FunctionalInterface
     public interface LightDistributionDecoratorProducer {
         AbstractLightDistributionDecorator create(LightDistribution original, ObjectMap<String, Object> params);
@@ -17,11 +17,11 @@ public enum Action {
             final int requiredEnergy = 10;
             final Tree tree = treePart.tree;
             int seedEnergy = tree.energy / tree.shootCount;
-            if (seedEnergy > Tree.MAX_ENERGY_PER_SEED) seedEnergy = Tree.MAX_ENERGY_PER_SEED;
+            if (seedEnergy > tree.context.maxEnergyPerSeed) seedEnergy = tree.context.maxEnergyPerSeed;
             if (tree.energy > requiredEnergy + seedEnergy) {
                 tree.energy -= requiredEnergy + seedEnergy;
                 --tree.shootCount;
-                Seed seed = tree.createSeed(seedEnergy, treePart.cell, grid, treePart);
+                Seed seed = tree.createSeed(seedEnergy, treePart.cell, world, treePart);
                 world.addSeed(seed);
                 return true;
             }
@@ -35,13 +35,13 @@ public enum Action {
             final int requiredEnergy = 20;
             final Tree tree = treePart.tree;
             int seedEnergy = (tree.energy / tree.shootCount) / 2;
-            if (seedEnergy > Tree.MAX_ENERGY_PER_SEED) seedEnergy = Tree.MAX_ENERGY_PER_SEED;
+            if (seedEnergy > tree.context.maxEnergyPerSeed) seedEnergy = tree.context.maxEnergyPerSeed;
             if (tree.energy > requiredEnergy + seedEnergy) {
                 tree.energy -= requiredEnergy + seedEnergy;
                 for (Direction dir : priorityDirs) {
                     Cell seedCell = grid.getCell(treePart.cell, dir);
-                    if (seedCell != null && seedCell.object == null) {
-                        Seed seed = tree.createSeed(seedEnergy, seedCell, grid, treePart);
+                    if (seedCell != null && seedCell.getObject() == null) {
+                        Seed seed = tree.createSeed(seedEnergy, seedCell, world, treePart);
                         world.addSeed(seed);
                         break;
                     }
@@ -53,7 +53,7 @@ public enum Action {
     BECOME_WOOD((byte) -4) {
         @Override
         boolean act(CellGrid grid, TreePart treePart, EvoTreeWorld world) {
-            treePart.becomeWood();
+            treePart.becomeWood(grid);
             return false;
         }
     },
@@ -69,13 +69,13 @@ public enum Action {
         boolean act(CellGrid grid, TreePart treePart, EvoTreeWorld world) {
             TreePart parent = treePart.parent;
             if (parent != null && parent.type == TreePartType.WOOD) {
-                parent.type = TreePartType.SHOOT;
+                parent.setType(TreePartType.SHOOT, grid);
                 parent.activeGene = treePart.activeGene;
                 parent.buffer.set(treePart.buffer);
             } else {
                 --treePart.tree.shootCount;
             }
-            treePart.die();
+            treePart.die(grid);
             return true;
         }
     },
@@ -86,6 +86,7 @@ public enum Action {
             if (treePart.tree.energy > requiredEnergy) {
                 treePart.tree.energy -= requiredEnergy;
                 ++treePart.lightAbsorption;
+                grid.markDirty(treePart.cell);
             }
             return false;
         }
@@ -95,6 +96,7 @@ public enum Action {
         boolean act(CellGrid grid, TreePart treePart, EvoTreeWorld world) {
             if (treePart.lightAbsorption > 0) {
                 --treePart.lightAbsorption;
+                grid.markDirty(treePart.cell);
             }
             return false;
         }
@@ -1,34 +1,34 @@
 package com.gordonfromblumberg.games.core.evotree.model;
 
+/**
+ * View of one cell of {@link CellGrid}, the state itself is stored in the grid
+ */
 public class Cell {
-    int x, y;
-    int sunLight;
-    boolean underSun;
-    CellObject object;
+    final CellGrid grid;
+    final int x, y;
+    final int index;
 
-    Cell(int x, int y) {
+    Cell(CellGrid grid, int x, int y, int index) {
+        this.grid = grid;
         this.x = x;
         this.y = y;
-    }
-
-    void updateSunLight(int light) {
-        sunLight = light < 0 ? 0 : light;
+        this.index = index;
     }
 
     public int getSunLight() {
-        return object != null ? sunLight - object.getLightAbsorption() : sunLight;
+        return grid.getSunLight(index);
     }
 
     public boolean isUnderSun() {
-        return underSun;
+        return (grid.flags[index] & CellGrid.UNDER_SUN) != 0;
     }
 
     public CellObject getObject() {
-        return object;
+        return grid.objects[index];
     }
 
     public void setObject(CellObject object) {
-        this.object = object;
+        grid.setObject(index, object);
     }
 
     public int getX() {
@@ -1,9 +1,25 @@
 package com.gordonfromblumberg.games.core.evotree.model;
 
-import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
 import com.badlogic.gdx.utils.Queue;
 import com.gordonfromblumberg.games.core.common.chunk.ChunkManager;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+import com.gordonfromblumberg.games.core.common.utils.IntBucketQueue;
+import com.gordonfromblumberg.games.core.common.utils.IntQueue;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Consumer;
+
+/**
+ * Cell state is stored in flat arrays indexed by {@link #index(int, int)}.
+ * The arrays are padded by one ghost row at the bottom and at the top and by one ghost column at the left and
+ * at the right, so a neighbor index is always {@code index + offset} and never goes out of bounds.
+ * Ghost rows are opaque for light, ghost columns are mapped to the opposite side of the grid.
+ * {@link Cell} is a view of a cell and is created on demand.
+ */
 public class CellGrid {
     private static final int[][] NEIGHBORS = new int[][] {
             {0, 1},
@@ -11,68 +27,256 @@ public class CellGrid {
             {0, -1},
             {-1, 0}
     };
-    private static final Queue<Cell> CELL_QUEUE = new Queue<>();
+    // full recalculation is used if more than 1/MAX_DIRTY_PART of cells are changed
+    private static final int MAX_DIRTY_PART = 8;
+    private static final int MAX_LIGHT = Short.MAX_VALUE;
+    // narrower strips would exchange more light than they propagate
+    private static final int MIN_LIGHT_STRIP_WIDTH = 8;
+    // parallel propagation is not worth to start for a few cells
+    private static final int MIN_PARALLEL_QUEUE_SIZE = 256;
+
+    static final byte UNDER_SUN = 1;
+    static final byte DIRTY = 1 << 1;
+    // cell does not receive light: ghost rows and light sources
+    static final byte OPAQUE = 1 << 2;
 
     int width, height;
     int cellSize;
-    public final Cell[][] cells;
+    private final int chunkSize;
+    // index distance between neighbor columns
+    final int stride;
+    private final int firstIndex;
+    private final int endIndex;
+    private final int wrapShift;
+    // index offsets in order of direction codes
+    final int[] neighborOffsets;
+
+    final short[] sunLight;
+    // light absorption of cell objects at the moment of the last light update
+    final short[] absorption;
+    final byte[] flags;
+    final CellObject[] objects;
+    private final Cell[] views;
+
     private final int[] treeHeights;
+    // highest occupied cell and number of occupied cells of each column, are kept by setObject()
+    private final int[] columnTops;
+    private final int[] columnCounts;
+    // columns with occupied top cell, is changed under its own lock
+    private final BitSet fullColumns;
     private final ChunkManager<CellObject> chunkManager;
     private final Queue<LightSource> lightSources = new Queue<>();
 
+    private boolean incrementalLighting;
+    // cells which object or its light absorption was changed since the last light update
+    private final IntQueue dirtyCells = new IntQueue();
+    private final IntQueue darkCells = new IntQueue();
+    // cells which object or its type was changed since the last drain, null if changes are not tracked
+    private IntArray changedCells;
+    // marks of the cells in changedCells by grid index
+    private long[] changedMarks;
+    // cells to propagate light from by their light, the brightest go first
+    private final IntBucketQueue lightQueue = new IntBucketQueue();
+    private ParallelLightPropagation parallelLightPropagation;
+    private boolean lightInitialized;
+    // is used as a stamp of the light state
+    private int lightUpdates;
+    private float lastLightAbsorption;
+
     public CellGrid(int width, int height, int cellSize, int chunkSize) {
         this.width = width;
         this.height = height;
         this.cellSize = cellSize;
-        this.cells = new Cell[width][height];
-        this.treeHeights = new int[width];
+        this.chunkSize = chunkSize;
+        this.stride = height + 2;
+        this.firstIndex = stride;
+        this.endIndex = (width + 1) * stride;
+        this.wrapShift = width * stride;
+        this.neighborOffsets = new int[NEIGHBORS.length];
+        for (Direction dir : Direction.ALL) {
+            int[] dc = NEIGHBORS[dir.getCode()];
+            neighborOffsets[dir.getCode()] = dc[0] * stride + dc[1];
+        }
 
-        for (int i = 0; i < width; ++i) {
-            for (int j = 0; j < height; ++j) {
-                this.cells[i][j] = new Cell(i, j);
-            }
+        final int size = (width + 2) * stride;
+        this.sunLight = new short[size];
+        this.absorption = new short[size];
+        this.flags = new byte[size];
+        this.objects = new CellObject[size];
+        this.views = new Cell[size];
+        for (int i = 0, n = width + 2; i < n; ++i) {
+            flags[i * stride] = OPAQUE;
+            flags[i * stride + height + 1] = OPAQUE;
         }
+        this.treeHeights = new int[width];
+        this.columnTops = new int[width];
+        Arrays.fill(columnTops, -1);
+        this.columnCounts = new int[width];
+        this.fullColumns = new BitSet(width);
 
         this.chunkManager = new ChunkManager<>(width, height, chunkSize);
     }
 
+    int index(int x, int y) {
+        return (x + 1) * stride + y + 1;
+    }
+
+    /**
+     * @return Index of the neighbor, ghost columns are mapped to the opposite side
+     */
+    int neighbor(int index, int offset) {
+        int result = index + offset;
+        if (result < firstIndex) return result + wrapShift;
+        if (result >= endIndex) return result - wrapShift;
+        return result;
+    }
+
+    /**
+     * Recalculates sun light of all cells, or only of the regions affected by the changes made since
+     * the previous call if incremental lighting is enabled. Both ways give the same result.
+     */
     public void updateSunLight(LightDistribution lightDistribution) {
-        final Cell[][] cells = this.cells;
-        final Queue<Cell> cellQueue = CELL_QUEUE;
-        final float lightAbsorption = lightDistribution.getLightAbsorption();
+        ++lightUpdates;
+        if (incrementalLighting && lightInitialized
+                && lightDistribution.getLightAbsorption() == lastLightAbsorption
+                && dirtyCells.size <= width * height / MAX_DIRTY_PART) {
+            updateSunLightIncremental(lightDistribution);
+        } else {
+            updateSunLightFull(lightDistribution);
+        }
+    }
 
-        for (int i = 0, w = width; i < w; ++i) {
-            for (int j = 0, h = height; j < h; ++j) {
-                cells[i][j].sunLight = 0;
+    private void updateSunLightFull(LightDistribution lightDistribution) {
+        final short[] sunLight = this.sunLight;
+        final byte[] flags = this.flags;
+
+        for (int i = firstIndex, n = endIndex; i < n; ++i) {
+            sunLight[i] = 0;
+            updateAbsorption(i);
+        }
+        final IntQueue dirtyCells = this.dirtyCells;
+        while (dirtyCells.notEmpty()) {
+            flags[dirtyCells.removeFirst()] &= ~DIRTY;
+        }
+
+        spreadLightFromSources(lightDistribution);
+        propagateLight(lightDistribution);
+
+        lightInitialized = true;
+        lastLightAbsorption = lightDistribution.getLightAbsorption();
+    }
+
+    /**
+     * Light emitted by a cell is always less than its own light, so each lit cell gets its light from a neighbor
+     * with greater light. At first the cells which could be lit through the dirty cells are darkened:
+     * a neighbor of a darkened cell is darkened too if its light is less, otherwise it keeps its light
+     * and becomes a boundary. Then the light is propagated again from the light sources and the boundary.
+     */
+    private void updateSunLightIncremental(LightDistribution lightDistribution) {
+        final short[] sunLight = this.sunLight;
+        final byte[] flags = this.flags;
+        final int[] neighborOffsets = this.neighborOffsets;
+        final IntQueue dirtyCells = this.dirtyCells;
+        final IntQueue darkCells = this.darkCells;
+        final IntBucketQueue lightQueue = this.lightQueue;
+
+        while (dirtyCells.notEmpty()) {
+            int cell = dirtyCells.removeFirst();
+            flags[cell] &= ~DIRTY;
+            updateAbsorption(cell);
+            if ((flags[cell] & OPAQUE) != 0) {
+                sunLight[cell] = 0;
+            }
+            // the light emitted by the cell has changed, so everything it could light is suspicious
+            for (int offset : neighborOffsets) {
+                int neib = neighbor(cell, offset);
+                if ((flags[neib] & OPAQUE) == 0) {
+                    darkCells.addLast(neib);
+                }
+            }
+        }
+
+        while (darkCells.notEmpty()) {
+            int cell = darkCells.removeFirst();
+            int light = sunLight[cell];
+            if (light == 0)
+                continue;
+
+            sunLight[cell] = 0;
+            for (int offset : neighborOffsets) {
+                int neib = neighbor(cell, offset);
+                int neibLight = sunLight[neib];
+                if ((flags[neib] & OPAQUE) == 0 && neibLight > 0) {
+                    if (neibLight < light) {
+                        darkCells.addLast(neib);
+                    } else {
+                        lightQueue.add(neib, neibLight);
+                    }
+                }
             }
         }
 
+        spreadLightFromSources(lightDistribution);
+        propagateLight(lightDistribution);
+    }
+
+    private void updateAbsorption(int cell) {
+        CellObject object = objects[cell];
+        int value = object != null ? object.getLightAbsorption() : 0;
+        absorption[cell] = (short) (value > MAX_LIGHT ? MAX_LIGHT : value);
+    }
+
+    private void spreadLightFromSources(LightDistribution lightDistribution) {
+        final short[] sunLight = this.sunLight;
+        final byte[] flags = this.flags;
+        final int[] neighborOffsets = this.neighborOffsets;
+        final IntBucketQueue lightQueue = this.lightQueue;
+
         for (LightSource lightSource : lightSources) {
-            Cell lightSourceCell = lightSource.cell;
+            int cell = index(lightSource.cell.x, lightSource.cell.y);
             int light = nextLight(lightSource.light, lightDistribution);
-            for (Direction dir : Direction.ALL) {
-                Cell neib = getCell(lightSourceCell, dir);
-                if (neib != null && !(neib.object instanceof LightSource)) {
-                    cellQueue.addLast(neib);
-                    if (light > neib.sunLight) {
-                        neib.updateSunLight(light);
+            if (light > MAX_LIGHT) light = MAX_LIGHT;
+            for (int offset : neighborOffsets) {
+                int neib = neighbor(cell, offset);
+                if ((flags[neib] & OPAQUE) == 0) {
+                    if (light > sunLight[neib]) {
+                        sunLight[neib] = (short) light;
                     }
+                    lightQueue.add(neib, sunLight[neib]);
                 }
             }
         }
+    }
+
+    private void propagateLight(LightDistribution lightDistribution) {
+        if (parallelLightPropagation != null && lightQueue.size >= MIN_PARALLEL_QUEUE_SIZE) {
+            parallelLightPropagation.propagate(lightQueue, lightDistribution.getLightAbsorption());
+            return;
+        }
+
+        final short[] sunLight = this.sunLight;
+        final short[] absorption = this.absorption;
+        final byte[] flags = this.flags;
+        final int[] neighborOffsets = this.neighborOffsets;
+        final IntBucketQueue lightQueue = this.lightQueue;
 
-        while (cellQueue.notEmpty()) {
-            Cell cell = cellQueue.removeFirst();
-            int light = nextLight(cell.getSunLight(), lightDistribution);
-            if (light == cell.getSunLight()) --light;
+        while (lightQueue.notEmpty()) {
+            int cell = lightQueue.removeFirst();
+            // the cell has got more light after it was queued and has been processed already
+            if (sunLight[cell] != lightQueue.getLastPriority())
+                continue;
+
+            int cellLight = sunLight[cell] - absorption[cell];
+            int light = nextLight(cellLight, lightDistribution);
+            if (light == cellLight) --light;
             if (light <= 0)
                 continue;
 
-            for (Direction dir : Direction.ALL) {
-                Cell neib = getCell(cell, dir);
-                if (neib != null && !(neib.object instanceof LightSource) && neib.sunLight < light) {
-                    neib.updateSunLight(light);
-                    cellQueue.addLast(neib);
+            for (int offset : neighborOffsets) {
+                int neib = neighbor(cell, offset);
+                if ((flags[neib] & OPAQUE) == 0 && sunLight[neib] < light) {
+                    sunLight[neib] = (short) light;
+                    lightQueue.add(neib, light);
                 }
             }
         }
@@ -83,26 +287,33 @@ public class CellGrid {
     }
 
     public void updateSunLightOld(LightDistribution lightDistribution) {
-        final Cell[][] cells = this.cells;
+        final short[] sunLight = this.sunLight;
+        final byte[] flags = this.flags;
+        final CellObject[] objects = this.objects;
         final int[] treeHeights = this.treeHeights;
         // go from top to bottom and calculate sunlight for each cell
         // and write to treeHeights the first cell is not under sun
         for (int i = 0, w = width; i < w; ++i) {
-            Cell[] col = cells[i];
             boolean treeHeightUpdated = false;
             for (int h = height, j = h - 1; j >= 0; --j) {
-                Cell cell = col[j];
+                int cell = index(i, j);
                 int light = lightDistribution.getLight(i, j);
 
                 if (j == h - 1) {
-                    cell.underSun = true;
-                    cell.updateSunLight(light);
+                    flags[cell] |= UNDER_SUN;
+                    sunLight[cell] = (short) (light < 0 ? 0 : light);
                 } else {
-                    Cell upperCell = cells[i][j + 1];
-                    cell.underSun = upperCell.underSun && upperCell.object == null;
-                    cell.updateSunLight(cell.underSun ? light : upperCell.sunLight - 2);
+                    int upperCell = cell + 1;
+                    boolean underSun = (flags[upperCell] & UNDER_SUN) != 0 && objects[upperCell] == null;
+                    if (underSun) {
+                        flags[cell] |= UNDER_SUN;
+                    } else {
+                        flags[cell] &= ~UNDER_SUN;
+                    }
+                    int value = underSun ? light : sunLight[upperCell] - 2;
+                    sunLight[cell] = (short) (value < 0 ? 0 : value);
 
-                    if (!cell.underSun && !treeHeightUpdated) {
+                    if (!underSun && !treeHeightUpdated) {
                         treeHeights[i] = j;
                         treeHeightUpdated = true;
                     }
@@ -121,17 +332,17 @@ public class CellGrid {
 
             int treeHeight = treeHeights[l];
             for (; treeHeight >= 0; --treeHeight) {
-                calcLight(cells[l][treeHeight], cells[i][treeHeight].sunLight - 2, Direction.left);
+                calcLight(index(l, treeHeight), sunLight[index(i, treeHeight)] - 2, Direction.left);
             }
             treeHeight = treeHeights[r];
             for (; treeHeight >= 0; --treeHeight) {
-                calcLight(cells[r][treeHeight], cells[i][treeHeight].sunLight - 2, Direction.right);
+                calcLight(index(r, treeHeight), sunLight[index(i, treeHeight)] - 2, Direction.right);
             }
         }
     }
 
-    private void calcLight(Cell cell, int light, Direction dir) {
-        int old = cell.getSunLight();
+    private void calcLight(int cell, int light, Direction dir) {
+        int old = getSunLight(cell);
         if (light > old) {
 //            if (cell.updateSunLight(light) > old) {
 //                for (Direction d : Direction.ALL) {
@@ -156,7 +367,13 @@ public class CellGrid {
         if (cellY < 0 || cellY >= height) {
             return null;
         }
-        return cells[cellX][cellY];
+        // may be called from render thread, so the view is not cached to keep views of the simulation unique
+        Cell cell = views[index(cellX, cellY)];
+        return cell != null ? cell : new Cell(this, cellX, cellY, index(cellX, cellY));
+    }
+
+    public Cell getCell(int x, int y) {
+        return cell(index(x, y));
     }
 
     public Cell getCell(Cell cell, Direction dir) {
@@ -165,41 +382,162 @@ public class CellGrid {
         if (y < 0 || y >= height) {
             return null;
         }
-        int x = cell.x + dc[0];
-        if (x < 0) x = width - 1;
-        if (x == width) x = 0;
-        return cells[x][y];
+        return cell(neighbor(cell.index, neighborOffsets[dir.getCode()]));
+    }
+
+    private Cell cell(int index) {
+        Cell cell = views[index];
+        if (cell == null) {
+            cell = new Cell(this, index / stride - 1, index % stride - 1, index);
+            views[index] = cell;
+        }
+        return cell;
+    }
+
+    /**
+     * @return Sun light of the cell minus light absorption of its object
+     */
+    public int getSunLight(int x, int y) {
+        return getSunLight(index(x, y));
+    }
+
+    int getSunLight(int index) {
+        CellObject object = objects[index];
+        return object != null ? sunLight[index] - object.getLightAbsorption() : sunLight[index];
+    }
+
+    public CellObject getObject(int x, int y) {
+        return objects[index(x, y)];
+    }
+
+    // the only place objects are set, keeps the column index
+    void setObject(int index, CellObject object) {
+        final CellObject old = objects[index];
+        objects[index] = object;
+        if (changedCells != null) {
+            markChanged(index);
+        }
+        if ((old == null) == (object == null)) {
+            return;
+        }
+
+        final int x = index / stride - 1;
+        final int y = index - (x + 1) * stride - 1;
+        if (object != null) {
+            ++columnCounts[x];
+            if (y > columnTops[x]) columnTops[x] = y;
+            if (y == height - 1) {
+                synchronized (fullColumns) {
+                    fullColumns.set(x);
+                }
+            }
+        } else {
+            --columnCounts[x];
+            if (y == height - 1) {
+                synchronized (fullColumns) {
+                    fullColumns.clear(x);
+                }
+            }
+            if (y == columnTops[x]) {
+                int top = -1;
+                if (columnCounts[x] > 0) {
+                    top = y - 1;
+                    while (objects[index(x, top)] == null) --top;
+                }
+                columnTops[x] = top;
+            }
+        }
+    }
+
+    /**
+     * @return y of the highest occupied cell of the column or -1 if the column is empty
+     */
+    public int getColumnTop(int x) {
+        return columnTops[x];
+    }
+
+    /**
+     * @return Free top cell of the column x or of the nearest column to the right of it,
+     * null if top cells of all columns are occupied
+     */
+    public Cell findFreeTopCell(int x) {
+        int column;
+        synchronized (fullColumns) {
+            column = fullColumns.nextClearBit(x);
+            if (column >= width) {
+                column = fullColumns.nextClearBit(0);
+            }
+        }
+        return column < width ? getCell(column, height - 1) : null;
+    }
+
+    /**
+     * Moves the object down through free cells
+     * @param maxDistance Maximum number of cells the object passes
+     * @return true if the object has been moved
+     */
+    public boolean fall(CellObject object, int maxDistance) {
+        final Cell cell = object.cell;
+        final int x = cell.x;
+        final int y = cell.y;
+        int distance;
+        if (columnCounts[x] == 1) {
+            // nothing is below the object
+            distance = Math.min(maxDistance, y);
+        } else {
+            final CellObject[] objects = this.objects;
+            final int index = cell.index;
+            distance = 0;
+            while (distance < maxDistance && distance < y && objects[index - distance - 1] == null) {
+                ++distance;
+            }
+        }
+        if (distance > 0) {
+            moveCellObjectTo(object, getCell(x, y - distance));
+            return true;
+        }
+        return false;
     }
 
     public void addCellObject(CellObject cellObject, int x, int y) {
-        addCellObject(cellObject, cells[x][y]);
+        addCellObject(cellObject, getCell(x, y));
     }
 
     public void addCellObject(CellObject cellObject, Cell cell) {
         cellObject.setCell(cell);
-        cell.object = cellObject;
-        if (cellObject instanceof TreePart && ((TreePart) cellObject).type == TreePartType.SHOOT) {
-            chunkManager.addObject(cellObject, cell.x, cell.y);
+        setObject(cell.index, cellObject);
+        markDirty(cell);
+        if (cellObject instanceof TreePart) {
+            updateShoot((TreePart) cellObject);
         }
         if (cellObject instanceof LightSource) {
+            flags[cell.index] |= OPAQUE;
             lightSources.addLast((LightSource) cellObject);
         }
     }
 
     public void moveLightSources() {
         LightSource first = lightSources.removeFirst();
-        removeCellObject(first);
+        removeFromCell(first);
         LightSource last = lightSources.last();
         Cell newCell = getCell(last.cell, Direction.right);
-        CellObject object = newCell.object;
+        CellObject object = newCell.getObject();
         if (object != null) {
             if (object instanceof Seed) {
                 ((Seed) object).energy = 0; // will be removed at next update()
             } else if (object instanceof TreePart) {
                 TreePart treePart = (TreePart) object;
+                if (treePart.type == TreePartType.SHOOT) {
+                    --treePart.tree.shootCount;
+                }
                 treePart.removeFromParent();
-                removeCellObject(treePart);
-                treePart.tree.treeParts.removeValue(treePart, true);
+                // the released part may be taken by another tree, its children should not refer to it
+                for (TreePart child : treePart.children) {
+                    child.parent = null;
+                }
+                removeFromCell(treePart);
+                treePart.tree.treeParts.remove(treePart);
+                treePart.release();
             }
         }
         addCellObject(first, newCell);
@@ -208,37 +546,273 @@ public class CellGrid {
     public void moveCellObjectTo(CellObject cellObject, Cell target) {
         Cell old = cellObject.cell;
         if (old != null) {
-            old.object = null;
+            setObject(old.index, null);
+            markDirty(old);
         }
         cellObject.setCell(target);
-        target.object = cellObject;
-        if (cellObject instanceof TreePart && ((TreePart) cellObject).type == TreePartType.SHOOT) {
-            if (old != null) {
-                chunkManager.removeObject(cellObject, old.x, old.y);
+        setObject(target.index, cellObject);
+        markDirty(target);
+        if (cellObject instanceof TreePart) {
+            TreePart part = (TreePart) cellObject;
+            if (part.chunkItem != null) {
+                chunkManager.removeObject(part.chunkItem);
+                part.chunkItem = chunkManager.addObject(part, target.x, target.y);
             }
-            chunkManager.addObject(cellObject, target.x, target.y);
         }
     }
 
     public void removeCellObject(CellObject cellObject) {
+        if (cellObject instanceof LightSource) {
+            lightSources.removeValue((LightSource) cellObject, true);
+        }
+        removeFromCell(cellObject);
+    }
+
+    // the object is not removed from the queue of light sources
+    private void removeFromCell(CellObject cellObject) {
         Cell cell = cellObject.cell;
         cellObject.setCell(null);
-        if (cell.object == cellObject) {
-            cell.object = null;
+        if (objects[cell.index] == cellObject) {
+            setObject(cell.index, null);
+            markDirty(cell);
         }
-        if (cellObject instanceof TreePart && ((TreePart) cellObject).type == TreePartType.SHOOT) {
-            chunkManager.removeObject(cellObject, cell.x, cell.y);
+        if (cellObject instanceof TreePart) {
+            TreePart part = (TreePart) cellObject;
+            if (part.chunkItem != null) {
+                chunkManager.removeObject(part.chunkItem);
+                part.chunkItem = null;
+            }
         }
         if (cellObject instanceof LightSource) {
-            lightSources.removeValue((LightSource) cellObject, true);
+            flags[cell.index] &= ~OPAQUE;
+        }
+    }
+
+    /**
+     * Should be called when a tree part on the grid becomes a shoot or stops being a shoot,
+     * only shoots are kept in the chunks
+     */
+    void updateShoot(TreePart part) {
+        if (changedCells != null) {
+            markChanged(part.cell.index);
+        }
+        if (part.type == TreePartType.SHOOT) {
+            if (part.chunkItem == null) {
+                part.chunkItem = chunkManager.addObject(part, part.cell.x, part.cell.y);
+            }
+        } else if (part.chunkItem != null) {
+            chunkManager.removeObject(part.chunkItem);
+            part.chunkItem = null;
+        }
+    }
+
+    /**
+     * Should be called when light absorption of the cell object is changed
+     * or the object is set bypassing the grid. May be called by several threads which change different cells
+     */
+    public void markDirty(Cell cell) {
+        final int index = cell.index;
+        synchronized (dirtyCells) {
+            if ((flags[index] & DIRTY) == 0) {
+                flags[index] |= DIRTY;
+                dirtyCells.addLast(index);
+            }
+        }
+        if (changedCells != null) {
+            markChanged(index);
+        }
+    }
+
+    /**
+     * Starts collecting cells which objects are set or change their type, see {@link #drainChangedCells(IntArray)}
+     */
+    public void trackChanges() {
+        if (changedCells == null) {
+            changedMarks = new long[(objects.length + 63) >>> 6];
+            changedCells = new IntArray();
+        }
+    }
+
+    public void stopTrackingChanges() {
+        changedCells = null;
+        changedMarks = null;
+    }
+
+    // may be called by several threads which change different cells
+    private void markChanged(int index) {
+        final IntArray changedCells = this.changedCells;
+        synchronized (changedCells) {
+            final long mark = 1L << index;
+            final int word = index >>> 6;
+            if ((changedMarks[word] & mark) == 0) {
+                changedMarks[word] |= mark;
+                changedCells.add(index);
+            }
+        }
+    }
+
+    /**
+     * Adds cells changed since the previous call to the array as {@code x * height + y} and sorts it.
+     * Changes should be tracked
+     */
+    public void drainChangedCells(IntArray cells) {
+        final IntArray changedCells = this.changedCells;
+        final long[] changedMarks = this.changedMarks;
+        final int[] items = changedCells.items;
+        for (int i = 0, n = changedCells.size; i < n; ++i) {
+            final int index = items[i];
+            // all marks of the word belong to drained cells
+            changedMarks[index >>> 6] = 0;
+            final int x = index / stride - 1;
+            cells.add(x * height + index - (x + 1) * stride - 1);
+        }
+        changedCells.clear();
+        cells.sort();
+    }
+
+    void writeCell(Cell cell, BinaryOutput out) throws IOException {
+        out.writeVarInt(cell.x);
+        out.writeVarInt(cell.y);
+    }
+
+    /**
+     * Reads coordinates written by {@link #writeCell(Cell, BinaryOutput)}
+     */
+    Cell readCell(BinaryInput in) throws IOException {
+        final int x = in.readVarInt();
+        final int y = in.readVarInt();
+        if (x >= width || y >= height) {
+            throw new IOException("Cell " + x + ", " + y + " is out of the grid " + width + "x" + height);
         }
+        return getCell(x, y);
     }
 
     /**
-     * x1, x2 may be < 0 and > width
+     * Writes the cell of the object and whether the cell refers to it. An object may be displaced
+     * from its cell by another one till it is removed, e.g. a seed by a light source
      */
-    public Array<CellObject> findObjectsUnderLine(int x1, int y1, int x2, int y2) {
-        return chunkManager.findObjectsUnderLine(x1, y1, x2, y2);
+    void writePlacement(CellObject object, BinaryOutput out) throws IOException {
+        writeCell(object.cell, out);
+        out.writeBoolean(objects[object.cell.index] != object);
+    }
+
+    /**
+     * Reads the placement written by {@link #writePlacement(CellObject, BinaryOutput)} and puts the object to its cell,
+     * should be called when the object is read
+     */
+    void readPlacement(CellObject object, BinaryInput in) throws IOException {
+        final Cell cell = readCell(in);
+        if (in.readBoolean()) {
+            object.setCell(cell);
+            if (object instanceof TreePart) {
+                updateShoot((TreePart) object);
+            }
+            if (object instanceof LightSource) {
+                lightSources.addLast((LightSource) object);
+            }
+            return;
+        }
+        if (objects[cell.index] != null) {
+            throw new IOException("Cell " + cell.x + ", " + cell.y + " is occupied already");
+        }
+        addCellObject(object, cell);
+    }
+
+    /**
+     * Writes the light sources in the order of their moving
+     */
+    public void writeLightSources(BinaryOutput out) throws IOException {
+        out.writeVarInt(lightSources.size);
+        for (LightSource lightSource : lightSources) {
+            out.writeSignedVarInt(lightSource.light);
+            writePlacement(lightSource, out);
+        }
+    }
+
+    public void removeLightSources() {
+        while (lightSources.notEmpty()) {
+            removeCellObject(lightSources.first());
+        }
+    }
+
+    /**
+     * Adds the read light sources, the light sources of the grid should be removed before
+     */
+    public void readLightSources(BinaryInput in) throws IOException {
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            readPlacement(new LightSource(in.readSignedVarInt()), in);
+        }
+    }
+
+    /**
+     * Writes the light of the cells and the cells changed since the last light update,
+     * so after reading the light is updated as it would be without saving
+     */
+    public void writeLight(BinaryOutput out) throws IOException {
+        out.writeVarInt(lightUpdates);
+        out.writeBoolean(lightInitialized);
+        out.writeFloat(lastLightAbsorption);
+        out.writeShorts(sunLight, 0, sunLight.length);
+        out.writeShorts(absorption, 0, absorption.length);
+        out.writeBytes(flags, 0, flags.length);
+        final IntQueue dirtyCells = this.dirtyCells;
+        out.writeVarInt(dirtyCells.size);
+        for (int i = 0, n = dirtyCells.size; i < n; ++i) {
+            out.writeVarInt(dirtyCells.get(i));
+        }
+    }
+
+    /**
+     * Reads the light written by {@link #writeLight(BinaryOutput)}, should be called after all objects are added
+     */
+    public void readLight(BinaryInput in) throws IOException {
+        lightUpdates = in.readVarInt();
+        lightInitialized = in.readBoolean();
+        lastLightAbsorption = in.readFloat();
+        in.readShorts(sunLight, 0, sunLight.length);
+        in.readShorts(absorption, 0, absorption.length);
+        in.readBytes(flags, 0, flags.length);
+        dirtyCells.clear();
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            int cell = in.readVarInt();
+            if (cell >= flags.length) {
+                throw new IOException("Dirty cell " + cell + " is out of the grid");
+            }
+            dirtyCells.addLast(cell);
+        }
+    }
+
+    int getLightUpdates() {
+        return lightUpdates;
+    }
+
+    public boolean isIncrementalLighting() {
+        return incrementalLighting;
+    }
+
+    public void setIncrementalLighting(boolean incrementalLighting) {
+        this.incrementalLighting = incrementalLighting;
+    }
+
+    public int getLightStrips() {
+        return parallelLightPropagation != null ? parallelLightPropagation.getStripCount() : 1;
+    }
+
+    /**
+     * Sets the number of vertical strips which propagate light in parallel
+     * @param count Number of strips, it is reduced for narrow grids. Light is propagated serially if it is less than 2
+     */
+    public void setLightStrips(int count) {
+        int maxCount = width / MIN_LIGHT_STRIP_WIDTH;
+        if (count > maxCount) count = maxCount;
+        parallelLightPropagation = count > 1 ? new ParallelLightPropagation(this, count) : null;
+    }
+
+    /**
+     * Passes shoots inside the rectangle to the consumer without copying, x may be < 0 and > width
+     */
+    public void forEachShootInRect(int x, int y, int width, int height, Consumer<? super CellObject> consumer) {
+        chunkManager.forEachInRect(x, y, width, height, consumer);
     }
 
     public int getWidth() {
@@ -252,4 +826,8 @@ public class CellGrid {
     public int getCellSize() {
         return cellSize;
     }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
 }
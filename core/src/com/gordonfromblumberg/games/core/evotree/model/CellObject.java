@@ -1,21 +1,18 @@
 package com.gordonfromblumberg.games.core.evotree.model;
 
-import com.badlogic.gdx.utils.Pool;
 import com.gordonfromblumberg.games.core.common.utils.Poolable;
 
 public class CellObject implements Poolable {
-    private static final Pool<CellObject> pool = new Pool<CellObject>() {
-        @Override
-        protected CellObject newObject() {
-            return new CellObject();
-        }
-    };
 
     protected Cell cell;
     protected int lightAbsorption;
 
     protected CellObject() {}
 
+    public Cell getCell() {
+        return cell;
+    }
+
     public void setCell(Cell cell) {
         this.cell = cell;
     }
@@ -27,7 +24,7 @@ public class CellObject implements Poolable {
     @Override
     public void reset() {
         if (cell != null) {
-            if (cell.object == this) {
+            if (cell.getObject() == this) {
                 throw new IllegalStateException("Do not reset an object until it is removed from the grid");
             }
             cell = null;
@@ -35,8 +32,10 @@ public class CellObject implements Poolable {
         lightAbsorption = 0;
     }
 
+    /**
+     * Returns the object to the pool of its world, objects which are not pooled (light sources) are dropped
+     */
     @Override
     public void release() {
-        pool.free(this);
     }
 }
@@ -1,5 +1,10 @@
 package com.gordonfromblumberg.games.core.evotree.model;
 
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+
+import java.io.IOException;
+
 public class ChangeLightByTime extends AbstractLightDistributionDecorator {
     private static final LightDistributionDecoratorProducer PRODUCER = (original, params) -> new ChangeLightByTime(
             original,
@@ -45,4 +50,18 @@ public class ChangeLightByTime extends AbstractLightDistributionDecorator {
         }
         return nextTurn;
     }
+
+    @Override
+    public void writeState(BinaryOutput out) throws IOException {
+        super.writeState(out);
+        out.writeSignedVarInt(shift);
+        out.writeSignedVarInt(step);
+    }
+
+    @Override
+    public void readState(BinaryInput in) throws IOException {
+        super.readState(in);
+        shift = in.readSignedVarInt();
+        step = in.readSignedVarInt();
+    }
 }
@@ -34,13 +34,13 @@ public enum Condition {
     LIGHT_LESS((byte) -6) {
         @Override
         boolean check(CellGrid grid, TreePart treePart, byte parameter) {
-            return treePart.calcLight(grid) <= parameter;
+            return treePart.getLight(grid) <= parameter;
         }
     },
     LIGHT_MORE((byte) -7) {
         @Override
         boolean check(CellGrid grid, TreePart treePart, byte parameter) {
-            return treePart.calcLight(grid) > parameter;
+            return treePart.getLight(grid) > parameter;
         }
     },
     TREE_HEIGHT_LESS((byte) -8) {
@@ -148,13 +148,13 @@ public enum Condition {
     LIGHT_ABSORBED_LESS((byte) -25) {
         @Override
         boolean check(CellGrid grid, TreePart treePart, byte parameter) {
-            return treePart.calcAbsorbedLight(grid) <= parameter;
+            return treePart.getAbsorbedLight(grid) <= parameter;
         }
     },
     LIGHT_ABSORBED_MORE((byte) -26) {
         @Override
         boolean check(CellGrid grid, TreePart treePart, byte parameter) {
-            return treePart.calcAbsorbedLight(grid) > parameter;
+            return treePart.getAbsorbedLight(grid) > parameter;
         }
     },
     ABSORPTION_LESS((byte) -27) {
@@ -1,83 +1,263 @@
 package com.gordonfromblumberg.games.core.evotree.model;
 
-import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
 import com.gordonfromblumberg.games.core.common.log.LogManager;
 import com.gordonfromblumberg.games.core.common.log.Logger;
-import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
 import com.gordonfromblumberg.games.core.common.utils.RandomGen;
 
+/**
+ * Genome of a seed, a tree or a pollen buffer of a shoot. Values of genes are stored in {@link GenomeArena}
+ * of the world, the number of genes is set by {@code dna.sproutGenesCount} of the world. The value of a gene is at {@code gene * Gene.VALUE_COUNT + valueIndex} of the genome.
+ * Empty DNA has no genome in the arena, all its values are -1.
+ * Copies share the genome until one of them is changed (copy on write), so most pollen buffers of shoots
+ * and seeds without mutations take no memory of their own.
+ */
 public class DNA {
     private static final Logger log = LogManager.create(DNA.class);
     static final int SEED_SPROUT_LIGHT = 0;
     static final int COLOR = 1;
     static final int LIFETIME = 2;
 
-    static final int SPROUT_GENES_COUNT;
-    static final int SPECIAL;
-    public static final int GENES_COUNT;
+    private final WorldContext context;
+    private int handle = -1;
+    // page of the arena and offset of the genome in it, the empty genome of the context if there is no genome
+    private byte[] values;
+    private int offset;
 
-    private static final float MUTATION_CHANCE;
+    DNA(WorldContext context) {
+        this.context = context;
+        this.values = context.emptyGenome;
+    }
 
-    static {
-        ConfigManager configManager = AbstractFactory.getInstance().configManager();
-        SPROUT_GENES_COUNT = configManager.getInteger("dna.sproutGenesCount");
-        int geneCount = SPROUT_GENES_COUNT;
-        SPECIAL = geneCount++;
-        GENES_COUNT = geneCount;
+    public void set(DNA original) {
+        if (original.handle == handle) {
+            return;
+        }
+        reset();
+        if (original.handle >= 0) {
+            context.arena.retain(original.handle);
+            handle = original.handle;
+            values = original.values;
+            offset = original.offset;
+        }
+    }
 
-        MUTATION_CHANCE = configManager.getFloat("dna.mutationChance");
+    /**
+     * Each gene is taken from a random parent, runs of genes of the same parent are copied at once
+     * Parents should be other DNA
+     */
+    public void set(DNA parent1, DNA parent2, RandomGen random) {
+        allocateOwn();
+        final int valueCount = Gene.VALUE_COUNT;
+        final int genesCount = context.genesCount;
+        long mask = 0;
+        int runStart = 0;
+        boolean runOfFirst = false;
+        for (int i = 0; i < genesCount; ++i) {
+            if ((i & 63) == 0) {
+                mask = random.nextLong();
+            }
+            boolean first = (mask & 1L << (i & 63)) != 0;
+            if (i == 0) {
+                runOfFirst = first;
+            } else if (first != runOfFirst) {
+                DNA parent = runOfFirst ? parent1 : parent2;
+                System.arraycopy(parent.values, parent.offset + runStart * valueCount,
+                        values, offset + runStart * valueCount, (i - runStart) * valueCount);
+                runStart = i;
+                runOfFirst = first;
+            }
+        }
+        DNA parent = runOfFirst ? parent1 : parent2;
+        System.arraycopy(parent.values, parent.offset + runStart * valueCount,
+                values, offset + runStart * valueCount, (genesCount - runStart) * valueCount);
     }
 
-    private final Gene[] genes = new Gene[GENES_COUNT];
+    public void setRandom(RandomGen random) {
+        allocateOwn();
+        final byte[] values = this.values;
+        for (int i = offset, end = offset + context.genomeSize; i < end; ++i) {
+            values[i] = (byte) random.nextInt(Gene.MIN_VALUE, Gene.MAX_VALUE); //todo determine optimal interval
+        }
+    }
 
-    DNA() {
-        for (int i = 0; i < GENES_COUNT; ++i) {
-            genes[i] = new Gene();
-            genes[i].setRandom();
+    /**
+     * Mutates each gene with chance {@code dna.mutationChance}: the distance to the next mutated gene
+     * is sampled from the geometric distribution instead of a try for every gene
+     */
+    public void mutate(RandomGen random) {
+        if (context.mutationChance <= 0) {
+            return;
+        }
+        boolean own = false;
+        for (int gene = nextMutation(-1, random); gene < context.genesCount; gene = nextMutation(gene, random)) {
+            if (!own) {
+                // the genome is copied only if a gene mutates
+                makeOwn();
+                own = true;
+            }
+            values[offset + gene * Gene.VALUE_COUNT + random.nextInt(Gene.VALUE_COUNT)]
+                    = (byte) random.nextInt(Gene.MIN_VALUE, Gene.MAX_VALUE); //todo determine optimal interval
+            log.trace("Gene has mutated");
         }
     }
 
-    public void set(DNA original) {
-        for (int i = 0; i < GENES_COUNT; ++i) {
-            this.genes[i].set(original.genes[i]);
+    /**
+     * Computes values of one gene of the genome which {@link #set(DNA, DNA, RandomGen)}
+     * (or {@link #set(DNA)} if the second parent is empty) and then {@link #mutate(RandomGen)} would make
+     * with the same generator, without making the genome. The generator is used as by them
+     * @param values Array for {@code Gene.VALUE_COUNT} values of the gene
+     */
+    static void getOffspringGene(DNA parent1, DNA parent2, RandomGen random, int gene, byte[] values) {
+        final WorldContext context = parent1.context;
+        DNA parent = parent1;
+        if (parent2.handle >= 0) {
+            long mask = 0;
+            for (int i = 0; i <= gene; i += 64) {
+                mask = random.nextLong();
+            }
+            for (int i = (gene & ~63) + 64; i < context.genesCount; i += 64) {
+                random.nextLong();
+            }
+            if ((mask & 1L << (gene & 63)) == 0) {
+                parent = parent2;
+            }
+        }
+        System.arraycopy(parent.values, parent.offset + gene * Gene.VALUE_COUNT, values, 0, Gene.VALUE_COUNT);
+
+        if (context.mutationChance <= 0) {
+            return;
+        }
+        for (int g = parent1.nextMutation(-1, random); g < context.genesCount; g = parent1.nextMutation(g, random)) {
+            int valueIndex = random.nextInt(Gene.VALUE_COUNT);
+            byte value = (byte) random.nextInt(Gene.MIN_VALUE, Gene.MAX_VALUE);
+            if (g == gene) {
+                values[valueIndex] = value;
+            }
         }
     }
 
-    public void set(DNA parent1, DNA parent2) {
-        final RandomGen rand = Gene.RAND;
-        for (int i = 0; i < GENES_COUNT; ++i) {
-            DNA parent = rand.nextBool() ? parent1 : parent2;
-            this.genes[i].set(parent.genes[i]);
+    private int nextMutation(int gene, RandomGen random) {
+        final int genesCount = context.genesCount;
+        if (context.mutationChance >= 1) {
+            return gene + 1;
         }
+        // 1 - nextFloat() is in (0, 1]
+        double skip = Math.log(1 - random.nextFloat()) / context.logNotMutated;
+        return skip >= genesCount ? genesCount : gene + 1 + (int) skip;
     }
 
-    public void setRandom() {
-        for (int i = 0; i < GENES_COUNT; ++i) {
-            genes[i].setRandom();
+    public byte getValue(int gene, int valueIndex) {
+        return values[offset + gene * Gene.VALUE_COUNT + valueIndex];
+    }
+
+    public byte getValue(int gene, Direction direction) {
+        return values[offset + gene * Gene.VALUE_COUNT + direction.getCode()];
+    }
+
+    /**
+     * @return Index of the sprout gene which is chosen by the special gene
+     */
+    int getSpecialGene(int valueIndex) {
+        return (getValue(context.specialGene, valueIndex) - Byte.MIN_VALUE) % context.sproutGenesCount;
+    }
+
+    public int getGenesCount() {
+        return context.genesCount;
+    }
+
+    /**
+     * @return 64-bit FNV-1a hash of the values, equal genomes have equal hashes
+     */
+    public long contentHash() {
+        final byte[] values = this.values;
+        long hash = 0xCBF29CE484222325L;
+        for (int i = offset, end = offset + context.genomeSize; i < end; ++i) {
+            hash = (hash ^ (values[i] & 0xFF)) * 0x100000001B3L;
         }
+        return hash;
     }
 
-    public void mutate() {
-        final RandomGen rand = Gene.RAND;
-        for (Gene gene : genes) {
-            if (rand.nextBool(MUTATION_CHANCE)) {
-                gene.mutate();
-                log.trace("Gene has mutated");
+    /**
+     * @return true if all values of the genomes are equal
+     */
+    public boolean contentEquals(DNA other) {
+        if (other.handle == handle) {
+            return true;
+        }
+        final byte[] values = this.values, otherValues = other.values;
+        for (int i = 0, n = context.genomeSize; i < n; ++i) {
+            if (values[offset + i] != otherValues[other.offset + i]) {
+                return false;
             }
         }
+        return true;
+    }
+
+    int getHandle() {
+        return handle;
+    }
+
+    /**
+     * Makes this DNA one more reference to the genome of the arena
+     */
+    void share(int handle) {
+        if (handle == this.handle) {
+            return;
+        }
+        reset();
+        final GenomeArena arena = context.arena;
+        arena.retain(handle);
+        this.handle = handle;
+        values = arena.getPage(handle);
+        offset = arena.getOffset(handle);
+    }
+
+    public boolean isEmpty() {
+        return handle < 0;
     }
 
-    public Gene getGene(int index) {
-        return genes[index];
+    /**
+     * @return true if the genome is shared with other DNA
+     */
+    boolean isShared() {
+        return handle >= 0 && context.arena.getRefCount(handle) > 1;
     }
 
-    Gene getSpecialGene(int valueIndex) {
-        return genes[(genes[SPECIAL].getValue(valueIndex) - Byte.MIN_VALUE) % SPROUT_GENES_COUNT];
+    // makes the genome not shared before its values are overwritten
+    private void allocateOwn() {
+        if (handle < 0 || isShared()) {
+            reset();
+            final GenomeArena arena = context.arena;
+            handle = arena.allocate();
+            values = arena.getPage(handle);
+            offset = arena.getOffset(handle);
+        }
+    }
+
+    // makes the genome not shared before some of its values are changed
+    private void makeOwn() {
+        if (handle >= 0 && !isShared()) {
+            return;
+        }
+        final byte[] oldValues = values;
+        final int oldOffset = offset;
+        final int oldHandle = handle;
+        final GenomeArena arena = context.arena;
+        handle = arena.allocate();
+        values = arena.getPage(handle);
+        offset = arena.getOffset(handle);
+        System.arraycopy(oldValues, oldOffset, values, offset, context.genomeSize);
+        if (oldHandle >= 0) {
+            arena.release(oldHandle);
+        }
     }
 
     public void reset() {
-        for (Gene gene : genes) {
-            gene.reset();
+        if (handle >= 0) {
+            context.arena.release(handle);
+            handle = -1;
+            values = context.emptyGenome;
+            offset = 0;
         }
     }
 }
@@ -0,0 +1,161 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+/**
+ * Sprout genes of a tree compiled for {@link TreePart#update}.
+ * Conditions disabled by {@link GeneticRules} and conditions with constant result are dropped,
+ * chains of genes with constant result are resolved at compilation, visited genes are tracked with a bit mask.
+ * The result of {@link #decide(CellGrid, TreePart)} is the same as of interpretation of the genes one by one.
+ */
+class DecisionProgram {
+    private static final int TRANSITIONS = 4;
+    private static final byte JUMP = 0;
+    private static final byte SETTLE = 1;
+    private static final byte ACT = 2;
+    private static final byte STOP = 3;
+
+    // up to Long.SIZE, see WorldContext
+    private final int sproutGenesCount;
+    // conditions which should be checked, null if the result is known at compilation
+    private final Condition[] conditions1;
+    private final Condition[] conditions2;
+    private final byte[] parameters1;
+    private final byte[] parameters2;
+    // check result bits of conditions which are always true
+    private final byte[] constantResults;
+    // by gene * TRANSITIONS + check result, check result 0 always settles on the gene
+    private final byte[] kinds;
+    // next gene for JUMP and SETTLE, action value for ACT
+    private final int[] targets;
+    // genes with constant result passed through by the transition
+    private final long[] paths;
+
+    DecisionProgram(int sproutGenesCount) {
+        this.sproutGenesCount = sproutGenesCount;
+        conditions1 = new Condition[sproutGenesCount];
+        conditions2 = new Condition[sproutGenesCount];
+        parameters1 = new byte[sproutGenesCount];
+        parameters2 = new byte[sproutGenesCount];
+        constantResults = new byte[sproutGenesCount];
+        kinds = new byte[sproutGenesCount * TRANSITIONS];
+        targets = new int[sproutGenesCount * TRANSITIONS];
+        paths = new long[sproutGenesCount * TRANSITIONS];
+    }
+
+    void compile(DNA dna, GeneticRules rules) {
+        final int geneCount = sproutGenesCount;
+        for (int i = 0; i < geneCount; ++i) {
+            constantResults[i] = 0;
+            conditions1[i] = compileCondition(dna.getValue(i, Gene.CONDITION1), rules);
+            if (conditions1[i] == Condition.TRUE) {
+                conditions1[i] = null;
+                constantResults[i] |= 1;
+            }
+            conditions2[i] = compileCondition(dna.getValue(i, Gene.CONDITION2), rules);
+            if (conditions2[i] == Condition.TRUE) {
+                conditions2[i] = null;
+                constantResults[i] |= 2;
+            }
+            parameters1[i] = dna.getValue(i, Gene.PARAMETER1);
+            parameters2[i] = dna.getValue(i, Gene.PARAMETER2);
+        }
+
+        for (int i = 0; i < geneCount; ++i) {
+            int base = i * TRANSITIONS;
+            kinds[base] = SETTLE;
+            targets[base] = i;
+            paths[base] = 0;
+            for (int checkResult = 1; checkResult < TRANSITIONS; ++checkResult) {
+                compileTransition(dna, rules, i, checkResult);
+            }
+        }
+    }
+
+    private static Condition compileCondition(byte value, GeneticRules rules) {
+        if (!rules.isActiveCondition(value)) {
+            return null;
+        }
+        Condition condition = Condition.of(value);
+        return condition == Condition.FALSE ? null : condition;
+    }
+
+    private boolean isConstant(int gene) {
+        return conditions1[gene] == null && conditions2[gene] == null;
+    }
+
+    private void compileTransition(DNA dna, GeneticRules rules, int gene, int checkResult) {
+        final int index = gene * TRANSITIONS + checkResult;
+        long path = 0;
+        long visited = 1L << gene;
+        byte action = dna.getValue(gene, Gene.ACTION + checkResult - 1);
+        while (true) {
+            if (0 <= action && action < sproutGenesCount) {
+                long bit = 1L << action;
+                if ((visited & bit) != 0) {
+                    kinds[index] = STOP;
+                    break;
+                }
+                if (!isConstant(action)) {
+                    kinds[index] = JUMP;
+                    targets[index] = action;
+                    break;
+                }
+                visited |= bit;
+                path |= bit;
+                int nextResult = constantResults[action];
+                if (nextResult == 0) {
+                    kinds[index] = SETTLE;
+                    targets[index] = action;
+                    break;
+                }
+                action = dna.getValue(action, Gene.ACTION + nextResult - 1);
+            } else if (rules.isActiveAction(action)) {
+                kinds[index] = ACT;
+                targets[index] = action;
+                break;
+            } else {
+                kinds[index] = STOP;
+                break;
+            }
+        }
+        paths[index] = path;
+    }
+
+    /**
+     * @return Index of the gene the part should sprout by or value of the action the part should do (it is negative)
+     */
+    int decide(CellGrid grid, TreePart part) {
+        final int start = part.activeGene;
+        int gene = start;
+        long visited = 0;
+        while ((visited & (1L << gene)) == 0) {
+            visited |= 1L << gene;
+
+            int checkResult = constantResults[gene];
+            Condition condition = conditions1[gene];
+            if (condition != null && condition.check(grid, part, parameters1[gene]))
+                checkResult |= 1;
+            condition = conditions2[gene];
+            if (condition != null && condition.check(grid, part, parameters2[gene]))
+                checkResult |= 2;
+
+            int index = gene * TRANSITIONS + checkResult;
+            long path = paths[index];
+            if ((visited & path) != 0) {
+                return start;
+            }
+            visited |= path;
+            switch (kinds[index]) {
+                case JUMP:
+                    gene = targets[index];
+                    break;
+                case SETTLE:
+                    return targets[index];
+                case ACT:
+                    return targets[index];
+                default:
+                    return start;
+            }
+        }
+        return start;
+    }
+}
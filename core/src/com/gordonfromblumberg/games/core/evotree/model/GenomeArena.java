@@ -0,0 +1,102 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Storage of genomes of the same size as slices of large byte pages, a genome is addressed by an int handle.
+ * Pages are never moved or shrunk, so a page and an offset obtained for a handle stay valid
+ * while other threads allocate genomes. Allocation and reference counting are synchronized,
+ * bytes of different genomes may be read and written by different threads at the same time.
+ * A genome is shared by reference counting and is freed when the last reference is released,
+ * a shared genome should not be changed.
+ */
+public class GenomeArena {
+    private static final int PAGE_SHIFT = 10;
+    private static final int GENOMES_PER_PAGE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = GENOMES_PER_PAGE - 1;
+
+    private final int genomeSize;
+    private byte[][] pages = new byte[4][];
+    private int[][] refCounts = new int[4][];
+    private int pageCount;
+    // handles below it have been allocated at least once
+    private int nextHandle;
+    private final IntArray freeHandles = new IntArray();
+
+    public GenomeArena(int genomeSize) {
+        this.genomeSize = genomeSize;
+    }
+
+    /**
+     * @return Handle of a genome with one reference, its content is undefined
+     */
+    public synchronized int allocate() {
+        final int handle;
+        if (freeHandles.notEmpty()) {
+            handle = freeHandles.pop();
+        } else {
+            handle = nextHandle++;
+            final int page = handle >>> PAGE_SHIFT;
+            if (page == pageCount) {
+                if (pageCount == pages.length) {
+                    byte[][] newPages = new byte[pageCount * 2][];
+                    System.arraycopy(pages, 0, newPages, 0, pageCount);
+                    pages = newPages;
+                    int[][] newRefCounts = new int[pageCount * 2][];
+                    System.arraycopy(refCounts, 0, newRefCounts, 0, pageCount);
+                    refCounts = newRefCounts;
+                }
+                pages[pageCount] = new byte[GENOMES_PER_PAGE * genomeSize];
+                refCounts[pageCount++] = new int[GENOMES_PER_PAGE];
+            }
+        }
+        refCounts[handle >>> PAGE_SHIFT][handle & PAGE_MASK] = 1;
+        return handle;
+    }
+
+    /**
+     * Adds a reference to the genome
+     */
+    public synchronized void retain(int handle) {
+        ++refCounts[handle >>> PAGE_SHIFT][handle & PAGE_MASK];
+    }
+
+    /**
+     * Removes a reference to the genome, the genome is freed when no references are left
+     */
+    public synchronized void release(int handle) {
+        if (--refCounts[handle >>> PAGE_SHIFT][handle & PAGE_MASK] == 0) {
+            freeHandles.add(handle);
+        }
+    }
+
+    public synchronized int getRefCount(int handle) {
+        return refCounts[handle >>> PAGE_SHIFT][handle & PAGE_MASK];
+    }
+
+    public synchronized byte[] getPage(int handle) {
+        return pages[handle >>> PAGE_SHIFT];
+    }
+
+    public int getOffset(int handle) {
+        return (handle & PAGE_MASK) * genomeSize;
+    }
+
+    public int getGenomeSize() {
+        return genomeSize;
+    }
+
+    /**
+     * @return Number of allocated genomes
+     */
+    public synchronized int size() {
+        return nextHandle - freeHandles.size;
+    }
+
+    /**
+     * @return Number of genomes the allocated pages can hold
+     */
+    public synchronized int capacity() {
+        return pageCount * GENOMES_PER_PAGE;
+    }
+}
@@ -0,0 +1,89 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+
+import java.io.IOException;
+
+/**
+ * Genomes of a saved world. The table is filled while DNA are written: the first reference to a genome
+ * is followed by its values, other references are indices in the table. So each genome is written once
+ * however many DNA share it, and DNA which shared a genome share it again after reading.
+ * A reference is a varint: 0 for empty DNA, {@code index + 1} for a genome of the table,
+ * {@code size + 1} for a new genome which values follow.
+ */
+public class GenomeTable {
+    private final WorldContext context;
+    // handles of the genomes in order of the table
+    private final IntArray handles = new IntArray();
+    // index in the table by handle, only for writing
+    private final IntIntMap indices = new IntIntMap();
+
+    public GenomeTable(WorldContext context) {
+        this.context = context;
+    }
+
+    void write(DNA dna, BinaryOutput out) throws IOException {
+        final int handle = dna.getHandle();
+        if (handle < 0) {
+            out.writeVarInt(0);
+            return;
+        }
+        int index = indices.get(handle, -1);
+        if (index >= 0) {
+            out.writeVarInt(index + 1);
+            return;
+        }
+        index = handles.size;
+        indices.put(handle, index);
+        handles.add(handle);
+        out.writeVarInt(index + 1);
+        final GenomeArena arena = context.arena;
+        out.writeBytes(arena.getPage(handle), arena.getOffset(handle), context.genomeSize);
+    }
+
+    void read(DNA dna, BinaryInput in) throws IOException {
+        final int ref = in.readVarInt();
+        if (ref == 0) {
+            dna.reset();
+            return;
+        }
+        final int index = ref - 1;
+        if (index < handles.size) {
+            dna.share(handles.get(index));
+            return;
+        }
+        if (index > handles.size) {
+            throw new IOException("Genome " + index + " is referenced before genome " + handles.size);
+        }
+        final GenomeArena arena = context.arena;
+        final int handle = arena.allocate();
+        in.readBytes(arena.getPage(handle), arena.getOffset(handle), context.genomeSize);
+        handles.add(handle);
+        dna.share(handle);
+    }
+
+    /**
+     * @return Number of distinct genomes written or read
+     */
+    public int size() {
+        return handles.size;
+    }
+
+    /**
+     * Releases references of the table to the read genomes, should be called when all DNA are read
+     */
+    public void release() {
+        // written genomes are not referenced by the table
+        if (indices.size == 0) {
+            final GenomeArena arena = context.arena;
+            for (int i = 0; i < handles.size; ++i) {
+                arena.release(handles.get(i));
+            }
+        }
+        handles.clear();
+        indices.clear();
+    }
+}
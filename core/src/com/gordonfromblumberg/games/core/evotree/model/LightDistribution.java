@@ -1,5 +1,10 @@
 package com.gordonfromblumberg.games.core.evotree.model;
 
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+
+import java.io.IOException;
+
 public interface LightDistribution {
     int getWidth();
     int getHeight();
@@ -8,4 +13,10 @@ public interface LightDistribution {
     float getLightAbsorption();
 
     int nextTurn();
+
+    /**
+     * Writes the state which is changed by turns, the parameters are restored from the params of the world
+     */
+    void writeState(BinaryOutput out) throws IOException;
+    void readState(BinaryInput in) throws IOException;
 }
@@ -1,10 +1,18 @@
 package com.gordonfromblumberg.games.core.evotree.model;
 
+import com.gordonfromblumberg.games.core.common.utils.IndexedArray;
 import com.gordonfromblumberg.games.core.evotree.world.EvoTreeWorld;
 
-public abstract class LivingCellObject extends CellObject {
+public abstract class LivingCellObject extends CellObject implements IndexedArray.Indexed {
     protected static final int[] LIGHT_MODS = new int[] {1, 2, 4, 2};
 
+    // sensors are read several times per turn, so they are calculated once per light update of the grid
+    private int sensorStamp = -1;
+    private int light;
+    private int occupiedDirs;
+    // in the collection of the world or of the tree
+    private int index = -1;
+
     /**
      * Updates state of this tree part
      * @param world Game world
@@ -18,7 +26,7 @@ public abstract class LivingCellObject extends CellObject {
         int max = 0;
         for (Direction dir : Direction.ALL) {
             Cell next = grid.getCell(cell, dir);
-            if (next != null && next.object == null) {
+            if (next != null && next.getObject() == null) {
                 int light = next.getSunLight();
                 if (light > max) {
                     max = light;
@@ -27,4 +35,66 @@ public abstract class LivingCellObject extends CellObject {
         }
         return max;
     }
+
+    /**
+     * Works like {@link #calcLight(CellGrid)}, but the result is calculated once per light update,
+     * so changes of neighbor cells since the first call in the turn are not seen
+     */
+    int getLight(CellGrid grid) {
+        updateSensors(grid);
+        return light;
+    }
+
+    /**
+     * @return Bit mask of directions in order of {@link Direction#getCode()}, a bit is set if the neighbor cell
+     * is occupied or absent. Is calculated once per light update like {@link #getLight(CellGrid)}
+     */
+    int getOccupiedDirs(CellGrid grid) {
+        updateSensors(grid);
+        return occupiedDirs;
+    }
+
+    private void updateSensors(CellGrid grid) {
+        final int stamp = grid.getLightUpdates();
+        if (sensorStamp == stamp) {
+            return;
+        }
+        sensorStamp = stamp;
+
+        final short[] sunLight = grid.sunLight;
+        final byte[] flags = grid.flags;
+        final CellObject[] objects = grid.objects;
+        final int[] neighborOffsets = grid.neighborOffsets;
+        final int index = cell.index;
+        int max = 0;
+        int occupied = 0;
+        for (int i = 0, n = neighborOffsets.length; i < n; ++i) {
+            int next = grid.neighbor(index, neighborOffsets[i]);
+            // ghost rows out of the grid are opaque and empty
+            if (objects[next] != null || (flags[next] & CellGrid.OPAQUE) != 0) {
+                occupied |= 1 << i;
+            } else if (sunLight[next] > max) {
+                max = sunLight[next];
+            }
+        }
+        light = max;
+        occupiedDirs = occupied;
+    }
+
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        sensorStamp = -1;
+        index = -1;
+    }
 }
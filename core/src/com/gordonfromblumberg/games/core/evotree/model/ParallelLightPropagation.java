@@ -0,0 +1,167 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.gordonfromblumberg.games.core.common.utils.IntBucketQueue;
+import com.gordonfromblumberg.games.core.common.utils.IntQueue;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Propagates light of {@link CellGrid} in vertical strips on the common fork-join pool.
+ * Each strip changes only its own cells, light for the cells of the neighbor strips is sent as messages
+ * which are applied at the next round. Rounds are repeated until there are no messages.
+ * Light propagation has only one fixed point, so the result is the same as of the serial propagation.
+ */
+class ParallelLightPropagation {
+    private final CellGrid grid;
+    private final Strip[] strips;
+    private final int[] stripByColumn;
+    private final RecursiveAction round = new RecursiveAction() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            for (Strip strip : strips) {
+                strip.reinitialize();
+            }
+            invokeAll(strips);
+        }
+    };
+    private float lightAbsorption;
+    private int roundNumber;
+
+    ParallelLightPropagation(CellGrid grid, int stripCount) {
+        this.grid = grid;
+        this.strips = new Strip[stripCount];
+        this.stripByColumn = new int[grid.width];
+        for (int i = 0, w = grid.width; i < stripCount; ++i) {
+            int startColumn = i * w / stripCount;
+            int endColumn = (i + 1) * w / stripCount;
+            strips[i] = new Strip(i, startColumn, endColumn);
+            for (int x = startColumn; x < endColumn; ++x) {
+                stripByColumn[x] = i;
+            }
+        }
+    }
+
+    int getStripCount() {
+        return strips.length;
+    }
+
+    /**
+     * @param lightQueue Cells to propagate light from, the queue is emptied
+     */
+    void propagate(IntBucketQueue lightQueue, float lightAbsorption) {
+        this.lightAbsorption = lightAbsorption;
+        final Strip[] strips = this.strips;
+        final int[] stripByColumn = this.stripByColumn;
+        final int stride = grid.stride;
+        while (lightQueue.notEmpty()) {
+            int cell = lightQueue.removeFirst();
+            strips[stripByColumn[cell / stride - 1]].queue.add(cell, lightQueue.getLastPriority());
+        }
+
+        roundNumber = 0;
+        boolean hasMessages;
+        do {
+            round.reinitialize();
+            ForkJoinPool.commonPool().invoke(round);
+            hasMessages = false;
+            for (Strip strip : strips) {
+                if (strip.hasMessages(roundNumber)) {
+                    hasMessages = true;
+                    break;
+                }
+            }
+            ++roundNumber;
+        } while (hasMessages);
+    }
+
+    private class Strip extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final int number;
+        final int firstIndex;
+        final int endIndex;
+        final IntBucketQueue queue = new IntBucketQueue();
+        // messages are pairs (cell, light), written at even and odd rounds by turns
+        final IntQueue[] toLeft = new IntQueue[] { new IntQueue(), new IntQueue() };
+        final IntQueue[] toRight = new IntQueue[] { new IntQueue(), new IntQueue() };
+
+        Strip(int number, int startColumn, int endColumn) {
+            this.number = number;
+            this.firstIndex = grid.index(startColumn, -1);
+            this.endIndex = grid.index(endColumn, -1);
+        }
+
+        boolean hasMessages(int round) {
+            return toLeft[round & 1].notEmpty() || toRight[round & 1].notEmpty();
+        }
+
+        @Override
+        protected void compute() {
+            final int round = roundNumber;
+            if (round > 0) {
+                final int previous = (round - 1) & 1;
+                final int stripCount = strips.length;
+                receive(strips[(number + stripCount - 1) % stripCount].toRight[previous]);
+                receive(strips[(number + 1) % stripCount].toLeft[previous]);
+            }
+            propagate(toLeft[round & 1], toRight[round & 1]);
+        }
+
+        private void receive(IntQueue messages) {
+            final short[] sunLight = grid.sunLight;
+            final IntBucketQueue queue = this.queue;
+            while (messages.notEmpty()) {
+                int cell = messages.removeFirst();
+                int light = messages.removeFirst();
+                if (sunLight[cell] < light) {
+                    sunLight[cell] = (short) light;
+                    queue.add(cell, light);
+                }
+            }
+        }
+
+        private void propagate(IntQueue toLeft, IntQueue toRight) {
+            final CellGrid grid = ParallelLightPropagation.this.grid;
+            final short[] sunLight = grid.sunLight;
+            final short[] absorption = grid.absorption;
+            final byte[] flags = grid.flags;
+            final int[] neighborOffsets = grid.neighborOffsets;
+            final float lightAbsorption = ParallelLightPropagation.this.lightAbsorption;
+            final int firstIndex = this.firstIndex;
+            final int endIndex = this.endIndex;
+            final IntBucketQueue queue = this.queue;
+
+            while (queue.notEmpty()) {
+                int cell = queue.removeFirst();
+                if (sunLight[cell] != queue.getLastPriority())
+                    continue;
+
+                int cellLight = sunLight[cell] - absorption[cell];
+                int light = (int) (cellLight * lightAbsorption);
+                if (light == cellLight) --light;
+                if (light <= 0)
+                    continue;
+
+                for (int offset : neighborOffsets) {
+                    int neib = grid.neighbor(cell, offset);
+                    if ((flags[neib] & CellGrid.OPAQUE) != 0)
+                        continue;
+                    if (neib >= firstIndex && neib < endIndex) {
+                        if (sunLight[neib] < light) {
+                            sunLight[neib] = (short) light;
+                            queue.add(neib, light);
+                        }
+                    } else {
+                        // light of other strips must not be read here
+                        IntQueue messages = offset < 0 ? toLeft : toRight;
+                        messages.addLast(neib);
+                        messages.addLast(light);
+                    }
+                }
+            }
+        }
+    }
+}
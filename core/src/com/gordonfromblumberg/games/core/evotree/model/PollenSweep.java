@@ -0,0 +1,225 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongArray;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.log.Logger;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Spreads pollen of all trees which have produced seeds during the turn at once.
+ * Pollen of a shoot which has become a seed covers a cone: cells not above two lines going down at 45 degrees
+ * from the cell {@code radius} cells above the shoot. Cones are cut into pieces by the edges of the wrapped grid,
+ * shoots under the pieces are collected from the chunks once and joined with the pieces by a sweep line along x.
+ * <p>
+ * A cone tries to pollinate each shoot of other trees under it with chance {@code tree.pollinateChance},
+ * the shoot right under the top of a cone inside the grid gets two tries. A try is derived from the turn seed,
+ * the cone and the cell of the shoot, so it does not depend on the order of resolution.
+ * If several cones succeed the cone of the tree with the least id wins, as if the trees spread pollen one by one.
+ */
+public class PollenSweep {
+    private static final Logger log = LogManager.create(PollenSweep.class);
+    // key of the pollen stream, entities use their ids
+    private static final long POLLEN_STREAM = Long.MIN_VALUE;
+
+    private final float pollinateChance;
+
+    private final Array<Tree> trees = new Array<>();
+
+    // cones by index
+    private final Array<Tree> coneTrees = new Array<>();
+    private final LongArray coneKeys = new LongArray();
+    private final LongArray coneSeeds = new LongArray();
+
+    // pieces of cones inside the grid by index
+    private final IntArray pieceStarts = new IntArray();
+    private final IntArray pieceEnds = new IntArray();
+    private final IntArray pieceApexes = new IntArray();
+    private final IntArray pieceReaches = new IntArray();
+    private final IntArray pieceCones = new IntArray();
+    // start << 32 | piece
+    private final LongArray sortedPieces = new LongArray();
+    private final IntArray activePieces = new IntArray();
+
+    private final Array<TreePart> shoots = new Array<>();
+    // x << 32 | shoot
+    private final LongArray sortedShoots = new LongArray();
+    private final Consumer<CellObject> shootCollector = object -> shoots.add((TreePart) object);
+
+    public PollenSweep(WorldContext context) {
+        this.pollinateChance = context.pollinateChance;
+    }
+
+    /**
+     * Adds pollen of the tree which has produced seeds, the tree should not be released until {@link #resolve}
+     */
+    public void add(Tree tree) {
+        trees.add(tree);
+    }
+
+    public boolean isEmpty() {
+        return trees.isEmpty();
+    }
+
+    /**
+     * Pollinates shoots by the pollen added during the turn
+     */
+    public void resolve(CellGrid grid, long turnSeed) {
+        if (trees.isEmpty()) {
+            return;
+        }
+
+        final long pollenSeed = RandomGen.split(turnSeed, POLLEN_STREAM);
+        for (Tree tree : trees) {
+            addCone(grid, tree, tree.pollenTop, 0, pollenSeed);
+            if (tree.pollenLeft != null) addCone(grid, tree, tree.pollenLeft, 1, pollenSeed);
+            if (tree.pollenRight != null) addCone(grid, tree, tree.pollenRight, 2, pollenSeed);
+            tree.clearPollen();
+        }
+
+        collectShoots(grid);
+        int n = sweep(grid);
+        log.debug(trees.size + " trees have pollinated " + n + " shoots");
+
+        trees.clear();
+        coneTrees.clear();
+        coneKeys.clear();
+        coneSeeds.clear();
+        pieceStarts.clear();
+        pieceEnds.clear();
+        pieceApexes.clear();
+        pieceReaches.clear();
+        pieceCones.clear();
+        sortedPieces.clear();
+        activePieces.clear();
+        shoots.clear();
+        sortedShoots.clear();
+    }
+
+    private void addCone(CellGrid grid, Tree tree, Cell shootCell, int index, long pollenSeed) {
+        final int width = grid.width;
+        final int cone = coneTrees.size;
+        final long key = tree.id * 3L + index;
+        coneTrees.add(tree);
+        coneKeys.add(key);
+        coneSeeds.add(RandomGen.split(pollenSeed, key));
+
+        final int reach = tree.pollenRadius + shootCell.y;
+        final int left = shootCell.x - reach;
+        final int right = shootCell.x + reach;
+        for (int k = Math.floorDiv(left, width), to = Math.floorDiv(right, width); k <= to; ++k) {
+            int offset = k * width;
+            int piece = pieceStarts.size;
+            int start = Math.max(left - offset, 0);
+            pieceStarts.add(start);
+            pieceEnds.add(Math.min(right - offset, width - 1));
+            pieceApexes.add(shootCell.x - offset);
+            pieceReaches.add(reach);
+            pieceCones.add(cone);
+            sortedPieces.add((long) start << 32 | piece);
+        }
+    }
+
+    // queries chunks under the union of the pieces, each chunk is visited once
+    private void collectShoots(CellGrid grid) {
+        final long[] sortedPieces = this.sortedPieces.items;
+        final int pieceCount = this.sortedPieces.size;
+        Arrays.sort(sortedPieces, 0, pieceCount);
+
+        int start = -1, end = -1;
+        for (int i = 0; i < pieceCount; ++i) {
+            int piece = (int) sortedPieces[i];
+            int pieceStart = pieceStarts.get(piece);
+            int pieceEnd = pieceEnds.get(piece);
+            if (start >= 0 && pieceStart <= end + 1) {
+                if (pieceEnd > end) end = pieceEnd;
+            } else {
+                if (start >= 0) grid.forEachShootInRect(start, 0, end - start + 1, grid.height, shootCollector);
+                start = pieceStart;
+                end = pieceEnd;
+            }
+        }
+        grid.forEachShootInRect(start, 0, end - start + 1, grid.height, shootCollector);
+
+        final Array<TreePart> shoots = this.shoots;
+        final LongArray sortedShoots = this.sortedShoots;
+        for (int i = 0, n = shoots.size; i < n; ++i) {
+            sortedShoots.add((long) shoots.get(i).cell.x << 32 | i);
+        }
+        Arrays.sort(sortedShoots.items, 0, sortedShoots.size);
+    }
+
+    private int sweep(CellGrid grid) {
+        final long[] sortedPieces = this.sortedPieces.items;
+        final int pieceCount = this.sortedPieces.size;
+        final int[] pieceStarts = this.pieceStarts.items;
+        final int[] pieceEnds = this.pieceEnds.items;
+        final int[] pieceApexes = this.pieceApexes.items;
+        final int[] pieceReaches = this.pieceReaches.items;
+        final int[] pieceCones = this.pieceCones.items;
+        final long[] coneKeys = this.coneKeys.items;
+        final long[] coneSeeds = this.coneSeeds.items;
+        final IntArray active = this.activePieces;
+        final int height = grid.height;
+
+        int nextPiece = 0;
+        int pollinated = 0;
+        for (int i = 0, n = sortedShoots.size; i < n; ++i) {
+            TreePart shoot = shoots.get((int) sortedShoots.get(i));
+            final int x = shoot.cell.x;
+            final int y = shoot.cell.y;
+            while (nextPiece < pieceCount && (int) (sortedPieces[nextPiece] >>> 32) <= x) {
+                active.add((int) sortedPieces[nextPiece++]);
+            }
+            final int[] activeItems = active.items;
+            for (int j = 0; j < active.size; ) {
+                if (pieceEnds[activeItems[j]] < x) {
+                    activeItems[j] = activeItems[--active.size];
+                } else {
+                    ++j;
+                }
+            }
+            if (shoot.isBufferFilled || shoot.type != TreePartType.SHOOT) {
+                continue;
+            }
+
+            final long shootKey = 2L * grid.index(x, y);
+            int winner = -1;
+            for (int j = 0, m = active.size; j < m; ++j) {
+                int piece = activeItems[j];
+                int cone = pieceCones[piece];
+                if (winner >= 0 && coneKeys[cone] >= coneKeys[winner]
+                        || coneTrees.get(cone) == shoot.tree) {
+                    continue;
+                }
+                int reach = pieceReaches[piece];
+                int distance = Math.abs(x - pieceApexes[piece]);
+                if (pieceStarts[piece] > x || y > reach - distance) {
+                    continue;
+                }
+                // the top of a cone inside the grid belongs to both its lines
+                int tries = distance == 0 && reach < height ? 2 : 1;
+                for (int t = 0; t < tries; ++t) {
+                    if (isSuccess(RandomGen.split(coneSeeds[cone], shootKey + t))) {
+                        winner = cone;
+                        break;
+                    }
+                }
+            }
+            if (winner >= 0) {
+                shoot.buffer.set(coneTrees.get(winner).dna);
+                shoot.isBufferFilled = true;
+                ++pollinated;
+            }
+        }
+        return pollinated;
+    }
+
+    private boolean isSuccess(long bits) {
+        return (bits >>> 11) * 0x1.0p-53 < pollinateChance;
+    }
+}
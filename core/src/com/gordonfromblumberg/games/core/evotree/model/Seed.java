@@ -1,104 +1,149 @@
 package com.gordonfromblumberg.games.core.evotree.model;
 
-import com.badlogic.gdx.utils.Pool;
-import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
 import com.gordonfromblumberg.games.core.common.log.LogManager;
 import com.gordonfromblumberg.games.core.common.log.Logger;
-import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+import com.gordonfromblumberg.games.core.common.utils.ManagedPool;
 import com.gordonfromblumberg.games.core.common.utils.RandomGen;
 import com.gordonfromblumberg.games.core.evotree.world.EvoTreeWorld;
 
+import java.io.IOException;
+
 public class Seed extends LivingCellObject {
-    private static final Pool<Seed> pool = new Pool<Seed>() {
-        @Override
-        protected Seed newObject() {
-            return new Seed();
-        }
-    };
     private static final Logger log = LogManager.create(Seed.class);
 
     private static final int ENERGY_REQUIRED_TO_SPROUT = 10;
     private static final int ENERGY_CONSUMPTION = 4;
-
-    private static final int MIN_LIGHT_TO_SPROUT;
-    private static final int MAX_LIGHT_TO_SPROUT;
+    // number of cells a seed falls per turn
+    public static final int FALL_DISTANCE = 3;
 
     private enum State {
         WAITING, SPROUTING;
-        private int energyConsumption;
-    }
-
-    static {
-        ConfigManager configManager = AbstractFactory.getInstance().configManager();
-        State.WAITING.energyConsumption = configManager.getInteger("seed.waitingEnergyConsumption");
-        State.SPROUTING.energyConsumption = configManager.getInteger("seed.sproutingEnergyConsumption");
-        MIN_LIGHT_TO_SPROUT = configManager.getInteger("seed.minLightToSprout");
-        MAX_LIGHT_TO_SPROUT = configManager.getInteger("seed.maxLightToSprout");
+        static final State[] STATES = values();
     }
 
     int id;
     int generation;
-    final DNA dna = new DNA();
+    // the genome is made from the parents on the first use, most seeds die before they sprout
+    private final DNA dna;
+    private final DNA parent1;
+    private final DNA parent2;
+    private long dnaSeed;
+    private boolean isDnaPending;
+    private final RandomGen dnaRandom = new RandomGen();
+    private final byte[] geneValues = new byte[Gene.VALUE_COUNT];
     int energy;
     int lightToSprout;
     private State state;
     private int turnsToSprout;
+    // is seeded by the world before each update
+    private final RandomGen random = new RandomGen();
+
+    private final WorldContext context;
+    // pool of the world
+    private final ManagedPool<Seed> pool;
 
-    private Seed() {}
+    Seed(ManagedPool<Seed> pool, WorldContext context) {
+        this.pool = pool;
+        this.context = context;
+        this.dna = new DNA(context);
+        this.parent1 = new DNA(context);
+        this.parent2 = new DNA(context);
+    }
 
-    public static Seed getInstance() {
-        return pool.obtain();
+    /**
+     * Sets parents of the seed, its genome is their crossing (or the copy of the first parent
+     * if there is no second one) mutated by the generator with the seed
+     * @param parent2 Pollen of other tree, may be null
+     */
+    void setParents(DNA parent1, DNA parent2, long dnaSeed) {
+        this.parent1.set(parent1);
+        if (parent2 != null) {
+            this.parent2.set(parent2);
+        }
+        this.dnaSeed = dnaSeed;
+        this.isDnaPending = true;
     }
 
-    public void init() {
-        Gene lightToSproutGene = dna.getSpecialGene(DNA.SEED_SPROUT_LIGHT);
+    /**
+     * @return Genome of the seed, it is made from the parents on the first call
+     */
+    public DNA getDna() {
+        if (isDnaPending) {
+            dnaRandom.reseed(dnaSeed);
+            if (parent2.isEmpty()) {
+                dna.set(parent1);
+            } else {
+                dna.set(parent1, parent2, dnaRandom);
+            }
+            dna.mutate(dnaRandom);
+            parent1.reset();
+            parent2.reset();
+            isDnaPending = false;
+        }
+        return dna;
+    }
+
+    /**
+     * @param random Generator of the object which creates this seed
+     */
+    public void init(RandomGen random) {
+        final byte[] geneValues = this.geneValues;
+        getGene(context.specialGene, geneValues);
+        int lightToSproutGene = (geneValues[DNA.SEED_SPROUT_LIGHT] - Byte.MIN_VALUE) % context.sproutGenesCount;
+        getGene(lightToSproutGene, geneValues);
         int lightToSprout = 0;
         for (int i = 0; i < Gene.VALUE_COUNT; ++i) {
-            lightToSprout += lightToSproutGene.getValue(i);
+            lightToSprout += geneValues[i];
         }
         if (lightToSprout < 0) lightToSprout = 0;
-        this.lightToSprout = (lightToSprout + 1) % (MAX_LIGHT_TO_SPROUT - MIN_LIGHT_TO_SPROUT) + MIN_LIGHT_TO_SPROUT;
+        this.lightToSprout = (lightToSprout + 1) % (context.maxLightToSprout - context.minLightToSprout)
+                + context.minLightToSprout;
         this.state = State.WAITING;
-        this.turnsToSprout = RandomGen.INSTANCE.nextInt(4, 10);
+        this.turnsToSprout = random.nextInt(4, 10);
     }
 
-    public void initRandom() {
-        dna.setRandom();
-        init();
+    // values of the gene without making the genome if it is pending
+    private void getGene(int gene, byte[] values) {
+        if (isDnaPending) {
+            dnaRandom.reseed(dnaSeed);
+            DNA.getOffspringGene(parent1, parent2, dnaRandom, gene, values);
+        } else {
+            for (int i = 0; i < Gene.VALUE_COUNT; ++i) {
+                values[i] = dna.getValue(gene, i);
+            }
+        }
+    }
+
+    public void initRandom(RandomGen random) {
+        dna.setRandom(random);
+        init(random);
     }
 
     @Override
     public boolean update(EvoTreeWorld world) {
-        energy -= state.energyConsumption;
+        // seed ids are negative keys, tree ids are positive ones
+        random.reseed(RandomGen.split(world.getTurnSeed(), -id));
+        energy -= state == State.WAITING ? context.waitingEnergyConsumption : context.sproutingEnergyConsumption;
         if (energy <= 0) {
             return true;
         }
 
         CellGrid grid = world.getGrid();
         if (cell.y > 0) {
-            Cell next = cell;
-            for (int i = 0; i < 3; ++i) {
-                Cell c = grid.getCell(next, Direction.down);
-                if (c != null && c.object == null) {
-                    next = c;
-                } else {
-                    break;
-                }
-            }
-            if (cell != next) {
-                grid.moveCellObjectTo(this, next);
-            }
+            // the world moves falling seeds after updates by CellGrid#fall()
             return false;
-        } else if (state == State.WAITING && calcLight(grid) > 0) {
+        } else if (state == State.WAITING && getLight(grid) > 0) {
             state = State.SPROUTING;
         }
 
-        if (calcLight(grid) >= lightToSprout) {
+        if (getLight(grid) >= lightToSprout) {
             --turnsToSprout;
             if (energy > ENERGY_REQUIRED_TO_SPROUT
                     && turnsToSprout <= 0
-                    && !(grid.getCell(cell, Direction.left).object instanceof TreePart)
-                    && !(grid.getCell(cell, Direction.right).object instanceof TreePart)){
+                    && !(grid.getCell(cell, Direction.left).getObject() instanceof TreePart)
+                    && !(grid.getCell(cell, Direction.right).getObject() instanceof TreePart)){
                 energy -= ENERGY_REQUIRED_TO_SPROUT;
                 sprout(world);
                 return true;
@@ -107,26 +152,81 @@ public class Seed extends LivingCellObject {
         return false;
     }
 
+    /**
+     * @return true if all columns which may be changed by {@link #update(EvoTreeWorld)} are available in the world
+     */
+    public boolean canUpdate(EvoTreeWorld world) {
+        return world.isAvailableColumn(cell.x - 1) && world.isAvailableColumn(cell.x + 1);
+    }
+
     private void sprout(EvoTreeWorld world) {
         CellGrid grid = world.getGrid();
-        Tree tree = Tree.getInstance();
+        Tree tree = world.getPools().obtainTree();
         tree.generation = this.generation;
-        tree.dna.set(this.dna);
-        tree.init();
+        tree.dna.set(getDna());
+        tree.init(world.getGeneticRules());
         tree.energy = this.energy;
         tree.root = this.cell;
-        TreePart treePart = TreePart.getInstance();
+        // the tree has no id yet, so it continues the stream of the seed
+        tree.random.reseed(random.nextLong());
+        TreePart treePart = world.getPools().obtainTreePart();
         treePart.type = TreePartType.SHOOT;
         treePart.buffer.set(this.dna);
         grid.addCellObject(treePart, tree.root);
-        treePart.activeGene = tree.dna.getGene(0);
-        treePart.lightAbsorption = TreePart.calcLightAbsorption(treePart.activeGene.getValue(Gene.LIGHT_ABSORPTION));
+        treePart.activeGene = 0;
+        treePart.lightAbsorption = treePart.calcLightAbsorption(tree.dna.getValue(0, Gene.LIGHT_ABSORPTION));
         tree.addPart(treePart);
         tree.justSprouted = true;
         world.addTree(tree);
         log.info("Tree #" + tree.id + " was sprouted from seed #" + id + " with energy " + tree.energy);
     }
 
+    /**
+     * Writes the seed with its cell, a pending genome is written as the parents
+     */
+    public void write(BinaryOutput out, GenomeTable genomes) throws IOException {
+        out.writeVarInt(id);
+        out.writeVarInt(generation);
+        out.writeSignedVarInt(energy);
+        out.writeSignedVarInt(lightToSprout);
+        out.writeByte(state.ordinal());
+        out.writeSignedVarInt(turnsToSprout);
+        out.writeBoolean(isDnaPending);
+        if (isDnaPending) {
+            genomes.write(parent1, out);
+            genomes.write(parent2, out);
+            out.writeLong(dnaSeed);
+        } else {
+            genomes.write(dna, out);
+        }
+        cell.grid.writePlacement(this, out);
+    }
+
+    /**
+     * Reads the seed written by {@link #write(BinaryOutput, GenomeTable)} and puts it to its cell
+     */
+    public void read(BinaryInput in, GenomeTable genomes, CellGrid grid) throws IOException {
+        id = in.readVarInt();
+        generation = in.readVarInt();
+        energy = in.readSignedVarInt();
+        lightToSprout = in.readSignedVarInt();
+        int state = in.readByte();
+        if (state < 0 || state >= State.STATES.length) {
+            throw new IOException("Unexpected state " + state + " of seed #" + id);
+        }
+        this.state = State.STATES[state];
+        turnsToSprout = in.readSignedVarInt();
+        isDnaPending = in.readBoolean();
+        if (isDnaPending) {
+            genomes.read(parent1, in);
+            genomes.read(parent2, in);
+            dnaSeed = in.readLong();
+        } else {
+            genomes.read(dna, in);
+        }
+        grid.readPlacement(this, in);
+    }
+
     public int getId() {
         return id;
     }
@@ -143,6 +243,10 @@ public class Seed extends LivingCellObject {
         this.generation = generation;
     }
 
+    public int getEnergy() {
+        return energy;
+    }
+
     public void setEnergy(int energy) {
         this.energy = energy;
     }
@@ -164,6 +268,10 @@ public class Seed extends LivingCellObject {
         id = 0;
         generation = 0;
         dna.reset();
+        parent1.reset();
+        parent2.reset();
+        dnaSeed = 0;
+        isDnaPending = false;
         energy = 0;
         lightToSprout = -1;
         state = null;
@@ -0,0 +1,271 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongMap;
+import com.badlogic.gdx.utils.Pool;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+import com.gordonfromblumberg.games.core.common.utils.IndexedArray;
+
+import java.io.IOException;
+
+/**
+ * Live trees grouped by species, a species is a set of trees with equal genomes.
+ * Genomes are interned: a tree added to the registry shares the genome of its species,
+ * so equal genomes of the population are stored once. Addition and removal of a tree take O(1),
+ * the registry is not thread safe and is changed by the world between updates.
+ * A species is forgotten when its last tree is removed.
+ */
+public class SpeciesRegistry {
+    private final Pool<Species> pool = new Pool<Species>() {
+        @Override
+        protected Species newObject() {
+            return new Species(context);
+        }
+    };
+    private final WorldContext context;
+
+    // species with equal hashes are chained by Species#next
+    private final LongMap<Species> speciesByHash = new LongMap<>();
+    private final IndexedArray<Species> species = new IndexedArray<>();
+    private int nextSpeciesId = 1;
+
+    public SpeciesRegistry(WorldContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Adds the tree to its species, the genome of the tree is replaced by the equal genome of the species
+     * @param turn Turn of the world, it is the first seen turn of a new species
+     */
+    public void add(Tree tree, int turn) {
+        final DNA dna = tree.dna;
+        final long hash = hash(dna);
+        final Species first = speciesByHash.get(hash);
+        Species species = first;
+        while (species != null && !species.dna.contentEquals(dna)) {
+            species = species.next;
+        }
+
+        if (species == null) {
+            species = pool.obtain();
+            species.id = nextSpeciesId++;
+            species.hash = hash;
+            species.dna.set(dna);
+            species.color.set(tree.getColor());
+            species.firstSeenTurn = turn;
+            species.next = first;
+            speciesByHash.put(hash, species);
+            this.species.add(species);
+        } else {
+            shareGenome(tree, species.dna);
+        }
+        ++species.count;
+        tree.species = species;
+    }
+
+    // species are chained by this hash, tests make collisions with a weaker one
+    long hash(DNA dna) {
+        return dna.contentHash();
+    }
+
+    // pollen buffers which are not filled hold the genome of the tree too
+    private static void shareGenome(Tree tree, DNA genome) {
+        final IndexedArray<TreePart> parts = tree.treeParts;
+        for (int i = 0, n = parts.size; i < n; ++i) {
+            TreePart part = parts.get(i);
+            if (!part.isBufferFilled) {
+                part.buffer.set(genome);
+            }
+        }
+        tree.dna.set(genome);
+    }
+
+    /**
+     * Removes the tree from its species, it should be called before the tree is released
+     */
+    public void remove(Tree tree) {
+        final Species species = tree.species;
+        if (species == null) {
+            return;
+        }
+        tree.species = null;
+        if (--species.count > 0) {
+            return;
+        }
+
+        Species first = speciesByHash.get(species.hash);
+        if (first == species) {
+            if (species.next != null) {
+                speciesByHash.put(species.hash, species.next);
+            } else {
+                speciesByHash.remove(species.hash);
+            }
+        } else {
+            while (first.next != species) {
+                first = first.next;
+            }
+            first.next = species.next;
+        }
+        this.species.remove(species);
+        pool.free(species);
+    }
+
+    /**
+     * Writes the species in the order of the registry, trees refer to them by the index
+     */
+    public void write(BinaryOutput out, GenomeTable genomes) throws IOException {
+        out.writeVarInt(nextSpeciesId);
+        out.writeVarInt(species.size);
+        for (int i = 0, n = species.size; i < n; ++i) {
+            Species species = this.species.get(i);
+            out.writeVarInt(species.id);
+            out.writeSignedVarInt(species.firstSeenTurn);
+            out.writeFloat(species.color.r);
+            out.writeFloat(species.color.g);
+            out.writeFloat(species.color.b);
+            genomes.write(species.dna, out);
+        }
+    }
+
+    /**
+     * Reads the species written by {@link #write(BinaryOutput, GenomeTable)} to the empty registry,
+     * the species have no trees until the trees are read
+     */
+    public void read(BinaryInput in, GenomeTable genomes) throws IOException {
+        nextSpeciesId = in.readVarInt();
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            Species species = pool.obtain();
+            species.id = in.readVarInt();
+            species.firstSeenTurn = in.readSignedVarInt();
+            species.color.r = in.readFloat();
+            species.color.g = in.readFloat();
+            species.color.b = in.readFloat();
+            species.color.a = 1;
+            genomes.read(species.dna, in);
+            species.hash = hash(species.dna);
+            species.next = speciesByHash.get(species.hash);
+            speciesByHash.put(species.hash, species);
+            this.species.add(species);
+        }
+    }
+
+    // adds the read tree to the species with the index
+    void restore(Tree tree, int index) throws IOException {
+        if (index >= species.size) {
+            throw new IOException("Tree #" + tree.id + " has unknown species " + index);
+        }
+        Species species = this.species.get(index);
+        ++species.count;
+        tree.species = species;
+    }
+
+    /**
+     * @return Number of species which have live trees
+     */
+    public int getSpeciesCount() {
+        return species.size;
+    }
+
+    /**
+     * Selects species with the most trees, species with equal counts are ordered by the first seen turn and the id.
+     * Selected species are valid until the registry is changed
+     * @param n Maximum number of species
+     * @param out Array for the species in descending order of the counts, it is cleared
+     */
+    public void getTopSpecies(int n, Array<Species> out) {
+        out.clear();
+        if (n <= 0) {
+            return;
+        }
+        for (int i = 0, size = species.size; i < size; ++i) {
+            Species candidate = species.get(i);
+            if (out.size == n && !candidate.isBefore(out.peek())) {
+                continue;
+            }
+            if (out.size == n) {
+                out.pop();
+            }
+            int j = out.size;
+            out.add(candidate);
+            for (; j > 0 && candidate.isBefore(out.get(j - 1)); --j) {
+                out.set(j, out.get(j - 1));
+            }
+            out.set(j, candidate);
+        }
+    }
+
+    public static class Species implements Pool.Poolable, IndexedArray.Indexed {
+        int id;
+        long hash;
+        final DNA dna;
+        final Color color = new Color();
+        int firstSeenTurn;
+        int count;
+        // species with the same hash
+        Species next;
+        private int index = -1;
+
+        private Species(WorldContext context) {
+            dna = new DNA(context);
+        }
+
+        boolean isBefore(Species other) {
+            if (count != other.count) return count > other.count;
+            if (firstSeenTurn != other.firstSeenTurn) return firstSeenTurn < other.firstSeenTurn;
+            return id < other.id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return Genome of the trees of the species
+         */
+        public DNA getDna() {
+            return dna;
+        }
+
+        /**
+         * @return Color of the first tree of the species
+         */
+        public Color getColor() {
+            return color;
+        }
+
+        public int getFirstSeenTurn() {
+            return firstSeenTurn;
+        }
+
+        /**
+         * @return Number of live trees of the species
+         */
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void reset() {
+            id = 0;
+            hash = 0;
+            dna.reset();
+            color.set(0);
+            firstSeenTurn = 0;
+            count = 0;
+            next = null;
+            index = -1;
+        }
+    }
+}
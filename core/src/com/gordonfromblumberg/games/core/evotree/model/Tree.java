@@ -2,97 +2,94 @@ package com.gordonfromblumberg.games.core.evotree.model;
 
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.Pool;
-import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
 import com.gordonfromblumberg.games.core.common.log.LogManager;
 import com.gordonfromblumberg.games.core.common.log.Logger;
-import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+import com.gordonfromblumberg.games.core.common.utils.IndexedArray;
+import com.gordonfromblumberg.games.core.common.utils.ManagedPool;
 import com.gordonfromblumberg.games.core.common.utils.Poolable;
 import com.gordonfromblumberg.games.core.common.utils.RandomGen;
 import com.gordonfromblumberg.games.core.evotree.world.EvoTreeWorld;
 
-import java.util.Iterator;
+import java.io.IOException;
 
-public class Tree implements Poolable {
-    private static final Pool<Tree> pool = new Pool<Tree>() {
-        @Override
-        protected Tree newObject() {
-            return new Tree();
-        }
-    };
+public class Tree implements Poolable, IndexedArray.Indexed {
     private static final Logger log = LogManager.create(Tree.class);
 
-    static final int MAX_ENERGY_PER_SEED;
-    private static final float MIN_COLOR_VALUE;
-    private static final float COLOR_DIFF;
-    private static final int MIN_LIFETIME;
-    private static final int MAX_LIFETIME;
-    private static final int POLLEN_SPREAD_RADIUS;
-    private static final float POLLINATE_CHANCE;
-
-    static {
-        ConfigManager configManager = AbstractFactory.getInstance().configManager();
-        MAX_ENERGY_PER_SEED = configManager.getInteger("tree.maxEnergyPerSeed");
-        MIN_COLOR_VALUE = configManager.getFloat("tree.minColor");
-        COLOR_DIFF = configManager.getFloat("tree.maxColor") - MIN_COLOR_VALUE;
-        MIN_LIFETIME = configManager.getInteger("tree.minLifetime");
-        MAX_LIFETIME = configManager.getInteger("tree.maxLifetime");
-        POLLEN_SPREAD_RADIUS = configManager.getInteger("tree.pollenSpreadRadius");
-        POLLINATE_CHANCE = configManager.getFloat("tree.pollinateChance");
-    }
-
-    private static final Array<TreePart> newShoots = new Array<>();
-    private static final Array<CellObject> cellObjects = new Array<>();
-
     int id;
     int generation;
     int lifetime;
     int age;
-    final DNA dna = new DNA();
+    final DNA dna;
+    final DecisionProgram program;
     int energy;
     Cell root;
     int maxHeight;
-    final Array<TreePart> treeParts = new Array<>();
+    final IndexedArray<TreePart> treeParts = new IndexedArray<>();
     int shootCount; // is updated inside #update()
+    // is seeded by the world before each update
+    final RandomGen random = new RandomGen();
+    private final Array<TreePart> newShoots = new Array<>(4);
     private final Color color = new Color();
+    // shoots the pollen is spread from by PollenSweep
+    Cell pollenTop, pollenLeft, pollenRight;
+    int pollenRadius;
+
+    // is set by SpeciesRegistry when the tree is added to the world
+    SpeciesRegistry.Species species;
 
     boolean justSprouted;
     boolean isDead;
-
-    private Tree() {}
-
-    public static Tree getInstance() {
-        return pool.obtain();
+    // in the collection of the world
+    private int index = -1;
+
+    final WorldContext context;
+    // pool of the world
+    private final ManagedPool<Tree> pool;
+
+    Tree(ManagedPool<Tree> pool, WorldContext context) {
+        this.pool = pool;
+        this.context = context;
+        this.dna = new DNA(context);
+        this.program = new DecisionProgram(context.sproutGenesCount);
     }
 
-    public void init() {
-        Gene gene = dna.getSpecialGene(DNA.COLOR);
-        int r = Math.max(gene.getValue(0) ^ gene.getValue(1), 0);
-        int g = Math.max(gene.getValue(1) ^ gene.getValue(2), 0);
-        int b = Math.max(gene.getValue(2) ^ gene.getValue(3), 0);
-        color.set(
-                MIN_COLOR_VALUE + COLOR_DIFF * r / Gene.MAX_VALUE,
-                MIN_COLOR_VALUE + COLOR_DIFF * g / Gene.MAX_VALUE,
-                MIN_COLOR_VALUE + COLOR_DIFF * b / Gene.MAX_VALUE,
-                1
-        );
-        Gene treeLifetime = dna.getSpecialGene(DNA.LIFETIME);
+    public void init(GeneticRules rules) {
+        program.compile(dna, rules);
+        initColor();
+        int treeLifetime = dna.getSpecialGene(DNA.LIFETIME);
         int lifetime = 0;
         for (int i = 0; i < Gene.VALUE_COUNT; ++i) {
-            int value = treeLifetime.getValue(i);
+            int value = dna.getValue(treeLifetime, i);
             if (value > 0)
                 lifetime += value;
         }
-        this.lifetime = (lifetime + 1) % (MAX_LIFETIME - MIN_LIFETIME) + MIN_LIFETIME;
+        this.lifetime = (lifetime + 1) % (context.maxLifetime - context.minLifetime) + context.minLifetime;
         this.age = 0;
     }
 
+    private void initColor() {
+        int gene = dna.getSpecialGene(DNA.COLOR);
+        int r = Math.max(dna.getValue(gene, 0) ^ dna.getValue(gene, 1), 0);
+        int g = Math.max(dna.getValue(gene, 1) ^ dna.getValue(gene, 2), 0);
+        int b = Math.max(dna.getValue(gene, 2) ^ dna.getValue(gene, 3), 0);
+        final float minColor = context.minColorValue, colorDiff = context.colorDiff;
+        color.set(
+                minColor + colorDiff * r / Gene.MAX_VALUE,
+                minColor + colorDiff * g / Gene.MAX_VALUE,
+                minColor + colorDiff * b / Gene.MAX_VALUE,
+                1
+        );
+    }
+
     /**
      * Updates state of this tree
      * @param world Game world
      * @return true if this tree should be removed from world
      */
     public boolean update(EvoTreeWorld world) {
+        random.reseed(RandomGen.split(world.getTurnSeed(), id));
         if (justSprouted) {
             justSprouted = false;
             return false;
@@ -102,33 +99,36 @@ public class Tree implements Poolable {
         if (!isDead) {
             if (++age >= lifetime) {
                 produceSeeds(world);
-                die();
+                die(grid);
                 return false;
             }
 
             int newEnergy = energy;
-            for (TreePart treePart : treeParts) {
+            for (int i = 0, n = treeParts.size; i < n; ++i) {
+                TreePart treePart = treeParts.get(i);
                 if (treePart.getType() != TreePartType.DEAD) {
-                    newEnergy += treePart.calcEnergy(grid) - TreePart.ENERGY_CONSUMPTION;
+                    newEnergy += treePart.getEnergy(grid) - TreePart.ENERGY_CONSUMPTION;
                 }
             }
             energy = newEnergy;
 
             if (energy <= 0) {
                 log.debug("Tree #" + id + " has no energy and dies");
-                die();
+                die(grid);
                 return false;
             }
         }
 
-        Iterator<TreePart> it = treeParts.iterator();
-        while (it.hasNext()) {
-            TreePart part = it.next();
+        for (int i = 0; i < treeParts.size; ) {
+            TreePart part = treeParts.get(i);
             if (part.update(grid, newShoots, world)) {
-                it.remove();
+                // the last part takes its place
+                treeParts.removeIndex(i);
                 part.removeFromParent();
                 grid.removeCellObject(part);
                 part.release();
+            } else {
+                ++i;
             }
         }
         for (TreePart newShoot : newShoots) {
@@ -139,6 +139,19 @@ public class Tree implements Poolable {
         return treeParts.isEmpty();
     }
 
+    /**
+     * @return true if all columns which may be changed by {@link #update(EvoTreeWorld)} are available in the world
+     */
+    public boolean canUpdate(EvoTreeWorld world) {
+        for (int i = 0, n = treeParts.size; i < n; ++i) {
+            int x = treeParts.get(i).cell.x;
+            if (!world.isAvailableColumn(x - 1) || !world.isAvailableColumn(x + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void addPart(TreePart part) {
         treeParts.add(part);
         part.tree = this;
@@ -149,22 +162,18 @@ public class Tree implements Poolable {
         if (max < 1) max = 1;
         int min = max / 2;
         if (min < 1) min = 1;
-        part.turnsToDisappear = RandomGen.INSTANCE.nextInt(min, max);
+        part.turnsToDisappear = random.nextInt(min, max);
         if (part.type == TreePartType.SHOOT) {
             ++shootCount;
         }
     }
 
-    Seed createSeed(int energy, Cell cell, CellGrid grid, TreePart origin) {
-        Seed seed = Seed.getInstance();
-        grid.addCellObject(seed, cell);
+    Seed createSeed(int energy, Cell cell, EvoTreeWorld world, TreePart origin) {
+        Seed seed = world.getPools().obtainSeed();
+        world.getGrid().addCellObject(seed, cell);
         seed.generation = generation + 1;
-        if (origin.isBufferFilled)
-            seed.dna.set(this.dna, origin.buffer);
-        else
-            seed.dna.set(this.dna);
-        seed.dna.mutate();
-        seed.init();
+        seed.setParents(this.dna, origin.isBufferFilled ? origin.buffer : null, random.nextLong());
+        seed.init(random);
         seed.energy = energy;
         return seed;
     }
@@ -174,41 +183,53 @@ public class Tree implements Poolable {
         if (energy >= shootCount && shootCount > 0) {
             CellGrid grid = world.getGrid();
             int energyPerSeed = (energy / shootCount) + 1;
-            if (energyPerSeed > MAX_ENERGY_PER_SEED) {
-                energyPerSeed = MAX_ENERGY_PER_SEED;
+            final int maxEnergyPerSeed = context.maxEnergyPerSeed;
+            if (energyPerSeed > maxEnergyPerSeed) {
+                energyPerSeed = maxEnergyPerSeed;
             }
             int nextGeneration = generation + 1;
-            Iterator<TreePart> it = treeParts.iterator();
-            int pollenRadius = energyPerSeed * POLLEN_SPREAD_RADIUS / MAX_ENERGY_PER_SEED;
+            int pollenRadius = energyPerSeed * context.pollenSpreadRadius / maxEnergyPerSeed;
             log.debug("Pollen radius = " + pollenRadius);
             Cell top = null, left = null, right = null;
-            while (it.hasNext()) {
-                TreePart part = it.next();
-                if (part.type == TreePartType.SHOOT) {
-                    Seed seed = createSeed(energyPerSeed, part.cell, grid, part);
+            for (int i = 0; i < treeParts.size; ) {
+                TreePart part = treeParts.get(i);
+                if (part.type != TreePartType.SHOOT) {
+                    ++i;
+                } else {
+                    Cell cell = part.cell;
+                    // the shoot leaves the grid and its chunk, the seed takes its cell
+                    grid.removeCellObject(part);
+                    Seed seed = createSeed(energyPerSeed, cell, world, part);
                     world.addSeed(seed);
                     log.info("Seed #" + seed.id + " was produced by tree #" + id
                             + " with energy " + energyPerSeed + " of gen " + nextGeneration);
                     if (top == null) {
-                        top = left = right = part.cell;
+                        top = left = right = cell;
                     } else {
-                        top = compareCells(top, part.cell, Direction.up, grid.width);
-                        left = compareCells(top, part.cell, Direction.left, grid.width);
-                        right = compareCells(top, part.cell, Direction.right, grid.width);
+                        top = compareCells(top, cell, Direction.up, grid.width);
+                        left = compareCells(top, cell, Direction.left, grid.width);
+                        right = compareCells(top, cell, Direction.right, grid.width);
                     }
-                    it.remove();
+                    treeParts.removeIndex(i);
                     part.removeFromParent();
                     part.release();
                 }
             }
             if (top != null) {
-                pollinate(grid, top, pollenRadius);
-                if (left != top) pollinate(grid, left, pollenRadius);
-                if (right != top && right != left) pollinate(grid, right, pollenRadius);
+                this.pollenTop = top;
+                this.pollenLeft = left != top ? left : null;
+                this.pollenRight = right != top && right != left ? right : null;
+                this.pollenRadius = pollenRadius;
+                world.pollinate(this);
             }
         }
     }
 
+    void clearPollen() {
+        pollenTop = pollenLeft = pollenRight = null;
+        pollenRadius = 0;
+    }
+
     private Cell compareCells(Cell old, Cell newCell, Direction dir, int gridWidth) {
         int kx = 0;
         switch (dir) {
@@ -228,52 +249,86 @@ public class Tree implements Poolable {
         return 2 * old.y + kx * oldX < 2 * newCell.y + kx * newCell.x ? newCell : old;
     }
 
-    private void pollinate(CellGrid grid, Cell shootCell, int radius) {
-        Array<CellObject> array = cellObjects;
-
-        int dx = radius + shootCell.y;
-        // top cell inside grid
-        if (dx < grid.height) {
-            // left line
-            array.addAll(grid.findObjectsUnderLine(shootCell.x - dx, 0, shootCell.x, dx));
-            // right line
-            array.addAll(grid.findObjectsUnderLine(shootCell.x, dx, shootCell.x + dx, 0));
-
-        // top cell above grid
-        } else {
-            int dy = dx - grid.height + 1;
-            int topY = grid.height - 1;
-            // left line
-            array.addAll(grid.findObjectsUnderLine(shootCell.x - dx, 0, shootCell.x - dy, topY));
-            // right line
-            array.addAll(grid.findObjectsUnderLine(shootCell.x + dy, topY,shootCell.x + dx, 0));
-            // middle line
-            array.addAll(grid.findObjectsUnderLine(shootCell.x - dy + 1, topY,shootCell.x + dy - 1, topY));
+    private void die(CellGrid grid) {
+        isDead = true;
+        for (int i = 0, n = treeParts.size; i < n; ++i) {
+            treeParts.get(i).setType(TreePartType.DEAD, grid);
         }
+    }
 
-        int n = 0;
-        for (CellObject cellObject : array) {
-            if (cellObject instanceof TreePart) {
-                TreePart treePart = (TreePart) cellObject;
-                if (treePart.type == TreePartType.SHOOT
-                        && !treePart.isBufferFilled
-                        && treePart.tree != this
-                        && RandomGen.INSTANCE.nextBool(POLLINATE_CHANCE)) {
-                    treePart.buffer.set(dna);
-                    treePart.isBufferFilled = true;
-                    ++n;
-                }
+    /**
+     * Writes the tree with its parts, their cells and genomes. The pollen is not written,
+     * it is spread during the turn it is produced
+     */
+    public void write(BinaryOutput out, GenomeTable genomes) throws IOException {
+        root.grid.writeCell(root, out);
+        out.writeVarInt(id);
+        out.writeVarInt(generation);
+        out.writeSignedVarInt(lifetime);
+        out.writeSignedVarInt(age);
+        out.writeSignedVarInt(energy);
+        out.writeSignedVarInt(maxHeight);
+        out.writeSignedVarInt(shootCount);
+        out.writeBoolean(justSprouted);
+        out.writeBoolean(isDead);
+        out.writeVarInt(species != null ? species.getIndex() + 1 : 0);
+        genomes.write(dna, out);
+
+        final IndexedArray<TreePart> parts = treeParts;
+        out.writeVarInt(parts.size);
+        for (int i = 0, n = parts.size; i < n; ++i) {
+            parts.get(i).write(out, genomes);
+        }
+        // children are referenced by indices of the parts
+        for (int i = 0, n = parts.size; i < n; ++i) {
+            Array<TreePart> children = parts.get(i).children;
+            out.writeVarInt(children.size);
+            for (TreePart child : children) {
+                out.writeVarInt(child.getIndex());
             }
         }
-        log.debug("From shoot at " + shootCell.x + ", " + shootCell.y + " " + n + " shoots have been pollinated");
-
-        array.clear();
     }
 
-    private void die() {
-        isDead = true;
-        for (TreePart part : treeParts) {
-            part.type = TreePartType.DEAD;
+    /**
+     * Reads the tree written by {@link #write(BinaryOutput, GenomeTable)}, puts its parts to their cells
+     * and adds the tree to its species
+     */
+    public void read(BinaryInput in, GenomeTable genomes, EvoTreeWorld world, SpeciesRegistry registry) throws IOException {
+        final CellGrid grid = world.getGrid();
+        root = grid.readCell(in);
+        id = in.readVarInt();
+        generation = in.readVarInt();
+        lifetime = in.readSignedVarInt();
+        age = in.readSignedVarInt();
+        energy = in.readSignedVarInt();
+        maxHeight = in.readSignedVarInt();
+        shootCount = in.readSignedVarInt();
+        justSprouted = in.readBoolean();
+        isDead = in.readBoolean();
+        final int species = in.readVarInt();
+        genomes.read(dna, in);
+        program.compile(dna, world.getGeneticRules());
+        initColor();
+        if (species > 0) {
+            registry.restore(this, species - 1);
+        }
+
+        final IndexedArray<TreePart> parts = treeParts;
+        for (int i = 0, n = in.readVarInt(); i < n; ++i) {
+            TreePart part = world.getPools().obtainTreePart();
+            part.tree = this;
+            parts.add(part);
+            part.read(in, genomes, grid);
+        }
+        for (int i = 0, n = parts.size; i < n; ++i) {
+            TreePart part = parts.get(i);
+            for (int j = 0, m = in.readVarInt(); j < m; ++j) {
+                int child = in.readVarInt();
+                if (child >= n) {
+                    throw new IOException("Tree #" + id + " has no part " + child);
+                }
+                part.addChild(parts.get(child));
+            }
         }
     }
 
@@ -289,6 +344,10 @@ public class Tree implements Poolable {
         return treeParts.size;
     }
 
+    public SpeciesRegistry.Species getSpecies() {
+        return species;
+    }
+
     public Color getColor() {
         return color;
     }
@@ -297,6 +356,10 @@ public class Tree implements Poolable {
         return energy;
     }
 
+    public Cell getRoot() {
+        return root;
+    }
+
     public int getHeight() {
         return maxHeight - root.y + 1;
     }
@@ -321,6 +384,16 @@ public class Tree implements Poolable {
         return lifetime - age;
     }
 
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
     public boolean isDead() {
         return isDead;
     }
@@ -344,12 +417,15 @@ public class Tree implements Poolable {
         energy = 0;
         root = null;
         maxHeight = 0;
-        for (TreePart part : treeParts) {
-            part.release();
+        while (treeParts.notEmpty()) {
+            treeParts.removeIndex(treeParts.size - 1).release();
         }
-        treeParts.clear();
         shootCount = 0;
+        newShoots.clear();
         color.set(0);
+        species = null;
+        clearPollen();
         isDead = false;
+        index = -1;
     }
 }
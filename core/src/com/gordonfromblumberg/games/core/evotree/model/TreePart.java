@@ -1,50 +1,42 @@
 package com.gordonfromblumberg.games.core.evotree.model;
 
 import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.ObjectSet;
-import com.badlogic.gdx.utils.Pool;
-import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
+import com.gordonfromblumberg.games.core.common.chunk.ChunkItem;
 import com.gordonfromblumberg.games.core.common.log.LogManager;
 import com.gordonfromblumberg.games.core.common.log.Logger;
-import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+import com.gordonfromblumberg.games.core.common.utils.ManagedPool;
 import com.gordonfromblumberg.games.core.evotree.world.EvoTreeWorld;
 
+import java.io.IOException;
+
 public class TreePart extends LivingCellObject {
     private static final Logger log = LogManager.create(TreePart.class);
-    private static final Pool<TreePart> pool = new Pool<TreePart>() {
-        @Override
-        protected TreePart newObject() {
-            return new TreePart();
-        }
-    };
-    private static final ObjectSet<Gene> PROCESSED_GENES = new ObjectSet<>(DNA.SPROUT_GENES_COUNT);
 
-    private static final int MIN_ABSORPTION;
-    private static final int MAX_ABSORPTION;
-    private static final int ABSORPTION_SHIFT;
     static final int ENERGY_CONSUMPTION = 10;
     private static final int[] PUSH_SEED_COST = new int[] { 5, 3, 0, 3 };
 
-    static {
-        ConfigManager configManager = AbstractFactory.getInstance().configManager();
-        MIN_ABSORPTION = configManager.getInteger("treePart.minAbsorption");
-        MAX_ABSORPTION = configManager.getInteger("treePart.maxAbsorption");
-        ABSORPTION_SHIFT = configManager.getInteger("treePart.absorptionShift");
-    }
-
     Tree tree;
     TreePart parent;
     Array<TreePart> children = new Array<>(4);
     TreePartType type;
-    Gene activeGene;
+    // index of the gene in DNA of the tree, -1 if the part does not sprout
+    int activeGene = -1;
     int turnsToDisappear;
-    final DNA buffer = new DNA();
+    final DNA buffer;
     boolean isBufferFilled = false;
+    // not null while the part is a shoot on the grid, is managed by the grid
+    ChunkItem<CellObject> chunkItem;
 
-    private TreePart() {}
+    private final WorldContext context;
+    // pool of the world
+    private final ManagedPool<TreePart> pool;
 
-    public static TreePart getInstance() {
-        return pool.obtain();
+    TreePart(ManagedPool<TreePart> pool, WorldContext context) {
+        this.pool = pool;
+        this.context = context;
+        this.buffer = new DNA(context);
     }
 
     boolean update(CellGrid grid, Array<TreePart> newShoots, EvoTreeWorld world) {
@@ -56,43 +48,16 @@ public class TreePart extends LivingCellObject {
             return --turnsToDisappear == 0;
         }
 
-        if (calcLight(grid) >= lightToDie()) {
-            die();
+        if (getLight(grid) >= lightToDie()) {
+            die(grid);
             return false;
         }
 
-        GeneticRules rules = world.getGeneticRules();
-        if (rules.hasActiveConditions()) {
-            Gene gene = activeGene;
-            while (!PROCESSED_GENES.contains(gene)) {
-                PROCESSED_GENES.add(gene);
-
-                int checkResult = 0;
-                byte condition1 = gene.getValue(Gene.CONDITION1);
-                if (rules.isActiveCondition(condition1)
-                        && Condition.of(condition1).check(grid, this, gene.getValue(Gene.PARAMETER1)))
-                    checkResult |= 1;
-                byte condition2 = gene.getValue(Gene.CONDITION2);
-                if (rules.isActiveCondition(condition2)
-                        && Condition.of(condition2).check(grid, this, gene.getValue(Gene.PARAMETER2)))
-                    checkResult |= 2;
-
-                if (checkResult == 0) {
-                    PROCESSED_GENES.clear();
-                    activeGene = gene;
-                    break;
-                } else {
-//                    log.debug("Conditions " + condition1 + ", " + condition2 + "; check res = " + checkResult);
-                    byte action = gene.getValue(Gene.ACTION + checkResult - 1);
-                    if (0 <= action && action < DNA.SPROUT_GENES_COUNT) {
-                        gene = tree.dna.getGene(action);
-                    } else if (rules.isActiveAction(action)) {
-                        return Action.of(action).act(grid, this, world);
-                    }
-                }
-            }
-            PROCESSED_GENES.clear();
+        int decision = tree.program.decide(grid, this);
+        if (decision < 0) {
+            return Action.of((byte) decision).act(grid, this, world);
         }
+        activeGene = decision;
 
 //        int requiredEnergy = calcSproutCost(grid);
 //        if (requiredEnergy < tree.energy) {
@@ -103,21 +68,21 @@ public class TreePart extends LivingCellObject {
 //            }
 //        }
 
-        if (sprout(grid, newShoots)) {
-            becomeWood();
+        if (sprout(grid, newShoots, world)) {
+            becomeWood(grid);
         }
 
         return false;
     }
 
-    boolean sprout(CellGrid grid, Array<TreePart> newShoots) {
+    boolean sprout(CellGrid grid, Array<TreePart> newShoots, EvoTreeWorld world) {
         Cell cell = this.cell;
         boolean sprouted = false;
 
         for (Direction dir : Direction.ALL) {
-            int nextActiveGene = activeGene.getValue(dir);
-            if (0 <= nextActiveGene && nextActiveGene < DNA.SPROUT_GENES_COUNT) {
-                int seedsToPush = countSeedsToPush(grid, dir, cell);
+            int nextActiveGene = tree.dna.getValue(activeGene, dir);
+            if (0 <= nextActiveGene && nextActiveGene < context.sproutGenesCount) {
+                int seedsToPush = countSeedsToPush(grid, dir, cell, world);
                 if (seedsToPush == -1)
                     continue;
 
@@ -131,21 +96,21 @@ public class TreePart extends LivingCellObject {
                 Cell neib = grid.getCell(cell, dir);
 
                 Cell targetCell = grid.getCell(neib, dir);
-                CellObject seedToPush = neib.object;
-                CellObject nextSeed = targetCell != null ? targetCell.object : null;
+                CellObject seedToPush = neib.getObject();
+                CellObject nextSeed = targetCell != null ? targetCell.getObject() : null;
                 while (seedsToPush-- > 0 && targetCell != null) {
                     grid.moveCellObjectTo(seedToPush, targetCell);
                     targetCell = grid.getCell(targetCell, dir);
                     seedToPush = nextSeed;
-                    nextSeed = targetCell != null ? targetCell.object : null;
+                    nextSeed = targetCell != null ? targetCell.getObject() : null;
                 }
 
-                TreePart shoot = getInstance();
+                TreePart shoot = world.getPools().obtainTreePart();
                 shoot.type = TreePartType.SHOOT;
                 grid.addCellObject(shoot, neib);
                 newShoots.add(shoot);
-                shoot.activeGene = tree.dna.getGene(nextActiveGene);
-                shoot.lightAbsorption = calcLightAbsorption(shoot.activeGene.getValue(Gene.LIGHT_ABSORPTION));
+                shoot.activeGene = nextActiveGene;
+                shoot.lightAbsorption = calcLightAbsorption(tree.dna.getValue(nextActiveGene, Gene.LIGHT_ABSORPTION));
                 shoot.buffer.set(this.buffer);
                 shoot.isBufferFilled = this.isBufferFilled;
                 addChild(shoot);
@@ -155,11 +120,18 @@ public class TreePart extends LivingCellObject {
         return sprouted;
     }
 
-    int countSeedsToPush(CellGrid grid, Direction dir, Cell shootCell) {
+    /**
+     * @return Number of seeds in the direction which should be pushed to sprout there
+     * or -1 if they can not be pushed
+     */
+    int countSeedsToPush(CellGrid grid, Direction dir, Cell shootCell, EvoTreeWorld world) {
         int count = 0;
         Cell cell = shootCell;
         while ((cell = grid.getCell(cell, dir)) != null && cell != shootCell) {
-            CellObject object = cell.object;
+            // seeds are not pushed into columns which other updates may change at the same time
+            if (!world.isAvailableColumn(cell.x))
+                return -1;
+            CellObject object = cell.getObject();
             if (object == null)
                 return count;
             if (!(object instanceof Seed))
@@ -170,29 +142,39 @@ public class TreePart extends LivingCellObject {
     }
 
     int lightToDie() {
-        return (120 - lightAbsorption + ABSORPTION_SHIFT) * 3;
+        return (120 - lightAbsorption + context.absorptionShift) * 3;
     }
 
-    void die() {
-        type = TreePartType.DEAD;
+    /**
+     * Changes the type of the part, only shoots are kept in the chunks of the grid
+     */
+    void setType(TreePartType type, CellGrid grid) {
+        this.type = type;
+        if (cell != null) {
+            grid.updateShoot(this);
+        }
+    }
+
+    void die(CellGrid grid) {
+        setType(TreePartType.DEAD, grid);
         for (TreePart child : children) {
-            child.die();
+            child.die(grid);
         }
     }
 
-    void becomeWood() {
-        type = TreePartType.WOOD;
-        activeGene = null;
+    void becomeWood(CellGrid grid) {
+        setType(TreePartType.WOOD, grid);
+        activeGene = -1;
         --tree.shootCount;
     }
 
     int calcSproutCost(CellGrid grid) {
         int result = 0;
         for (Direction dir : Direction.ALL) {
-            int nextGene = activeGene.getValue(dir);
-            if (0 <= nextGene && nextGene < DNA.SPROUT_GENES_COUNT) {
+            int nextGene = tree.dna.getValue(activeGene, dir);
+            if (0 <= nextGene && nextGene < context.sproutGenesCount) {
                 Cell neib = grid.getCell(cell, dir);
-                if (neib != null && neib.object == null) {
+                if (neib != null && neib.getObject() == null) {
 //                    int x = calcLightAbsorption(tree.dna.getGene(nextGene).getValue(Gene.LIGHT_ABSORPTION)) - 4;
 //                    result += x * x / 2 + 4;
 //                    result += 3 * calcLightAbsorption(tree.dna.getGene(nextGene).getValue(Gene.LIGHT_ABSORPTION));
@@ -204,16 +186,16 @@ public class TreePart extends LivingCellObject {
     }
 
     int calcSproutCost(int nextGene) {
-        return 4 * (calcLightAbsorption(tree.dna.getGene(nextGene).getValue(Gene.LIGHT_ABSORPTION)));
+        return 4 * (calcLightAbsorption(tree.dna.getValue(nextGene, Gene.LIGHT_ABSORPTION)));
     }
 
     boolean isBlocked(CellGrid grid) {
         for (Direction dir : Direction.ALL) {
-            if (activeGene.getValue(dir) < DNA.SPROUT_GENES_COUNT) {
+            if (tree.dna.getValue(activeGene, dir) < context.sproutGenesCount) {
                 Cell neib = grid.getCell(cell, dir);
                 if (neib == null && dir == Direction.up
-                        || neib != null && neib.object != null
-                        && !(neib.object instanceof TreePart && ((TreePart) neib.object).tree == this.tree)) {
+                        || neib != null && neib.getObject() != null
+                        && !(neib.getObject() instanceof TreePart && ((TreePart) neib.getObject()).tree == this.tree)) {
                     return true;
                 }
             }
@@ -222,30 +204,41 @@ public class TreePart extends LivingCellObject {
     }
 
     boolean isBlocked(CellGrid grid, byte dirs, boolean toSprout) {
-        byte dirFlag = 1;
-        for (Direction dir : Direction.ALL) {
-            if ((dirs & dirFlag) == dirFlag && (!toSprout || activeGene.getValue(dir) < DNA.SPROUT_GENES_COUNT)) {
-                Cell neib = grid.getCell(cell, dir);
-                if (neib == null || neib.getObject() != null) {
-                    return true;
+        int blocked = dirs & getOccupiedDirs(grid);
+        if (toSprout && blocked != 0) {
+            int dirFlag = 1;
+            for (Direction dir : Direction.ALL) {
+                if (tree.dna.getValue(activeGene, dir) >= context.sproutGenesCount) {
+                    blocked &= ~dirFlag;
                 }
+                dirFlag <<= 1;
             }
-            dirFlag <<= 1;
         }
-        return false;
+        return blocked != 0;
     }
 
     public int calcAbsorbedLight(CellGrid grid) {
-        return Math.min(calcLight(grid), getLightAbsorption() - ABSORPTION_SHIFT);
+        return Math.min(calcLight(grid), getLightAbsorption() - context.absorptionShift);
     }
 
     public int calcEnergy(CellGrid grid) {
         return 2 * calcAbsorbedLight(grid);
     }
 
-    protected static int calcLightAbsorption(int geneValue) {
-        int absorption = geneValue < 0 ? MIN_ABSORPTION : MIN_ABSORPTION + geneValue;
-        return (absorption > MAX_ABSORPTION ? MAX_ABSORPTION : absorption) + ABSORPTION_SHIFT;
+    // cached versions of the methods above for the simulation, see getLight()
+
+    int getAbsorbedLight(CellGrid grid) {
+        return Math.min(getLight(grid), getLightAbsorption() - context.absorptionShift);
+    }
+
+    int getEnergy(CellGrid grid) {
+        return 2 * getAbsorbedLight(grid);
+    }
+
+    protected int calcLightAbsorption(int geneValue) {
+        final int minAbsorption = context.minAbsorption, maxAbsorption = context.maxAbsorption;
+        int absorption = geneValue < 0 ? minAbsorption : minAbsorption + geneValue;
+        return (absorption > maxAbsorption ? maxAbsorption : absorption) + context.absorptionShift;
     }
 
     public Tree getTree() {
@@ -268,6 +261,34 @@ public class TreePart extends LivingCellObject {
         return type;
     }
 
+    // links to the parent and the children are written by the tree
+    void write(BinaryOutput out, GenomeTable genomes) throws IOException {
+        out.writeByte(type.ordinal());
+        out.writeSignedVarInt(activeGene);
+        out.writeSignedVarInt(turnsToDisappear);
+        out.writeSignedVarInt(lightAbsorption);
+        out.writeBoolean(isBufferFilled);
+        genomes.write(buffer, out);
+        cell.grid.writePlacement(this, out);
+    }
+
+    void read(BinaryInput in, GenomeTable genomes, CellGrid grid) throws IOException {
+        int type = in.readByte();
+        if (type < 0 || type >= TreePartType.TYPES.length) {
+            throw new IOException("Unexpected type " + type + " of tree part");
+        }
+        this.type = TreePartType.TYPES[type];
+        activeGene = in.readSignedVarInt();
+        if (activeGene >= context.sproutGenesCount) {
+            throw new IOException("Unexpected active gene " + activeGene);
+        }
+        turnsToDisappear = in.readSignedVarInt();
+        lightAbsorption = in.readSignedVarInt();
+        isBufferFilled = in.readBoolean();
+        genomes.read(buffer, in);
+        grid.readPlacement(this, in);
+    }
+
     @Override
     public void reset() {
         super.reset();
@@ -276,9 +297,11 @@ public class TreePart extends LivingCellObject {
         parent = null;
         children.clear();
         type = null;
+        activeGene = -1;
         turnsToDisappear = 0;
         buffer.reset();
         isBufferFilled = false;
+        chunkItem = null;
     }
 
     @Override
@@ -2,4 +2,6 @@ package com.gordonfromblumberg.games.core.evotree.model;
 
 public enum TreePartType {
     SHOOT, WOOD, DEAD;
+
+    static final TreePartType[] TYPES = values();
 }
@@ -0,0 +1,98 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+
+import java.util.Arrays;
+
+/**
+ * Settings and shared storage of one world: parameters of genomes, trees, tree parts and seeds read from the config
+ * of the world, the genome arena and the pools. Seeds, trees and tree parts get the context of their world
+ * from the pools, so worlds with different configs may run in one process at the same time.
+ */
+public class WorldContext {
+    // dna
+    final int sproutGenesCount;
+    // index of the special gene, it is after the sprout genes
+    final int specialGene;
+    final int genesCount;
+    final int genomeSize;
+    final float mutationChance;
+    // log(1 - mutationChance) for geometric sampling of mutated genes
+    final double logNotMutated;
+    final GenomeArena arena;
+    // values of empty DNA
+    final byte[] emptyGenome;
+
+    // tree
+    final int maxEnergyPerSeed;
+    final float minColorValue;
+    final float colorDiff;
+    final int minLifetime;
+    final int maxLifetime;
+    final int pollenSpreadRadius;
+    final float pollinateChance;
+
+    // tree part
+    final int minAbsorption;
+    final int maxAbsorption;
+    final int absorptionShift;
+
+    // seed
+    final int waitingEnergyConsumption;
+    final int sproutingEnergyConsumption;
+    final int minLightToSprout;
+    final int maxLightToSprout;
+
+    private final WorldPools pools;
+
+    public WorldContext(ConfigManager configManager) {
+        sproutGenesCount = configManager.getInteger("dna.sproutGenesCount");
+        if (sproutGenesCount > Long.SIZE) {
+            // see DecisionProgram
+            throw new IllegalStateException("Visited genes mask supports up to " + Long.SIZE + " sprout genes");
+        }
+        specialGene = sproutGenesCount;
+        genesCount = sproutGenesCount + 1;
+        genomeSize = genesCount * Gene.VALUE_COUNT;
+        mutationChance = configManager.getFloat("dna.mutationChance");
+        logNotMutated = Math.log(1 - mutationChance);
+        arena = new GenomeArena(genomeSize);
+        emptyGenome = new byte[genomeSize];
+        Arrays.fill(emptyGenome, (byte) -1);
+
+        maxEnergyPerSeed = configManager.getInteger("tree.maxEnergyPerSeed");
+        minColorValue = configManager.getFloat("tree.minColor");
+        colorDiff = configManager.getFloat("tree.maxColor") - minColorValue;
+        minLifetime = configManager.getInteger("tree.minLifetime");
+        maxLifetime = configManager.getInteger("tree.maxLifetime");
+        pollenSpreadRadius = configManager.getInteger("tree.pollenSpreadRadius");
+        pollinateChance = configManager.getFloat("tree.pollinateChance");
+
+        minAbsorption = configManager.getInteger("treePart.minAbsorption");
+        maxAbsorption = configManager.getInteger("treePart.maxAbsorption");
+        absorptionShift = configManager.getInteger("treePart.absorptionShift");
+
+        waitingEnergyConsumption = configManager.getInteger("seed.waitingEnergyConsumption");
+        sproutingEnergyConsumption = configManager.getInteger("seed.sproutingEnergyConsumption");
+        minLightToSprout = configManager.getInteger("seed.minLightToSprout");
+        maxLightToSprout = configManager.getInteger("seed.maxLightToSprout");
+
+        pools = new WorldPools(this, configManager);
+    }
+
+    public int getSproutGenesCount() {
+        return sproutGenesCount;
+    }
+
+    public int getGenesCount() {
+        return genesCount;
+    }
+
+    public GenomeArena getArena() {
+        return arena;
+    }
+
+    public WorldPools getPools() {
+        return pools;
+    }
+}
@@ -0,0 +1,156 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.log.Logger;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.ManagedPool;
+
+/**
+ * Pools of seeds, trees and tree parts of one world, objects are returned to the pool of their world
+ * by {@code release()}. Pools are prewarmed for the size of the world and trimmed periodically:
+ * free objects over the peak number of live objects since the previous trim are dropped,
+ * so after a population crash the heap shrinks to the current population.
+ */
+public class WorldPools {
+    private static final Logger log = LogManager.create(WorldPools.class);
+
+    private final ManagedPool<Seed> seeds = new ManagedPool<Seed>("seeds") {
+        @Override
+        protected Seed newObject() {
+            return new Seed(this, context);
+        }
+    };
+    private final ManagedPool<Tree> trees = new ManagedPool<Tree>("trees") {
+        @Override
+        protected Tree newObject() {
+            return new Tree(this, context);
+        }
+    };
+    private final ManagedPool<TreePart> treeParts = new ManagedPool<TreePart>("treeParts") {
+        @Override
+        protected TreePart newObject() {
+            return new TreePart(this, context);
+        }
+    };
+    private final WorldContext context;
+    private final ManagedPool<?>[] pools = new ManagedPool<?>[] {seeds, trees, treeParts};
+    // prewarmed objects of each pool are not trimmed
+    private final int[] prewarmed = new int[pools.length];
+    // counters at the previous trim and rates per turn between the two previous trims
+    private final long[] lastObtained = new long[pools.length];
+    private final long[] lastFreed = new long[pools.length];
+    private final float[] obtainRates = new float[pools.length];
+    private final float[] freeRates = new float[pools.length];
+    private int lastTrimTurn;
+
+    private final float seedsPerColumn;
+    private final float treesPerColumn;
+    private final float treePartsPerColumn;
+    private final int trimInterval;
+
+    WorldPools(WorldContext context, ConfigManager configManager) {
+        this.context = context;
+        seedsPerColumn = configManager.getFloat("pools.seedsPerColumn");
+        treesPerColumn = configManager.getFloat("pools.treesPerColumn");
+        treePartsPerColumn = configManager.getFloat("pools.treePartsPerColumn");
+        trimInterval = configManager.getInteger("pools.trimInterval");
+    }
+
+    public Seed obtainSeed() {
+        return seeds.obtain();
+    }
+
+    public Tree obtainTree() {
+        return trees.obtain();
+    }
+
+    public TreePart obtainTreePart() {
+        return treeParts.obtain();
+    }
+
+    /**
+     * Fills the pools for the usual population of the world, so the first turns do not allocate
+     * @param width Number of columns of the world
+     */
+    public void prewarm(int width) {
+        prewarm(0, (int) (width * seedsPerColumn));
+        prewarm(1, (int) (width * treesPerColumn));
+        prewarm(2, (int) (width * treePartsPerColumn));
+    }
+
+    private void prewarm(int pool, int count) {
+        pools[pool].prewarm(count);
+        prewarmed[pool] = count;
+    }
+
+    /**
+     * Trims the pools if {@code pools.trimInterval} turns have passed since the previous trim
+     */
+    public void update(int turn) {
+        if (trimInterval > 0 && turn - lastTrimTurn >= trimInterval) {
+            trim(turn);
+        }
+    }
+
+    /**
+     * Drops free objects over the peak number of live ones (or the prewarmed number) since the previous trim
+     */
+    public void trim(int turn) {
+        final int turns = Math.max(turn - lastTrimTurn, 1);
+        for (int i = 0; i < pools.length; ++i) {
+            ManagedPool<?> pool = pools[i];
+            int highWaterMark = Math.max(pool.getPeakLive(), prewarmed[i]);
+            int dropped = pool.trim(highWaterMark - pool.getLive());
+            obtainRates[i] = (float) (pool.getObtained() - lastObtained[i]) / turns;
+            freeRates[i] = (float) (pool.getFreed() - lastFreed[i]) / turns;
+            log.debug(pool.getName() + ": live " + pool.getLive() + ", free " + pool.getFree()
+                    + ", obtained " + obtainRates[i] + " and freed " + freeRates[i]
+                    + " per turn, dropped " + dropped);
+            lastObtained[i] = pool.getObtained();
+            lastFreed[i] = pool.getFreed();
+            pool.resetPeak();
+        }
+        lastTrimTurn = turn;
+    }
+
+    /**
+     * Appends live and free counts of the pools and rates of obtaining and freeing per turn
+     * between the two previous trims
+     */
+    public void appendStats(StringBuilder sb) {
+        for (int i = 0; i < pools.length; ++i) {
+            ManagedPool<?> pool = pools[i];
+            if (i > 0) sb.append(", ");
+            sb.append(pool.getName()).append(' ').append(pool.getLive()).append('/').append(pool.getFree())
+                    .append(" (").append(String.format("%.1f", obtainRates[i])).append(" obtained, ")
+                    .append(String.format("%.1f", freeRates[i])).append(" freed per turn)");
+        }
+    }
+
+    public float getObtainRate(ManagedPool<?> pool) {
+        return obtainRates[indexOf(pool)];
+    }
+
+    public float getFreeRate(ManagedPool<?> pool) {
+        return freeRates[indexOf(pool)];
+    }
+
+    private int indexOf(ManagedPool<?> pool) {
+        for (int i = 0; i < pools.length; ++i) {
+            if (pools[i] == pool) return i;
+        }
+        throw new IllegalArgumentException("Pool " + pool.getName() + " is not a pool of the world");
+    }
+
+    public ManagedPool<Seed> getSeeds() {
+        return seeds;
+    }
+
+    public ManagedPool<Tree> getTrees() {
+        return trees;
+    }
+
+    public ManagedPool<TreePart> getTreeParts() {
+        return treeParts;
+    }
+}
@@ -4,6 +4,7 @@ import com.gordonfromblumberg.games.core.evotree.model.CellGrid;
 import com.gordonfromblumberg.games.core.evotree.model.GeneticRules;
 import com.gordonfromblumberg.games.core.evotree.model.Seed;
 import com.gordonfromblumberg.games.core.evotree.model.Tree;
+import com.gordonfromblumberg.games.core.evotree.model.WorldPools;
 
 public interface EvoTreeWorld {
     void addSeed(Seed seed);
@@ -11,6 +12,28 @@ public interface EvoTreeWorld {
 
     void addTree(Tree tree);
 
+    /**
+     * Is called by the tree which has produced seeds, the world should pass the tree to
+     * {@link com.gordonfromblumberg.games.core.evotree.model.PollenSweep} and resolve it at the end of the turn
+     */
+    void pollinate(Tree tree);
+
+    /**
+     * @param x Column, may be -1 or width of the grid
+     * @return true if the current update may change cells of the column
+     */
+    boolean isAvailableColumn(int x);
+
+    /**
+     * @return Seed of the current turn, random streams of seeds and trees are split from it by their ids
+     */
+    long getTurnSeed();
+
     CellGrid getGrid();
     GeneticRules getGeneticRules();
+
+    /**
+     * @return Pools of the world, new seeds, trees and tree parts are obtained from them
+     */
+    WorldPools getPools();
 }
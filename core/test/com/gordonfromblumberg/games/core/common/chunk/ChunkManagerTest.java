@@ -3,6 +3,7 @@ package com.gordonfromblumberg.games.core.common.chunk;
 import com.badlogic.gdx.utils.Array;
 import com.gordonfromblumberg.games.core.common.utils.IntVector2;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -49,6 +50,73 @@ public class ChunkManagerTest {
         }
     }
 
+    @Test
+    void rectAndCursorFindSameObjects() {
+        // wrapped through the right edge
+        assertContainsExactly(rect(90, 0, 25, 50), 0, 0);
+        assertContainsExactly(rect(15, 0, 40, 22), 20, 0, 20, 21, 50, 21);
+        assertContainsExactly(rect(15, 1, 40, 20), arrayOf());
+        assertContainsExactly(rect(-80, 21, 31, 1), 20, 21, 50, 21);
+
+        ChunkManager<IntVector2>.Cursor cursor = chunkManager.newCursor();
+        assertContainsExactly(collect(cursor.reset(90, 0, 25, 50)), 0, 0);
+        assertContainsExactly(collect(cursor.reset(15, 0, 40, 22)), 20, 0, 20, 21, 50, 21);
+        assertFalse(cursor.reset(15, 1, 40, 20).hasNext());
+        assertThrows(IllegalArgumentException.class, () -> cursor.reset(0, 0, 101, 10));
+    }
+
+    @Test
+    void triangle() {
+        Array<IntVector2> result = new Array<>();
+        chunkManager.forEachInTriangle(0, 0, 40, 0, 20, 21, result::add);
+        assertContainsExactly(result, 0, 0, 20, 0, 20, 21);
+
+        result.clear();
+        chunkManager.forEachInTriangle(-10, 0, 30, 0, 10, 20, result::add);
+        assertContainsExactly(result, 0, 0, 20, 0);
+
+        result.clear();
+        chunkManager.forEachInTriangle(30, 21, 70, 21, 50, 40, result::add);
+        assertContainsExactly(result, 50, 21);
+    }
+
+    @Test
+    void removedItemsAreRecycled() {
+        IntVector2 object = new IntVector2(70, 40);
+        ChunkItem<IntVector2> item = chunkManager.addObject(object, 70, 40);
+        assertContainsExactly(rect(64, 32, 16, 16), 70, 40);
+
+        chunkManager.removeObject(item);
+        assertNull(item.object);
+        assertContainsExactly(rect(64, 32, 16, 16), arrayOf());
+        assertSame(item, chunkManager.addObject(object, 71, 41));
+    }
+
+    private Array<IntVector2> rect(int x, int y, int width, int height) {
+        Array<IntVector2> result = new Array<>();
+        chunkManager.forEachInRect(x, y, width, height, result::add);
+        return result;
+    }
+
+    private static Array<IntVector2> collect(ChunkManager<IntVector2>.Cursor cursor) {
+        Array<IntVector2> result = new Array<>();
+        while (cursor.hasNext()) {
+            result.add(cursor.next());
+        }
+        return result;
+    }
+
+    private static void assertContainsExactly(Array<IntVector2> objects, int... coords) {
+        assertContainsExactly(objects, arrayOf(coords));
+    }
+
+    private static void assertContainsExactly(Array<IntVector2> objects, Array<IntVector2> expected) {
+        assertEquals(expected.size, objects.size, "Found " + objects);
+        for (IntVector2 expectedVector : expected) {
+            assertTrue(objects.contains(expectedVector, false), "Found " + objects);
+        }
+    }
+
     private static Array<IntVector2> arrayOf(int... coords) {
         Array<IntVector2> array = new Array<>(coords.length / 2);
         for (int i = 0; i < coords.length; i += 2) {
@@ -0,0 +1,61 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryIOTest {
+
+    @Test
+    void valuesAreReadAsWritten() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // the smallest buffer, so values are split between writes
+        final BinaryOutput out = new BinaryOutput(Channels.newChannel(bytes), 16);
+        final short[] shorts = new short[100];
+        for (int i = 0; i < shorts.length; ++i) {
+            shorts[i] = (short) (i * 331 - 9000);
+        }
+        out.writeVarInt(0);
+        out.writeVarInt(127);
+        out.writeVarInt(128);
+        out.writeVarInt(-1);
+        out.writeSignedVarInt(-64);
+        out.writeSignedVarInt(Integer.MIN_VALUE);
+        out.writeVarLong(Long.MAX_VALUE);
+        out.writeSignedVarLong(Long.MIN_VALUE);
+        out.writeString("Дерево tree");
+        out.writeShorts(shorts, 0, shorts.length);
+        out.writeFloat(0.97f);
+        out.writeBoolean(true);
+        out.writeLong(-5L);
+        out.flush();
+        assertEquals(bytes.size(), out.getPosition());
+        // 128 takes two bytes, the lowest 7 bits first
+        assertEquals((byte) 0x80, bytes.toByteArray()[2]);
+        assertEquals(1, bytes.toByteArray()[3]);
+
+        final BinaryInput in = new BinaryInput(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), 16);
+        final short[] readShorts = new short[shorts.length];
+        assertEquals(0, in.readVarInt());
+        assertEquals(127, in.readVarInt());
+        assertEquals(128, in.readVarInt());
+        assertEquals(-1, in.readVarInt());
+        assertEquals(-64, in.readSignedVarInt());
+        assertEquals(Integer.MIN_VALUE, in.readSignedVarInt());
+        assertEquals(Long.MAX_VALUE, in.readVarLong());
+        assertEquals(Long.MIN_VALUE, in.readSignedVarLong());
+        assertEquals("Дерево tree", in.readString());
+        in.readShorts(readShorts, 0, readShorts.length);
+        assertArrayEquals(shorts, readShorts);
+        assertEquals(0.97f, in.readFloat());
+        assertTrue(in.readBoolean());
+        assertEquals(-5L, in.readLong());
+        assertThrows(EOFException.class, in::readByte);
+    }
+}
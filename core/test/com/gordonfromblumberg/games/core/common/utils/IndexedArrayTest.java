@@ -0,0 +1,77 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexedArrayTest {
+    @Test
+    void removeReplacesWithLast() {
+        IndexedArray<Item> array = new IndexedArray<>(2);
+        Item[] items = new Item[5];
+        for (int i = 0; i < items.length; ++i) {
+            items[i] = new Item();
+            array.add(items[i]);
+        }
+        assertEquals(5, array.size);
+
+        assertTrue(array.remove(items[1]));
+        assertEquals(4, array.size);
+        assertEquals(-1, items[1].getIndex());
+        assertFalse(array.contains(items[1]));
+        assertFalse(array.remove(items[1]));
+        assertSame(items[4], array.get(1));
+        assertEquals(1, items[4].getIndex());
+
+        for (int i = 0; i < array.size; ++i) {
+            assertEquals(i, array.get(i).getIndex());
+        }
+        assertThrows(IllegalArgumentException.class, () -> array.add(items[0]));
+        assertThrows(IndexOutOfBoundsException.class, () -> array.get(4));
+    }
+
+    @Test
+    void iteratorRemovesCurrent() {
+        IndexedArray<Item> array = new IndexedArray<>();
+        for (int i = 0; i < 10; ++i) {
+            Item item = new Item();
+            item.value = i;
+            array.add(item);
+        }
+
+        int visited = 0;
+        Iterator<Item> it = array.iterator();
+        while (it.hasNext()) {
+            Item item = it.next();
+            ++visited;
+            if (item.value % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(10, visited);
+        assertEquals(5, array.size);
+        for (Item item : array) {
+            assertEquals(1, item.value % 2);
+        }
+
+        array.clear();
+        assertTrue(array.isEmpty());
+    }
+
+    private static class Item implements IndexedArray.Indexed {
+        int value;
+        int index = -1;
+
+        @Override
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public void setIndex(int index) {
+            this.index = index;
+        }
+    }
+}
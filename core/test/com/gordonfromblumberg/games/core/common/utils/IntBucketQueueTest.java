@@ -0,0 +1,29 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntBucketQueueTest {
+    @Test
+    void removesFromHighestPriority() {
+        IntBucketQueue queue = new IntBucketQueue();
+        queue.add(1, 5);
+        queue.add(2, 100);
+        queue.add(3, 5);
+        queue.add(4, 0);
+
+        assertEquals(2, queue.removeFirst());
+        assertEquals(100, queue.getLastPriority());
+        assertEquals(1, queue.removeFirst());
+        // added with priority above the last removed one
+        queue.add(5, 7);
+        assertEquals(5, queue.removeFirst());
+        assertEquals(7, queue.getLastPriority());
+        assertEquals(3, queue.removeFirst());
+        assertEquals(4, queue.removeFirst());
+        assertEquals(0, queue.getLastPriority());
+        assertTrue(queue.isEmpty());
+        assertThrows(IllegalStateException.class, queue::removeFirst);
+    }
+}
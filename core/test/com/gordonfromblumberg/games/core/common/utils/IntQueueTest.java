@@ -0,0 +1,23 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntQueueTest {
+    @Test
+    void keepsOrderWhenGrowsWrapped() {
+        IntQueue queue = new IntQueue(4);
+        int next = 0, expected = 0;
+        for (int i = 0; i < 3; ++i) queue.addLast(next++);
+        for (int i = 0; i < 2; ++i) assertEquals(expected++, queue.removeFirst());
+        // tail is wrapped over the end of the array before growing
+        for (int i = 0; i < 10; ++i) queue.addLast(next++);
+        assertEquals(11, queue.size);
+        while (queue.notEmpty()) {
+            assertEquals(expected++, queue.removeFirst());
+        }
+        assertEquals(next, expected);
+        assertThrows(IllegalStateException.class, queue::removeFirst);
+    }
+}
@@ -0,0 +1,88 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManagedPoolTest {
+    @Test
+    void countsLiveAndFreeObjects() {
+        ItemPool pool = new ItemPool();
+        Item a = pool.obtain();
+        Item b = pool.obtain();
+        assertEquals(2, pool.getLive());
+        assertEquals(0, pool.getFree());
+
+        a.value = 5;
+        pool.free(a);
+        assertEquals(0, a.value);
+        assertEquals(1, pool.getLive());
+        assertEquals(1, pool.getFree());
+        assertSame(a, pool.obtain());
+        assertEquals(3, pool.getObtained());
+        assertEquals(1, pool.getFreed());
+        assertEquals(2, pool.getCreated());
+        assertEquals(2, pool.getPeakLive());
+        pool.free(b);
+    }
+
+    @Test
+    void prewarmedObjectsAreReused() {
+        ItemPool pool = new ItemPool();
+        Item live = pool.obtain();
+        pool.prewarm(10);
+        assertEquals(9, pool.getFree());
+        assertEquals(10, pool.getCreated());
+        for (int i = 0; i < 9; ++i) {
+            pool.obtain();
+        }
+        assertEquals(10, pool.getCreated());
+        pool.prewarm(5);
+        assertEquals(0, pool.getFree());
+        pool.free(live);
+    }
+
+    @Test
+    void trimDropsFreeObjectsOverLimit() {
+        ItemPool pool = new ItemPool();
+        Array<Item> items = new Array<>();
+        for (int i = 0; i < 100; ++i) {
+            items.add(pool.obtain());
+        }
+        for (int i = 0; i < 90; ++i) {
+            pool.free(items.pop());
+        }
+        assertEquals(100, pool.getPeakLive());
+        pool.resetPeak();
+        assertEquals(10, pool.getPeakLive());
+
+        assertEquals(70, pool.trim(20));
+        assertEquals(20, pool.getFree());
+        assertEquals(10, pool.getLive());
+        assertEquals(0, pool.trim(20));
+        pool.obtain();
+        assertEquals(11, pool.getPeakLive());
+    }
+
+    private static class ItemPool extends ManagedPool<Item> {
+        ItemPool() {
+            super("items");
+        }
+
+        @Override
+        protected Item newObject() {
+            return new Item();
+        }
+    }
+
+    private static class Item implements Pool.Poolable {
+        int value;
+
+        @Override
+        public void reset() {
+            value = 0;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.gordonfromblumberg.games.core.common.utils;
+
+import com.badlogic.gdx.utils.LongArray;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RandomGenTest {
+    @Test
+    void reseedRepeatsSequence() {
+        RandomGen random = new RandomGen();
+        random.reseed(42);
+        LongArray first = new LongArray();
+        for (int i = 0; i < 10; ++i) {
+            first.add(random.nextLong());
+        }
+
+        random.reseed(42);
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(first.get(i), random.nextLong());
+        }
+
+        RandomGen other = new RandomGen(42);
+        assertEquals(first.get(0), other.nextLong());
+    }
+
+    @Test
+    void splitIsStable() {
+        assertEquals(RandomGen.split(7, 3), RandomGen.split(7, 3));
+        assertNotEquals(RandomGen.split(7, 3), RandomGen.split(7, -3));
+        assertNotEquals(RandomGen.split(7, 3), RandomGen.split(8, 3));
+    }
+
+    @Test
+    void splitKeysGiveDifferentStreams() {
+        final long seed = RandomGen.split(123, 1);
+        Set<Long> seeds = new HashSet<>();
+        Set<Long> firstValues = new HashSet<>();
+        RandomGen random = new RandomGen();
+        for (long key = -1000; key <= 1000; ++key) {
+            long child = RandomGen.split(seed, key);
+            assertTrue(seeds.add(child), "Key " + key);
+            random.reseed(child);
+            assertTrue(firstValues.add(random.nextLong()), "Key " + key);
+        }
+    }
+}
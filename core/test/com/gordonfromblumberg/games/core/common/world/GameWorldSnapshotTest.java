@@ -0,0 +1,115 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.gordonfromblumberg.games.core.common.log.LogLevel;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.evotree.model.ChangeLightByTime;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameWorldSnapshotTest {
+
+    @BeforeAll
+    static void setUp() {
+        // log entries need the config of the application
+        LogManager.setLevel(LogLevel.FATAL);
+        ChangeLightByTime.register();
+    }
+
+    @Test
+    void loadedWorldMakesSameTurns() throws IOException {
+        final GameWorldParams params = new GameWorldParams();
+        final ConfigManager config = createConfig();
+        params.load(config);
+        params.setSeed(17);
+        params.addDecorator("ChangeLightByTime");
+        final GameWorld world = new GameWorld(params, config);
+        world.initialize();
+        for (int i = 0; i < 700; ++i) {
+            world.nextTurn();
+        }
+        assertTrue(world.getTreeCount() > 0);
+
+        final byte[] saved = save(world);
+        final GameWorld loaded = GameWorld.load(Channels.newChannel(new ByteArrayInputStream(saved)));
+        assertEquals(world.getTurn(), loaded.getTurn());
+        assertEquals(world.getTreeCount(), loaded.getTreeCount());
+        assertEquals(world.getSeedCount(), loaded.getSeedCount());
+        assertArrayEquals(saved, save(loaded));
+
+        for (int i = 0; i < 300; ++i) {
+            world.nextTurn();
+            loaded.nextTurn();
+        }
+        assertEquals(world.getTreeCount(), loaded.getTreeCount());
+        assertEquals(world.getMaxGeneration(), loaded.getMaxGeneration());
+        assertArrayEquals(save(world), save(loaded));
+
+        world.dispose();
+        loaded.dispose();
+    }
+
+    @Test
+    void wrongDataIsNotLoaded() {
+        final byte[] data = {1, 2, 3, 4, 5};
+        assertThrows(IOException.class, () -> GameWorld.load(Channels.newChannel(new ByteArrayInputStream(data))));
+    }
+
+    private static byte[] save(GameWorld world) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        world.save(Channels.newChannel(bytes));
+        return bytes.toByteArray();
+    }
+
+    public static ConfigManager createConfig() {
+        final ConfigManager config = new ConfigManager();
+        config.setString("world.width", "120");
+        config.setString("world.height", "40");
+        config.setString("world.cellSize", "16");
+        config.setString("world.chunkSize", "16");
+        config.setString("world.sunLight", "50");
+        config.setString("world.lightAbsorptionStep", "0.97");
+        config.setString("world.lightSources", "0.3");
+        config.setString("world.lightSourceStrength", "500");
+        config.setString("world.incrementalLighting", "true");
+        config.setString("world.parallelLighting", "false");
+        config.setString("world.parallelUpdate", "false");
+        config.setString("world.lightColor", "0.5, 0.85, 1");
+        config.setString("world.darkColor", "0, 0.1, 0.07");
+        config.setString("world.midColor", "0.7");
+        config.setString("world.lightSource.color", "1, 1, 0.4");
+        config.setString("world.decorators.ChangeLightByTime.max", "15");
+        config.setString("world.decorators.ChangeLightByTime.min", "-15");
+        config.setString("world.decorators.ChangeLightByTime.delay", "100");
+        config.setString("world.decorators.ChangeLightByTime.step", "1");
+        config.setString("tree.maxEnergyPerSeed", "3500");
+        config.setString("tree.minColor", "0.1");
+        config.setString("tree.maxColor", "0.9");
+        config.setString("tree.minLifetime", "16");
+        config.setString("tree.maxLifetime", "128");
+        config.setString("tree.pollenSpreadRadius", "10");
+        config.setString("tree.pollinateChance", "0.35");
+        config.setString("treePart.minAbsorption", "4");
+        config.setString("treePart.maxAbsorption", "60");
+        config.setString("treePart.absorptionShift", "40");
+        config.setString("seed.color", "0.66, 0.41, 0.19");
+        config.setString("seed.waitingEnergyConsumption", "1");
+        config.setString("seed.sproutingEnergyConsumption", "3");
+        config.setString("seed.minLightToSprout", "2");
+        config.setString("seed.maxLightToSprout", "30");
+        config.setString("dna.sproutGenesCount", "32");
+        config.setString("dna.mutationChance", "0.02");
+        config.setString("pools.seedsPerColumn", "4");
+        config.setString("pools.treesPerColumn", "0.25");
+        config.setString("pools.treePartsPerColumn", "4");
+        config.setString("pools.trimInterval", "500");
+        return config;
+    }
+}
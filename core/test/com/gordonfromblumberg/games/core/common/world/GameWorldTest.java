@@ -0,0 +1,142 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.gordonfromblumberg.games.core.common.log.LogLevel;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.evotree.model.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameWorldTest {
+
+    @BeforeAll
+    static void setUp() {
+        // log entries need the config of the application
+        LogManager.setLevel(LogLevel.FATAL);
+    }
+
+    @Test
+    void partHitByLightSourceIsReleased() {
+        final GameWorldParams params = new GameWorldParams();
+        final ConfigManager config = GameWorldSnapshotTest.createConfig();
+        params.load(config);
+        params.setSeed(31);
+        final GameWorld world = new GameWorld(params, config);
+        world.initialize();
+        for (int i = 0; i < 300; ++i) {
+            world.nextTurn();
+        }
+        final CellGrid grid = world.cellGrid;
+        final WorldPools pools = world.getPools();
+        assertPoolsCountLiveObjects(world, pools);
+
+        TreePart shoot = null;
+        for (int x = 0; x < grid.getWidth() && shoot == null; ++x) {
+            for (int y = 0; y < grid.getHeight(); ++y) {
+                CellObject object = grid.getCell(x, y).getObject();
+                if (object instanceof TreePart && ((TreePart) object).getType() == TreePartType.SHOOT) {
+                    shoot = (TreePart) object;
+                    break;
+                }
+            }
+        }
+        assertNotNull(shoot);
+        final Tree tree = shoot.getTree();
+        final int size = tree.getSize();
+        final int shoots = tree.getShootCount();
+
+        // the light sources move one cell to the right, the shoot is put on their way
+        int target = -1;
+        final int top = grid.getHeight() - 1;
+        for (int x = 0; x < grid.getWidth(); ++x) {
+            if (grid.getCell(x, top).getObject() instanceof LightSource
+                    && !(grid.getCell((x + 1) % grid.getWidth(), top).getObject() instanceof LightSource)) {
+                target = (x + 1) % grid.getWidth();
+            }
+        }
+        assertTrue(target >= 0);
+        final Cell cell = grid.getCell(target, top);
+        assertNull(cell.getObject());
+        grid.moveCellObjectTo(shoot, cell);
+        grid.moveLightSources();
+
+        assertTrue(cell.getObject() instanceof LightSource);
+        assertEquals(size - 1, tree.getSize());
+        assertEquals(shoots - 1, tree.getShootCount());
+        assertPoolsCountLiveObjects(world, pools);
+
+        for (int i = 0; i < 100; ++i) {
+            world.nextTurn();
+        }
+        assertPoolsCountLiveObjects(world, pools);
+        world.dispose();
+    }
+
+    @ParameterizedTest
+    @CsvSource({"16, 0", "4, 64"})
+    void parallelUpdateIsRepeated(int chunkSize, int stripeCount) throws IOException {
+        final GameWorld first = createWideWorld(37, chunkSize, stripeCount);
+        final GameWorld second = createWideWorld(37, chunkSize, stripeCount);
+        assertTrue(first.stripedUpdate.getStripeCount() >= 4);
+        for (int i = 0; i < 500; ++i) {
+            first.nextTurn();
+            second.nextTurn();
+            if (i % 100 == 99) {
+                assertArrayEquals(save(first), save(second), "Turn " + first.getTurn());
+            }
+        }
+        assertTrue(first.getTreeCount() > 0);
+        // some trees did not fit into their stripes, they and their seeds were updated serially
+        assertTrue(first.stripedUpdate.getRestTreeCount() > 0);
+        assertTrue(first.stripedUpdate.getRestNewSeedCount() > 0);
+        assertEquals(first.stripedUpdate.getRestTreeCount(), second.stripedUpdate.getRestTreeCount());
+        assertEquals(first.stripedUpdate.getRestNewSeedCount(), second.stripedUpdate.getRestNewSeedCount());
+        first.dispose();
+        second.dispose();
+    }
+
+    /**
+     * @param stripeCount Number of stripes or 0 for the number chosen by the world
+     */
+    private static GameWorld createWideWorld(long seed, int chunkSize, int stripeCount) {
+        final GameWorldParams params = new GameWorldParams();
+        final ConfigManager config = GameWorldSnapshotTest.createConfig();
+        // 8 stripes of 64 columns by default
+        config.setString("world.width", "512");
+        config.setString("world.chunkSize", String.valueOf(chunkSize));
+        config.setString("world.parallelUpdate", "true");
+        params.load(config);
+        params.setSeed(seed);
+        final GameWorld world = new GameWorld(params, config);
+        if (stripeCount > 0) {
+            // narrow stripes leave more trees to the serial update
+            world.stripedUpdate = new StripedUpdate(world, 512, chunkSize, stripeCount);
+        }
+        world.initialize();
+        return world;
+    }
+
+    private static byte[] save(GameWorld world) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        world.save(Channels.newChannel(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static void assertPoolsCountLiveObjects(GameWorld world, WorldPools pools) {
+        assertEquals(world.seeds.size, pools.getSeeds().getLive());
+        assertEquals(world.trees.size, pools.getTrees().getLive());
+        int parts = 0;
+        for (int i = 0; i < world.trees.size; ++i) {
+            parts += world.trees.get(i).getSize();
+        }
+        assertEquals(parts, pools.getTreeParts().getLive());
+    }
+}
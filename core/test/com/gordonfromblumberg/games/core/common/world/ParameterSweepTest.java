@@ -0,0 +1,53 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.badlogic.gdx.utils.ObjectSet;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParameterSweepTest {
+
+    @Test
+    void runsEveryCombinationWithEverySeed() {
+        ParameterSweep sweep = new ParameterSweep();
+        sweep.vary("world.sunLight", "40, 50, 60");
+        sweep.vary("dna.mutationChance", "0.01,0.05");
+        sweep.addSeeds("1-3,10");
+        assertEquals(24, sweep.getRunCount());
+
+        ObjectSet<String> runs = new ObjectSet<>();
+        for (int run = 0; run < sweep.getRunCount(); ++run) {
+            runs.add(sweep.getValue(run, 0) + "/" + sweep.getValue(run, 1) + "/" + sweep.getSeed(run));
+        }
+        assertEquals(24, runs.size);
+
+        assertEquals(1, sweep.getSeed(0));
+        assertEquals(10, sweep.getSeed(3));
+        assertEquals("40", sweep.getValue(3, 0));
+        assertEquals("0.01", sweep.getValue(3, 1));
+        assertEquals("0.05", sweep.getValue(4, 1));
+        assertEquals("50", sweep.getValue(8, 0));
+        assertEquals("60", sweep.getValue(23, 0));
+    }
+
+    @Test
+    void appliesValuesToConfig() {
+        ParameterSweep sweep = new ParameterSweep();
+        sweep.vary("tree.maxLifetime", "100", "200");
+        sweep.addSeed(-5);
+        ConfigManager config = new ConfigManager();
+        sweep.apply(1, config);
+        assertEquals(200, config.getInteger("tree.maxLifetime"));
+        assertEquals(-5, sweep.getSeed(1));
+    }
+
+    @Test
+    void sweepWithoutVariedPropertiesRunsEachSeed() {
+        ParameterSweep sweep = new ParameterSweep();
+        sweep.addSeeds("7");
+        assertEquals(1, sweep.getRunCount());
+        assertThrows(IllegalArgumentException.class, () -> sweep.addSeeds("5-1"));
+        assertThrows(IllegalArgumentException.class, () -> sweep.vary("a", new String[0]));
+    }
+}
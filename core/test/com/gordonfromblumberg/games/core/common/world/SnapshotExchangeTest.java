@@ -0,0 +1,129 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.gordonfromblumberg.games.core.common.log.LogLevel;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotExchangeTest {
+
+    @BeforeAll
+    static void setUp() {
+        // log entries need the config of the application
+        LogManager.setLevel(LogLevel.FATAL);
+    }
+
+    @Test
+    void worldIsPublishedAgainAtSameTurn() {
+        final GameWorldParams params = new GameWorldParams();
+        final ConfigManager config = GameWorldSnapshotTest.createConfig();
+        params.load(config);
+        params.setSeed(5);
+        final GameWorld world = new GameWorld(params, config);
+        world.initialize();
+
+        final SnapshotExchange exchange = new SnapshotExchange(120, 40);
+        assertTrue(exchange.publish(world));
+        // the reader has not taken the published snapshot
+        assertFalse(exchange.publish(world));
+        final WorldSnapshot first = exchange.acquire();
+        assertEquals(world.getTurn(), first.turn);
+        assertSame(first, exchange.acquire());
+
+        assertTrue(exchange.publish(world));
+        final WorldSnapshot second = exchange.acquire();
+        assertNotSame(first, second);
+        assertEquals(first.turn, second.turn);
+        // the renderer draws a snapshot again when its sequence changes
+        assertNotEquals(first.getSequence(), second.getSequence());
+        world.dispose();
+    }
+
+    @Test
+    void commandOfPausedWorldIsRedrawnAtSameTurn() throws InterruptedException {
+        final GameWorldParams params = new GameWorldParams();
+        final ConfigManager config = GameWorldSnapshotTest.createConfig();
+        params.load(config);
+        params.setSeed(5);
+        final GameWorld world = new GameWorld(params, config);
+        world.initialize();
+        world.pause();
+        final int drawn = world.acquireSnapshot().getSequence();
+        world.startSimulationThread();
+
+        // like the lighting test, the click changes the world without a turn
+        world.addClickHandler((button, x, y) -> { });
+        world.click(0, 0, 0);
+        WorldSnapshot snapshot = world.acquireSnapshot();
+        for (int i = 0; i < 200 && snapshot.getSequence() == drawn; ++i) {
+            Thread.sleep(10);
+            snapshot = world.acquireSnapshot();
+        }
+        assertNotEquals(drawn, snapshot.getSequence());
+        assertEquals(0, snapshot.getTurn());
+        world.dispose();
+    }
+
+    @Test
+    void pausedWorldPublishesCommands() throws InterruptedException {
+        final GameWorldParams params = new GameWorldParams();
+        final ConfigManager config = GameWorldSnapshotTest.createConfig();
+        params.load(config);
+        params.setSeed(5);
+        final GameWorld world = new GameWorld(params, config);
+        world.initialize();
+        world.pause();
+        world.acquireSnapshot();
+        world.startSimulationThread();
+
+        // the command runs while the world is paused, its change should reach the reader
+        world.addClickHandler((button, x, y) -> world.nextTurn());
+        world.click(0, 0, 0);
+        WorldSnapshot snapshot = world.acquireSnapshot();
+        for (int i = 0; i < 200 && snapshot.turn == 0; ++i) {
+            Thread.sleep(10);
+            snapshot = world.acquireSnapshot();
+        }
+        assertEquals(1, snapshot.turn);
+        world.dispose();
+    }
+
+    @Test
+    void probedCellIsCopied() {
+        final GameWorldParams params = new GameWorldParams();
+        final ConfigManager config = GameWorldSnapshotTest.createConfig();
+        params.load(config);
+        params.setSeed(5);
+        final GameWorld world = new GameWorld(params, config);
+        world.initialize();
+        WorldSnapshot snapshot = world.acquireSnapshot();
+        assertFalse(snapshot.getProbe().hasCell());
+
+        int seedX = -1, seedY = -1;
+        for (int x = 0; x < 120 && seedX < 0; ++x) {
+            for (int y = 0; y < 40; ++y) {
+                if (snapshot.getType(x, y) == WorldSnapshot.SEED) {
+                    seedX = x;
+                    seedY = y;
+                    break;
+                }
+            }
+        }
+        assertTrue(seedX >= 0);
+        world.probe(seedX * 16 + 8, seedY * 16 + 8);
+        world.update(0);
+        final CellProbe probe = world.acquireSnapshot().getProbe();
+        assertEquals(seedX, probe.getX());
+        assertEquals(seedY, probe.getY());
+        assertTrue(probe.isSeed());
+        assertFalse(probe.hasTree());
+
+        world.probe(-5, 0);
+        world.update(0);
+        assertFalse(world.acquireSnapshot().getProbe().hasCell());
+        world.dispose();
+    }
+}
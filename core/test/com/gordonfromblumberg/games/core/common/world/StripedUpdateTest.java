@@ -0,0 +1,51 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripedUpdateTest {
+
+    @ParameterizedTest
+    @CsvSource({"400, 16, 4", "400, 16, 12", "401, 16, 6", "64, 8, 4"})
+    void stripesOfSameColorDoNotIntersect(int width, int chunkSize, int stripeCount) {
+        final StripedUpdate update = new StripedUpdate(null, width, chunkSize, stripeCount);
+        assertEquals(stripeCount, update.getStripeCount());
+
+        for (int x = -1; x <= width; ++x) {
+            int even = 0, odd = 0;
+            for (int i = 0; i < stripeCount; ++i) {
+                if (update.isAvailableColumn(i, x)) {
+                    if (i % 2 == 0) ++even;
+                    else ++odd;
+                }
+            }
+            assertEquals(1, even, "Even stripes at column " + x);
+            assertEquals(1, odd, "Odd stripes at column " + x);
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({"400, 16, 12", "401, 16, 6"})
+    void stripesDoNotShareChunks(int width, int chunkSize, int stripeCount) {
+        final StripedUpdate update = new StripedUpdate(null, width, chunkSize, stripeCount);
+        for (int i = 0; i < stripeCount; ++i) {
+            for (int x = 0; x < width; ++x) {
+                int chunkStart = x / chunkSize * chunkSize;
+                assertEquals(update.isAvailableColumn(i, chunkStart), update.isAvailableColumn(i, x),
+                        "Stripe " + i + " at column " + x);
+            }
+        }
+    }
+
+    @Test
+    void maxStripeCount() {
+        assertEquals(12, StripedUpdate.getMaxStripeCount(400, 16));
+        assertEquals(2, StripedUpdate.getMaxStripeCount(100, 16));
+        assertThrows(IllegalArgumentException.class, () -> new StripedUpdate(null, 400, 16, 14));
+        assertThrows(IllegalArgumentException.class, () -> new StripedUpdate(null, 400, 16, 5));
+        assertThrows(IllegalArgumentException.class, () -> new StripedUpdate(null, 100, 16, 2));
+    }
+}
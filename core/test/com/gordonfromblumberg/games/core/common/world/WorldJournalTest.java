@@ -0,0 +1,131 @@
+package com.gordonfromblumberg.games.core.common.world;
+
+import com.badlogic.gdx.utils.IntMap;
+import com.gordonfromblumberg.games.core.common.log.LogLevel;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorldJournalTest {
+    private static final int[] CHECKED_TURNS = {0, 1, 37, 49, 50, 51, 120, 299, 300};
+
+    @BeforeAll
+    static void setUp() {
+        LogManager.setLevel(LogLevel.FATAL);
+    }
+
+    @Test
+    void framesAreRestored() throws IOException {
+        assertFramesRestored(GameWorldSnapshotTest.createConfig());
+    }
+
+    @Test
+    void framesOfParallelUpdateAreRestored() throws IOException {
+        // changed cells are collected from several threads
+        final ConfigManager config = GameWorldSnapshotTest.createConfig();
+        config.setString("world.parallelUpdate", "true");
+        assertFramesRestored(config);
+    }
+
+    private static void assertFramesRestored(ConfigManager config) throws IOException {
+        final GameWorldParams params = new GameWorldParams();
+        params.load(config);
+        params.setSeed(3);
+        final GameWorld world = new GameWorld(params, config);
+        world.initialize();
+
+        final Path path = Files.createTempFile("journal", ".evoj");
+        final JournalFrame[] expected = new JournalFrame[CHECKED_TURNS.length];
+        try {
+            try (WorldJournal journal = new WorldJournal(FileChannel.open(path, StandardOpenOption.WRITE), 50)) {
+                for (int i = 0; world.getTurn() <= 300; ) {
+                    journal.record(world);
+                    if (world.getTurn() == CHECKED_TURNS[i]) {
+                        expected[i] = new JournalFrame(params.getWidth(), params.getHeight());
+                        expected[i].fill(world);
+                        ++i;
+                    }
+                    world.nextTurn();
+                }
+            }
+            assertTrue(expected[expected.length - 1].getTreeCount() > 0);
+
+            try (JournalReader reader = new JournalReader(FileChannel.open(path, StandardOpenOption.READ))) {
+                assertEquals(0, reader.getFirstTurn());
+                assertEquals(300, reader.getLastTurn());
+                assertEquals(7, reader.getKeyframeCount());
+                final JournalFrame frame = reader.createFrame();
+                // backwards, so frames are restored from other frames too
+                for (int i = CHECKED_TURNS.length - 1; i >= 0; --i) {
+                    assertFrameEquals(expected[i], reader.read(CHECKED_TURNS[i], frame));
+                }
+                assertThrows(IllegalArgumentException.class, () -> reader.read(-1, frame));
+            }
+        } finally {
+            world.dispose();
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void incompleteBlockIsIgnored() throws IOException {
+        final GameWorldParams params = new GameWorldParams();
+        params.load(GameWorldSnapshotTest.createConfig());
+        params.setSeed(4);
+        final GameWorld world = new GameWorld(params, GameWorldSnapshotTest.createConfig());
+        world.initialize();
+
+        final Path path = Files.createTempFile("journal", ".evoj");
+        try {
+            try (WorldJournal journal = new WorldJournal(FileChannel.open(path, StandardOpenOption.WRITE), 10)) {
+                for (int i = 0; i < 25; ++i) {
+                    journal.record(world);
+                    world.nextTurn();
+                }
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 1);
+            }
+            try (JournalReader reader = new JournalReader(FileChannel.open(path, StandardOpenOption.READ))) {
+                assertEquals(2, reader.getKeyframeCount());
+                assertEquals(19, reader.getLastTurn());
+                assertEquals(19, reader.read(24, reader.createFrame()).getTurn());
+            }
+        } finally {
+            world.dispose();
+            Files.delete(path);
+        }
+    }
+
+    private static void assertFrameEquals(JournalFrame expected, JournalFrame actual) {
+        assertEquals(expected.turn, actual.turn);
+        assertArrayEquals(expected.types, actual.types, "Turn " + expected.turn);
+        assertArrayEquals(expected.owners, actual.owners, "Turn " + expected.turn);
+        assertEquals(expected.seeds.size, actual.seeds.size);
+        for (IntMap.Entry<JournalFrame.SeedRecord> entry : expected.seeds) {
+            JournalFrame.SeedRecord seed = actual.getSeed(entry.key);
+            assertNotNull(seed, "Seed #" + entry.key + " at turn " + expected.turn);
+            assertEquals(entry.value.generation, seed.generation);
+            assertEquals(entry.value.energy, seed.energy);
+        }
+        assertEquals(expected.trees.size, actual.trees.size);
+        for (IntMap.Entry<JournalFrame.TreeRecord> entry : expected.trees) {
+            JournalFrame.TreeRecord tree = actual.getTree(entry.key);
+            assertNotNull(tree, "Tree #" + entry.key + " at turn " + expected.turn);
+            assertEquals(entry.value.generation, tree.generation);
+            assertEquals(entry.value.species, tree.species);
+            assertEquals(entry.value.rootX, tree.rootX);
+            assertEquals(entry.value.rootY, tree.rootY);
+            assertEquals(entry.value.energy, tree.energy);
+        }
+    }
+}
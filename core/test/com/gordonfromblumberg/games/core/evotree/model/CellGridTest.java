@@ -0,0 +1,142 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CellGridTest {
+    private static final int HEIGHT = 30;
+
+    @ParameterizedTest
+    @ValueSource(floats = {0.9f, 0.97f, 1f})
+    void incrementalLightingGivesSameResult(float lightAbsorption) {
+        final CellGrid incremental = createGrid(60, true, 1);
+        final CellGrid full = createGrid(60, false, 1);
+        compareLighting(incremental, full, lightAbsorption);
+    }
+
+    @ParameterizedTest
+    @ValueSource(floats = {0.9f, 1f})
+    void parallelLightingGivesSameResult(float lightAbsorption) {
+        final CellGrid parallel = createGrid(400, false, 7);
+        assertEquals(7, parallel.getLightStrips());
+        compareLighting(parallel, createGrid(400, false, 1), lightAbsorption);
+        compareLighting(createGrid(400, true, 2), createGrid(400, false, 1), lightAbsorption);
+    }
+
+    @Test
+    void columnIndexIsKept() {
+        final int width = 40;
+        final CellGrid grid = new CellGrid(width, HEIGHT, 1, 16);
+        final Random random = new Random(5);
+        for (int i = 0; i < 5000; ++i) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(HEIGHT);
+            CellObject object = grid.getObject(x, y);
+            if (object == null) {
+                grid.addCellObject(new LightingTest(1), x, y);
+            } else if (random.nextBoolean()) {
+                grid.removeCellObject(object);
+            } else {
+                grid.fall(object, 1 + random.nextInt(5));
+            }
+
+            for (int column = 0; column < width; ++column) {
+                int top = HEIGHT - 1;
+                while (top >= 0 && grid.getObject(column, top) == null) --top;
+                assertEquals(top, grid.getColumnTop(column), "Step " + i + ", column " + column);
+            }
+            Cell free = grid.findFreeTopCell(x);
+            if (free != null) {
+                assertNull(free.getObject());
+                assertEquals(HEIGHT - 1, free.getY());
+                for (int column = x; column != free.getX(); column = (column + 1) % width) {
+                    assertNotNull(grid.getObject(column, HEIGHT - 1));
+                }
+            } else {
+                for (int column = 0; column < width; ++column) {
+                    assertNotNull(grid.getObject(column, HEIGHT - 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    void fallStopsAboveObject() {
+        final CellGrid grid = new CellGrid(20, HEIGHT, 1, 16);
+        final LightingTest falling = new LightingTest(1);
+        grid.addCellObject(falling, 3, 10);
+        assertTrue(grid.fall(falling, 3));
+        assertEquals(7, falling.getCell().getY());
+
+        grid.addCellObject(new LightingTest(1), 3, 5);
+        assertTrue(grid.fall(falling, 3));
+        assertEquals(6, falling.getCell().getY());
+        assertFalse(grid.fall(falling, 3));
+
+        final LightingTest low = new LightingTest(1);
+        grid.addCellObject(low, 5, 1);
+        assertTrue(grid.fall(low, 3));
+        assertEquals(0, low.getCell().getY());
+        assertFalse(grid.fall(low, 3));
+    }
+
+    private static void compareLighting(CellGrid incremental, CellGrid full, float lightAbsorption) {
+        final int width = full.getWidth();
+        final LightDistribution lightDistribution = new SimpleLightDistribution(width, HEIGHT, 50, lightAbsorption);
+        final Random random = new Random(17);
+
+        for (int turn = 0; turn < 300; ++turn) {
+            for (int i = 0, n = random.nextInt(turn % 50 == 0 ? 500 : 10); i < n; ++i) {
+                int x = random.nextInt(width);
+                int y = random.nextInt(HEIGHT - 1);
+                int absorption = random.nextInt(30);
+                change(incremental, x, y, absorption);
+                change(full, x, y, absorption);
+            }
+            if (turn % 7 == 0) {
+                incremental.moveLightSources();
+                full.moveLightSources();
+            }
+
+            incremental.updateSunLight(lightDistribution);
+            full.updateSunLight(lightDistribution);
+
+            for (int i = 0; i < width; ++i) {
+                for (int j = 0; j < HEIGHT; ++j) {
+                    assertEquals(full.getSunLight(i, j), incremental.getSunLight(i, j),
+                            "Turn " + turn + ", cell " + i + ", " + j);
+                }
+            }
+        }
+    }
+
+    private static CellGrid createGrid(int width, boolean incrementalLighting, int lightStrips) {
+        CellGrid grid = new CellGrid(width, HEIGHT, 1, 16);
+        grid.setIncrementalLighting(incrementalLighting);
+        grid.setLightStrips(lightStrips);
+        for (int i = 0; i < width / 3; ++i) {
+            grid.addCellObject(new LightSource(500), i, HEIGHT - 1);
+        }
+        return grid;
+    }
+
+    private static void change(CellGrid grid, int x, int y, int absorption) {
+        Cell cell = grid.getCell(x, y);
+        CellObject object = cell.getObject();
+        if (object == null) {
+            grid.addCellObject(new LightingTest(absorption), cell);
+        } else if (object instanceof LightingTest) {
+            if (absorption < 10) {
+                grid.removeCellObject(object);
+            } else {
+                ((LightingTest) object).setLightAbsorption(absorption);
+                grid.markDirty(cell);
+            }
+        }
+    }
+}
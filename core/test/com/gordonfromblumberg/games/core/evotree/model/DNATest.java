@@ -0,0 +1,73 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.common.world.GameWorldSnapshotTest;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DNATest {
+
+    @ParameterizedTest
+    @CsvSource({"0, 32", "0, 64", "0.02, 32", "0.3, 64", "1, 32", "1, 64"})
+    void offspringGeneIsGeneOfSeedGenome(String mutationChance, String sproutGenesCount) {
+        final ConfigManager config = GameWorldSnapshotTest.createConfig();
+        config.setString("dna.mutationChance", mutationChance);
+        // with 64 sprout genes the special gene takes the second word of the crossing mask
+        config.setString("dna.sproutGenesCount", sproutGenesCount);
+        final WorldContext context = new WorldContext(config);
+        final Random random = new Random(7);
+        final DNA parent1 = new DNA(context);
+        final DNA parent2 = new DNA(context);
+        final DNA emptyParent = new DNA(context);
+        final byte[] values = new byte[Gene.VALUE_COUNT];
+        final byte[][] expected = new byte[context.genesCount][Gene.VALUE_COUNT];
+
+        for (int i = 0; i < 200; ++i) {
+            parent1.setRandom(new RandomGen(random.nextLong()));
+            parent2.setRandom(new RandomGen(random.nextLong()));
+            final long dnaSeed = random.nextLong();
+            final DNA second;
+            switch (i % 3) {
+                case 0: second = parent2; break;
+                case 1: second = emptyParent; break;
+                default: second = null; break;
+            }
+
+            final Seed seed = new Seed(null, context);
+            seed.setParents(parent1, second, dnaSeed);
+            final RandomGen dnaRandom = new RandomGen();
+            for (int gene = 0; gene < context.genesCount; ++gene) {
+                dnaRandom.reseed(dnaSeed);
+                DNA.getOffspringGene(parent1, second != null ? second : emptyParent, dnaRandom, gene, values);
+                System.arraycopy(values, 0, expected[gene], 0, Gene.VALUE_COUNT);
+            }
+
+            final DNA dna = seed.getDna();
+            int mutated = 0;
+            for (int gene = 0; gene < context.genesCount; ++gene) {
+                boolean fromFirst = true, fromSecond = second == parent2;
+                for (int v = 0; v < Gene.VALUE_COUNT; ++v) {
+                    assertEquals(expected[gene][v], dna.getValue(gene, v),
+                            "Genome " + i + ", gene " + gene + ", value " + v);
+                    fromFirst &= dna.getValue(gene, v) == parent1.getValue(gene, v);
+                    fromSecond &= dna.getValue(gene, v) == parent2.getValue(gene, v);
+                }
+                if (!fromFirst && !fromSecond) ++mutated;
+            }
+            if ("0".equals(mutationChance)) {
+                assertEquals(0, mutated);
+            } else if ("1".equals(mutationChance)) {
+                assertTrue(mutated > 0);
+            }
+            seed.reset();
+        }
+        parent1.reset();
+        parent2.reset();
+        assertEquals(0, context.arena.size());
+    }
+}
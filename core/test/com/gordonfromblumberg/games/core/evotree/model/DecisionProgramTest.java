@@ -0,0 +1,219 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntSet;
+import com.gordonfromblumberg.games.core.common.log.LogLevel;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.common.world.GameWorld;
+import com.gordonfromblumberg.games.core.common.world.GameWorldParams;
+import com.gordonfromblumberg.games.core.common.world.GameWorldSnapshotTest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DecisionProgramTest {
+    // targets of the actions are mostly these genes, so chains and cycles are frequent
+    private static final int HOT_GENES = 6;
+
+    @BeforeAll
+    static void setUp() {
+        // log entries need the config of the application
+        LogManager.setLevel(LogLevel.FATAL);
+    }
+
+    @Test
+    void programDecidesAsInterpreter() {
+        final GameWorldParams params = new GameWorldParams();
+        final ConfigManager config = GameWorldSnapshotTest.createConfig();
+        params.load(config);
+        params.setSeed(11);
+        final GameWorld world = new GameWorld(params, config);
+        world.initialize();
+        for (int i = 0; i < 300; ++i) {
+            world.nextTurn();
+        }
+        final CellGrid grid = world.getGrid();
+        final Array<TreePart> parts = new Array<>();
+        for (int x = 0; x < grid.getWidth(); ++x) {
+            for (int y = 0; y < grid.getHeight(); ++y) {
+                CellObject object = grid.getObject(x, y);
+                if (object instanceof TreePart && ((TreePart) object).getTree() != null) {
+                    parts.add((TreePart) object);
+                }
+            }
+        }
+        assertTrue(parts.size > 100);
+
+        final WorldContext context = world.getContext();
+        final int geneCount = context.sproutGenesCount;
+        final Random random = new Random(3);
+        final DNA dna = new DNA(context);
+        final DecisionProgram program = new DecisionProgram(geneCount);
+        int stops = 0, settles = 0, actions = 0;
+        for (int genome = 0; genome < 3000; ++genome) {
+            fillGenome(context, dna, random, geneCount);
+            final GeneticRules rules;
+            switch (genome % 3) {
+                case 0: rules = new GeneticRules(); break;
+                case 1: rules = new PartialRules(random, 0.3f); break;
+                default: rules = new PartialRules(random, 1f); break;
+            }
+            program.compile(dna, rules);
+
+            for (int i = 0; i < 20; ++i) {
+                TreePart part = parts.get(random.nextInt(parts.size));
+                int activeGene = part.activeGene;
+                part.activeGene = random.nextInt(4) > 0 ? random.nextInt(HOT_GENES) : random.nextInt(geneCount);
+                int expected = interpret(dna, rules, geneCount, grid, part);
+                assertEquals(expected, program.decide(grid, part), "Genome " + genome + " from gene " + part.activeGene);
+                if (expected < 0) ++actions;
+                else if (expected == part.activeGene) ++stops;
+                else ++settles;
+                part.activeGene = activeGene;
+            }
+        }
+        // every kind of the result is met
+        assertTrue(actions > 1000);
+        assertTrue(settles > 1000);
+        assertTrue(stops > 1000);
+        dna.reset();
+        world.dispose();
+    }
+
+    @Test
+    void cycleReturnsToStartGene() {
+        final WorldContext context = new WorldContext(GameWorldSnapshotTest.createConfig());
+        final int geneCount = context.sproutGenesCount;
+        final DNA dna = new DNA(context);
+        fillGenome(context, dna, new Random(1), geneCount);
+        // 0 -> 1 -> 2 -> 0 through genes with constant result
+        setGene(context, dna, 0, Condition.TRUE.value, Condition.FALSE.value, (byte) 1);
+        setGene(context, dna, 1, (byte) 20, Condition.TRUE.value, (byte) 2);
+        setGene(context, dna, 2, Condition.TRUE.value, Condition.TRUE.value, (byte) 0);
+        final DecisionProgram program = new DecisionProgram(geneCount);
+        program.compile(dna, new GeneticRules());
+
+        final TreePart part = new TreePart(null, context);
+        for (int start = 0; start < 3; ++start) {
+            part.activeGene = start;
+            assertEquals(start, interpret(dna, new GeneticRules(), geneCount, null, part));
+            assertEquals(start, program.decide(null, part));
+        }
+        dna.reset();
+    }
+
+    /**
+     * The loop of {@code TreePart.update} before the genes were compiled, with the visited genes cleared
+     * before each decision
+     */
+    private static int interpret(DNA dna, GeneticRules rules, int geneCount, CellGrid grid, TreePart part) {
+        final boolean[] visited = new boolean[geneCount];
+        int gene = part.activeGene;
+        while (!visited[gene]) {
+            visited[gene] = true;
+
+            int checkResult = 0;
+            byte condition1 = dna.getValue(gene, Gene.CONDITION1);
+            if (rules.isActiveCondition(condition1)
+                    && Condition.of(condition1).check(grid, part, dna.getValue(gene, Gene.PARAMETER1)))
+                checkResult |= 1;
+            byte condition2 = dna.getValue(gene, Gene.CONDITION2);
+            if (rules.isActiveCondition(condition2)
+                    && Condition.of(condition2).check(grid, part, dna.getValue(gene, Gene.PARAMETER2)))
+                checkResult |= 2;
+
+            if (checkResult == 0) {
+                return gene;
+            }
+            byte action = dna.getValue(gene, Gene.ACTION + checkResult - 1);
+            if (0 <= action && action < geneCount) {
+                gene = action;
+            } else if (rules.isActiveAction(action)) {
+                return action;
+            }
+        }
+        return part.activeGene;
+    }
+
+    private static void fillGenome(WorldContext context, DNA dna, Random random, int geneCount) {
+        dna.setRandom(new RandomGen(random.nextLong()));
+        for (int gene = 0; gene < geneCount; ++gene) {
+            setGene(context, dna, gene, randomCondition(random), randomCondition(random), randomAction(random, geneCount));
+            setValue(context, dna, gene, Gene.PARAMETER1, (byte) (random.nextInt(40) - 5));
+            setValue(context, dna, gene, Gene.PARAMETER2, (byte) (random.nextInt(40) - 5));
+            setValue(context, dna, gene, Gene.ACTION + 1, randomAction(random, geneCount));
+            setValue(context, dna, gene, Gene.ACTION + 2, randomAction(random, geneCount));
+        }
+    }
+
+    private static byte randomCondition(Random random) {
+        switch (random.nextInt(5)) {
+            case 0: return Condition.TRUE.value;
+            case 1: return Condition.FALSE.value;
+            // not a condition
+            case 2: return (byte) (random.nextBoolean() ? random.nextInt(Gene.MAX_VALUE) : -1 - Condition.ALL.length - random.nextInt(5));
+            default: return Condition.ALL[random.nextInt(Condition.ALL.length)].value;
+        }
+    }
+
+    private static byte randomAction(Random random, int geneCount) {
+        switch (random.nextInt(6)) {
+            case 0: return Action.ALL[random.nextInt(Action.ALL.length)].value;
+            // neither a gene nor an action
+            case 1: return (byte) (random.nextBoolean() ? geneCount + random.nextInt(10) : -1 - Action.ALL.length - random.nextInt(5));
+            case 2: return (byte) random.nextInt(geneCount);
+            default: return (byte) random.nextInt(HOT_GENES);
+        }
+    }
+
+    private static void setGene(WorldContext context, DNA dna, int gene, byte condition1, byte condition2, byte action) {
+        setValue(context, dna, gene, Gene.CONDITION1, condition1);
+        setValue(context, dna, gene, Gene.CONDITION2, condition2);
+        for (int i = 0; i < 3; ++i) {
+            setValue(context, dna, gene, Gene.ACTION + i, action);
+        }
+    }
+
+    private static void setValue(WorldContext context, DNA dna, int gene, int valueIndex, byte value) {
+        final GenomeArena arena = context.arena;
+        final int handle = dna.getHandle();
+        arena.getPage(handle)[arena.getOffset(handle) + gene * Gene.VALUE_COUNT + valueIndex] = value;
+    }
+
+    // some conditions and actions are disabled
+    private static class PartialRules extends GeneticRules {
+        private final IntSet disabled = new IntSet();
+
+        PartialRules(Random random, float disabledChance) {
+            for (Condition condition : Condition.ALL) {
+                if (random.nextFloat() < disabledChance) disabled.add(condition.value);
+            }
+            for (Action action : Action.ALL) {
+                if (random.nextFloat() < disabledChance) disabled.add(action.value + 100);
+            }
+        }
+
+        @Override
+        public boolean hasActiveConditions() {
+            for (Condition condition : Condition.ALL) {
+                if (!disabled.contains(condition.value)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isActiveCondition(byte value) {
+            return super.isActiveCondition(value) && !disabled.contains(value);
+        }
+
+        @Override
+        public boolean isActiveAction(byte value) {
+            return super.isActiveAction(value) && !disabled.contains(value + 100);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.badlogic.gdx.utils.IntArray;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GenomeArenaTest {
+    @Test
+    void pagesStayValidWhileArenaGrows() {
+        final int genomeSize = 13;
+        final GenomeArena arena = new GenomeArena(genomeSize);
+        final int first = arena.allocate();
+        final byte[] firstPage = arena.getPage(first);
+        final int firstOffset = arena.getOffset(first);
+        firstPage[firstOffset] = 42;
+
+        IntArray handles = new IntArray();
+        for (int i = 0; i < 5000; ++i) {
+            int handle = arena.allocate();
+            handles.add(handle);
+            arena.getPage(handle)[arena.getOffset(handle) + genomeSize - 1] = (byte) i;
+        }
+        assertSame(firstPage, arena.getPage(first));
+        assertEquals(42, firstPage[firstOffset]);
+        assertEquals(5001, arena.size());
+        assertTrue(arena.capacity() >= 5001);
+        for (int i = 0; i < handles.size; ++i) {
+            int handle = handles.get(i);
+            assertEquals((byte) i, arena.getPage(handle)[arena.getOffset(handle) + genomeSize - 1]);
+        }
+    }
+
+    @Test
+    void freedHandlesAreReused() {
+        final GenomeArena arena = new GenomeArena(8);
+        int a = arena.allocate();
+        int b = arena.allocate();
+        assertNotEquals(a, b);
+        arena.release(a);
+        assertEquals(1, arena.size());
+        assertEquals(a, arena.allocate());
+        assertEquals(2, arena.size());
+    }
+
+    @Test
+    void sharedGenomeIsFreedByLastRelease() {
+        final GenomeArena arena = new GenomeArena(8);
+        int a = arena.allocate();
+        assertEquals(1, arena.getRefCount(a));
+        arena.retain(a);
+        arena.retain(a);
+        assertEquals(3, arena.getRefCount(a));
+        arena.release(a);
+        arena.release(a);
+        assertEquals(1, arena.size());
+        assertNotEquals(a, arena.allocate());
+        arena.release(a);
+        assertEquals(1, arena.size());
+        assertEquals(a, arena.allocate());
+        assertEquals(1, arena.getRefCount(a));
+    }
+}
@@ -0,0 +1,176 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectSet;
+import com.gordonfromblumberg.games.core.common.log.LogLevel;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.common.world.GameWorld;
+import com.gordonfromblumberg.games.core.common.world.GameWorldParams;
+import com.gordonfromblumberg.games.core.common.world.GameWorldSnapshotTest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PollenSweepTest {
+    private int wrappedReaches;
+    private int reachesAboveGrid;
+    private int secondTries;
+
+    @BeforeAll
+    static void setUp() {
+        // log entries need the config of the application
+        LogManager.setLevel(LogLevel.FATAL);
+    }
+
+    @Test
+    void sweepPollinatesAsBruteForce() {
+        final GameWorldParams params = new GameWorldParams();
+        final ConfigManager config = GameWorldSnapshotTest.createConfig();
+        params.load(config);
+        params.setSeed(13);
+        final GameWorld world = new GameWorld(params, config);
+        world.initialize();
+        for (int i = 0; i < 300; ++i) {
+            world.nextTurn();
+        }
+        final CellGrid grid = world.getGrid();
+        final Array<TreePart> shoots = new Array<>();
+        final ObjectSet<Tree> treeSet = new ObjectSet<>();
+        for (int x = 0; x < grid.getWidth(); ++x) {
+            for (int y = 0; y < grid.getHeight(); ++y) {
+                CellObject object = grid.getObject(x, y);
+                if (object instanceof TreePart && ((TreePart) object).getTree() != null) {
+                    TreePart part = (TreePart) object;
+                    treeSet.add(part.getTree());
+                    if (part.getType() == TreePartType.SHOOT) shoots.add(part);
+                }
+            }
+        }
+        final Array<Tree> trees = new Array<>();
+        for (Tree tree : treeSet) trees.add(tree);
+        trees.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        assertTrue(trees.size > 5);
+        assertTrue(shoots.size > 20);
+
+        // a single cone pollinates every shoot it reaches
+        final ConfigManager certainConfig = GameWorldSnapshotTest.createConfig();
+        certainConfig.setString("tree.pollinateChance", "1");
+        final WorldContext certainContext = new WorldContext(certainConfig);
+        final PollenSweep certain = new PollenSweep(certainContext);
+        final PollenSweep sweep = new PollenSweep(world.getContext());
+        final float pollinateChance = world.getContext().pollinateChance;
+
+        final Random random = new Random(17);
+        final Array<Tree> pollinators = new Array<>();
+        final Array<Cell> cones = new Array<>();
+        final Tree[] expected = new Tree[shoots.size];
+        for (int round = 0; round < 400; ++round) {
+            final boolean single = round % 2 == 0;
+            final long turnSeed = random.nextLong();
+            for (TreePart shoot : shoots) {
+                shoot.buffer.reset();
+                shoot.isBufferFilled = false;
+            }
+            // a few shoots are pollinated already
+            for (int i = 0; i < 3; ++i) {
+                shoots.get(random.nextInt(shoots.size)).isBufferFilled = true;
+            }
+
+            pollinators.clear();
+            for (int i = single ? 1 : 1 + random.nextInt(8); i > 0; --i) {
+                Tree tree = trees.get(random.nextInt(trees.size));
+                if (!pollinators.contains(tree, true)) pollinators.add(tree);
+            }
+            cones.clear();
+            for (Tree tree : pollinators) {
+                tree.pollenRadius = random.nextInt(5) > 0 ? random.nextInt(14) : 40 + random.nextInt(150);
+                tree.pollenTop = randomApex(grid, shoots, random);
+                tree.pollenLeft = single || random.nextBoolean() ? null : randomApex(grid, shoots, random);
+                tree.pollenRight = single || random.nextBoolean() ? null : randomApex(grid, shoots, random);
+                cones.add(tree.pollenTop, tree.pollenLeft, tree.pollenRight);
+            }
+
+            final long pollenSeed = RandomGen.split(turnSeed, Long.MIN_VALUE);
+            for (int s = 0; s < shoots.size; ++s) {
+                TreePart shoot = shoots.get(s);
+                expected[s] = null;
+                if (shoot.isBufferFilled) continue;
+                long winnerKey = Long.MAX_VALUE;
+                for (int t = 0; t < pollinators.size; ++t) {
+                    Tree tree = pollinators.get(t);
+                    for (int index = 0; index < 3; ++index) {
+                        Cell apex = cones.get(t * 3 + index);
+                        long key = tree.getId() * 3L + index;
+                        if (apex == null || tree == shoot.getTree() || key > winnerKey) continue;
+                        int tries = countTries(grid, apex, tree.pollenRadius, shoot.getCell());
+                        long coneSeed = RandomGen.split(pollenSeed, key);
+                        long shootKey = 2L * grid.index(shoot.getCell().getX(), shoot.getCell().getY());
+                        for (int i = 0; i < tries; ++i) {
+                            if (single || isSuccess(RandomGen.split(coneSeed, shootKey + i), pollinateChance)) {
+                                expected[s] = tree;
+                                winnerKey = key;
+                                if (i == 1) ++secondTries;
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+
+            final PollenSweep pollenSweep = single ? certain : sweep;
+            for (Tree tree : pollinators) pollenSweep.add(tree);
+            pollenSweep.resolve(grid, turnSeed);
+            for (int s = 0; s < shoots.size; ++s) {
+                TreePart shoot = shoots.get(s);
+                if (expected[s] == null) {
+                    assertTrue(shoot.buffer.isEmpty(), "Round " + round + ", shoot " + s);
+                } else {
+                    assertTrue(shoot.isBufferFilled, "Round " + round + ", shoot " + s);
+                    assertEquals(expected[s].getDna().getHandle(), shoot.buffer.getHandle(),
+                            "Round " + round + ", shoot " + s);
+                }
+            }
+        }
+        // cones clipped by the edges, tops above the grid and second tries at the tops are met
+        assertTrue(wrappedReaches > 0);
+        assertTrue(reachesAboveGrid > 0);
+        assertTrue(secondTries > 0);
+        world.dispose();
+    }
+
+    // cells under the shoot or at random, some tops of the cones are above the grid
+    private static Cell randomApex(CellGrid grid, Array<TreePart> shoots, Random random) {
+        if (random.nextBoolean()) {
+            Cell cell = shoots.get(random.nextInt(shoots.size)).getCell();
+            return grid.getCell(cell.getX(), random.nextInt(cell.getY() + 1));
+        }
+        return grid.getCell(random.nextInt(grid.getWidth()), random.nextInt(grid.getHeight()));
+    }
+
+    /**
+     * Tries of the cone for the cell: each copy of the cone shifted by the width of the wrapped grid is checked,
+     * the cell right under the top inside the grid is tried twice
+     */
+    private int countTries(CellGrid grid, Cell apex, int radius, Cell cell) {
+        final int width = grid.getWidth();
+        final int top = apex.getY() + radius;
+        int tries = 0;
+        for (int shift = -(top / width + 1) * width; shift <= top + width; shift += width) {
+            int distance = Math.abs(cell.getX() + shift - apex.getX());
+            if (cell.getY() > top - distance) continue;
+            if (shift != 0) ++wrappedReaches;
+            if (top >= grid.getHeight()) ++reachesAboveGrid;
+            tries = Math.max(tries, distance == 0 && top < grid.getHeight() ? 2 : 1);
+        }
+        return tries;
+    }
+
+    private static boolean isSuccess(long bits, float chance) {
+        return (bits >>> 11) * 0x1.0p-53 < chance;
+    }
+}
@@ -0,0 +1,212 @@
+package com.gordonfromblumberg.games.core.evotree.model;
+
+import com.badlogic.gdx.utils.Array;
+import com.gordonfromblumberg.games.core.common.utils.BinaryInput;
+import com.gordonfromblumberg.games.core.common.utils.BinaryOutput;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.common.world.GameWorldSnapshotTest;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpeciesRegistryTest {
+    private final WorldContext context = new WorldContext(GameWorldSnapshotTest.createConfig());
+    private int nextTreeId = 1;
+
+    @Test
+    void equalGenomeIsShared() {
+        final SpeciesRegistry registry = new SpeciesRegistry(context);
+        final Tree first = createTree(1);
+        final Tree second = createTree(1);
+        final TreePart part = new TreePart(null, context);
+        part.buffer.set(second.dna);
+        second.treeParts.add(part);
+        final TreePart pollinated = new TreePart(null, context);
+        pollinated.buffer.set(createTree(2).dna);
+        pollinated.isBufferFilled = true;
+        second.treeParts.add(pollinated);
+        assertNotEquals(first.dna.getHandle(), second.dna.getHandle());
+        final int pollen = pollinated.buffer.getHandle();
+
+        registry.add(first, 10);
+        registry.add(second, 12);
+        final SpeciesRegistry.Species species = first.getSpecies();
+        assertSame(species, second.getSpecies());
+        assertEquals(2, species.getCount());
+        assertEquals(10, species.getFirstSeenTurn());
+        assertEquals(species.getDna().getHandle(), first.dna.getHandle());
+        assertEquals(species.getDna().getHandle(), second.dna.getHandle());
+        // the pollen buffer which is not filled holds the genome of the tree
+        assertEquals(species.getDna().getHandle(), part.buffer.getHandle());
+        assertEquals(pollen, pollinated.buffer.getHandle());
+        // the genome of the second tree is freed, the pollen of the other tree is kept
+        assertEquals(2, context.arena.size());
+        assertEquals(1, registry.getSpeciesCount());
+
+        registry.remove(first);
+        assertEquals(1, species.getCount());
+        registry.remove(second);
+        assertNull(second.getSpecies());
+        assertEquals(0, registry.getSpeciesCount());
+    }
+
+    @Test
+    void speciesIsRemovedFromMiddleOfChain() {
+        // all genomes have the same hash, so species are chained from the newest to the oldest one
+        final SpeciesRegistry registry = new SpeciesRegistry(context) {
+            @Override
+            long hash(DNA dna) {
+                return 0;
+            }
+        };
+        final Array<Tree> trees = new Array<>();
+        for (int genome = 0; genome < 8; ++genome) {
+            Tree tree = createTree(genome);
+            trees.add(tree);
+            registry.add(tree, genome);
+        }
+        assertEquals(8, registry.getSpeciesCount());
+
+        // middle species, the head and the tail of the chain
+        for (int genome : new int[] {3, 7, 0, 4}) {
+            registry.remove(trees.get(genome));
+        }
+        assertEquals(4, registry.getSpeciesCount());
+        for (int genome = 0; genome < 8; ++genome) {
+            Tree tree = createTree(genome);
+            registry.add(tree, 20);
+            SpeciesRegistry.Species species = tree.getSpecies();
+            if (trees.get(genome).getSpecies() != null) {
+                assertSame(trees.get(genome).getSpecies(), species, "Genome " + genome);
+                assertEquals(2, species.getCount());
+                assertEquals(genome, species.getFirstSeenTurn());
+            } else {
+                // the species is forgotten, its genome is new again
+                assertEquals(20, species.getFirstSeenTurn(), "Genome " + genome);
+                assertEquals(1, species.getCount());
+                assertTrue(species.getId() > 8);
+            }
+            assertEquals(species.getDna().getHandle(), tree.dna.getHandle());
+        }
+        assertEquals(8, registry.getSpeciesCount());
+    }
+
+    @Test
+    void topSpeciesAreOrderedByCountTurnAndId() {
+        final SpeciesRegistry registry = new SpeciesRegistry(context);
+        // genome, turn and number of trees
+        final int[][] species = {{0, 5, 2}, {1, 3, 2}, {2, 3, 2}, {3, 9, 3}, {4, 1, 1}, {5, 2, 2}};
+        for (int[] s : species) {
+            for (int i = 0; i < s[2]; ++i) {
+                registry.add(createTree(s[0]), s[1]);
+            }
+        }
+        final Array<SpeciesRegistry.Species> top = new Array<>();
+        registry.getTopSpecies(4, top);
+        assertEquals(4, top.size);
+        assertEquals(3, top.get(0).getCount());
+        // equal counts are ordered by the turn and then by the id
+        assertEquals(2, top.get(1).getFirstSeenTurn());
+        assertEquals(3, top.get(2).getFirstSeenTurn());
+        assertEquals(3, top.get(3).getFirstSeenTurn());
+        assertTrue(top.get(2).getId() < top.get(3).getId());
+
+        registry.getTopSpecies(10, top);
+        assertEquals(6, top.size);
+        assertEquals(5, top.get(4).getFirstSeenTurn());
+        assertEquals(1, top.get(5).getCount());
+        for (int i = 1; i < top.size; ++i) {
+            assertTrue(top.get(i - 1).isBefore(top.get(i)));
+        }
+
+        registry.getTopSpecies(0, top);
+        assertEquals(0, top.size);
+    }
+
+    @Test
+    void speciesAreRestoredByIndex() throws IOException {
+        final SpeciesRegistry registry = new SpeciesRegistry(context);
+        final Array<Tree> trees = new Array<>();
+        for (int i = 0; i < 20; ++i) {
+            Tree tree = createTree(i % 7);
+            trees.add(tree);
+            registry.add(tree, i);
+        }
+        // removal of a species moves the last species to its index
+        for (int i = trees.size - 1; i >= 0; --i) {
+            if (i % 7 == 1 || i % 7 == 4 || i == 16) {
+                registry.remove(trees.removeIndex(i));
+            }
+        }
+        assertEquals(5, registry.getSpeciesCount());
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BinaryOutput out = new BinaryOutput(Channels.newChannel(bytes));
+        final GenomeTable written = new GenomeTable(context);
+        registry.write(out, written);
+        for (Tree tree : trees) {
+            out.writeVarInt(tree.getSpecies().getIndex());
+        }
+        out.flush();
+        written.release();
+
+        final SpeciesRegistry loaded = new SpeciesRegistry(context);
+        final BinaryInput in = new BinaryInput(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        final GenomeTable read = new GenomeTable(context);
+        loaded.read(in, read);
+        read.release();
+        assertEquals(registry.getSpeciesCount(), loaded.getSpeciesCount());
+        final Array<Tree> restoredTrees = new Array<>();
+        for (Tree tree : trees) {
+            Tree restored = new Tree(null, context);
+            restored.setId(tree.getId());
+            loaded.restore(restored, in.readVarInt());
+            restoredTrees.add(restored);
+            SpeciesRegistry.Species expected = tree.getSpecies();
+            SpeciesRegistry.Species actual = restored.getSpecies();
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getIndex(), actual.getIndex());
+            assertEquals(expected.getFirstSeenTurn(), actual.getFirstSeenTurn());
+            assertEquals(expected.getColor(), actual.getColor());
+            assertTrue(expected.getDna().contentEquals(actual.getDna()));
+        }
+
+        final Array<SpeciesRegistry.Species> expectedTop = new Array<>();
+        final Array<SpeciesRegistry.Species> actualTop = new Array<>();
+        registry.getTopSpecies(10, expectedTop);
+        loaded.getTopSpecies(10, actualTop);
+        assertEquals(5, actualTop.size);
+        for (int i = 0; i < expectedTop.size; ++i) {
+            assertEquals(expectedTop.get(i).getId(), actualTop.get(i).getId());
+            assertEquals(expectedTop.get(i).getCount(), actualTop.get(i).getCount());
+        }
+
+        // read genomes are interned, new species continue the ids
+        final Tree same = createTree(2);
+        loaded.add(same, 30);
+        assertSame(restoredTrees.get(1).getSpecies(), same.getSpecies());
+        assertEquals(same.getSpecies().getDna().getHandle(), same.dna.getHandle());
+        final Tree other = createTree(100);
+        loaded.add(other, 30);
+        final Tree otherSaved = createTree(100);
+        registry.add(otherSaved, 30);
+        assertEquals(6, loaded.getSpeciesCount());
+        assertEquals(otherSaved.getSpecies().getId(), other.getSpecies().getId());
+
+        final Tree unknown = new Tree(null, context);
+        assertThrows(IOException.class, () -> loaded.restore(unknown, loaded.getSpeciesCount()));
+    }
+
+    private Tree createTree(long genome) {
+        final Tree tree = new Tree(null, context);
+        tree.setId(nextTreeId++);
+        tree.dna.setRandom(new RandomGen(genome));
+        tree.init(new GeneticRules());
+        return tree;
+    }
+}
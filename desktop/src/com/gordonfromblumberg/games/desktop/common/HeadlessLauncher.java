@@ -0,0 +1,269 @@
+package com.gordonfromblumberg.games.desktop.common;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglFiles;
+import com.badlogic.gdx.utils.Array;
+import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
+import com.gordonfromblumberg.games.core.common.log.LogLevel;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.utils.RandomGen;
+import com.gordonfromblumberg.games.core.common.world.GameWorld;
+import com.gordonfromblumberg.games.core.common.world.GameWorldParams;
+import com.gordonfromblumberg.games.core.common.world.WorldJournal;
+import com.gordonfromblumberg.games.core.evotree.model.ChangeLightByTime;
+import com.gordonfromblumberg.games.core.evotree.model.ChangeLightByX;
+import com.gordonfromblumberg.games.core.evotree.model.SpeciesRegistry;
+import com.gordonfromblumberg.games.desktop.common.factory.DesktopFactory;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runs simulation without window and render loop as fast as possible.
+ * Usage: HeadlessLauncher [-config=file.properties] [-turns=N] [-seed=N] [-decorators=A,B]
+ * [-reportEvery=N] [-logLevel=LEVEL] [-journal=file] [-keyframeEvery=N] [-load=file] [-save=file]
+ * <p>With {@code -journal} every turn is recorded by {@link WorldJournal} with a keyframe every N turns.
+ * <p>With {@code -load} the world saved by {@code -save} or the game continues, it keeps its own params and config.
+ * {@code -save} writes the world when the run ends.
+ */
+public class HeadlessLauncher {
+	private static final int TOP_SPECIES = 3;
+	private static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+
+	public static void main(String[] args) {
+		String configPath = null;
+		String decorators = null;
+		long maxTurns = Long.MAX_VALUE;
+		long reportEvery = 0;
+		Long seed = null;
+		LogLevel logLevel = LogLevel.WARN;
+		String journalPath = null;
+		int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+		String loadPath = null;
+		String savePath = null;
+
+		for (String arg : args) {
+			String configPrefix = "-config=";
+			if (arg.startsWith(configPrefix)) {
+				configPath = arg.substring(configPrefix.length());
+				continue;
+			}
+			String turnsPrefix = "-turns=";
+			if (arg.startsWith(turnsPrefix)) {
+				maxTurns = Long.parseLong(arg.substring(turnsPrefix.length()));
+				continue;
+			}
+			String seedPrefix = "-seed=";
+			if (arg.startsWith(seedPrefix)) {
+				seed = Long.parseLong(arg.substring(seedPrefix.length()));
+				continue;
+			}
+			String decoratorsPrefix = "-decorators=";
+			if (arg.startsWith(decoratorsPrefix)) {
+				decorators = arg.substring(decoratorsPrefix.length());
+				continue;
+			}
+			String reportPrefix = "-reportEvery=";
+			if (arg.startsWith(reportPrefix)) {
+				reportEvery = Long.parseLong(arg.substring(reportPrefix.length()));
+				continue;
+			}
+			String logLevelPrefix = "-logLevel=";
+			if (arg.startsWith(logLevelPrefix)) {
+				logLevel = LogLevel.valueOf(arg.substring(logLevelPrefix.length()).toUpperCase());
+				continue;
+			}
+			String journalPrefix = "-journal=";
+			if (arg.startsWith(journalPrefix)) {
+				journalPath = arg.substring(journalPrefix.length());
+				continue;
+			}
+			String keyframePrefix = "-keyframeEvery=";
+			if (arg.startsWith(keyframePrefix)) {
+				keyframeInterval = Integer.parseInt(arg.substring(keyframePrefix.length()));
+				continue;
+			}
+			String loadPrefix = "-load=";
+			if (arg.startsWith(loadPrefix)) {
+				loadPath = arg.substring(loadPrefix.length());
+				continue;
+			}
+			String savePrefix = "-save=";
+			if (arg.startsWith(savePrefix)) {
+				savePath = arg.substring(savePrefix.length());
+				continue;
+			}
+			System.err.println("Unknown argument " + arg);
+		}
+
+		// only file access is required from libGDX, internal files are resolved from work dir and classpath
+		Gdx.files = new LwjglFiles();
+		DesktopFactory.init();
+		ConfigManager configManager = AbstractFactory.getInstance().configManager();
+		configManager.init();
+		if (configPath != null) {
+			loadProperties(configPath, configManager);
+		}
+
+		LogManager.setLevel(logLevel);
+		LogManager.init();
+
+		if (seed == null) {
+			seed = configManager.contains("seed")
+					? configManager.getLong("seed")
+					: new RandomGen().nextLong();
+		}
+		RandomGen.setSeed(seed);
+
+		ChangeLightByTime.register();
+		ChangeLightByX.register();
+		GameWorldParams params = new GameWorldParams();
+		params.load(configManager);
+		params.setSeed(seed);
+		if (decorators != null) {
+			for (String decorator : decorators.split(",")) {
+				params.addDecorator(decorator.trim());
+			}
+		}
+
+		GameWorld world;
+		if (loadPath != null) {
+			world = loadWorld(loadPath);
+			System.out.println("Headless run: world is loaded from " + loadPath + " at turn " + world.getTurn()
+					+ ", turn limit = " + (maxTurns == Long.MAX_VALUE ? "none" : maxTurns));
+		} else {
+			System.out.println("Headless run: world " + params.getWidth() + "x" + params.getHeight()
+					+ ", seed = " + seed + ", turn limit = " + (maxTurns == Long.MAX_VALUE ? "none" : maxTurns));
+			world = new GameWorld(params);
+			world.initialize();
+		}
+		WorldJournal journal = null;
+		if (journalPath != null) {
+			journal = openJournal(journalPath, keyframeInterval);
+			record(journal, world);
+		}
+
+		final long start = System.nanoTime();
+		final int startTurn = world.getTurn();
+		long lastReport = start;
+		int lastReportTurn = startTurn;
+		while (world.isRunning() && world.getTurn() < maxTurns) {
+			world.nextTurn();
+			if (journal != null) {
+				record(journal, world);
+			}
+
+			if (reportEvery > 0 && world.getTurn() % reportEvery == 0) {
+				long now = System.nanoTime();
+				report(world, world.getTurn() - lastReportTurn, now - lastReport, "Turn " + world.getTurn());
+				lastReport = now;
+				lastReportTurn = world.getTurn();
+			}
+		}
+		final long wallTime = System.nanoTime() - start;
+		if (journal != null) {
+			closeJournal(journal, journalPath);
+		}
+		if (savePath != null) {
+			saveWorld(world, savePath);
+		}
+
+		report(world, world.getTurn() - startTurn, wallTime, world.isRunning() ? "Turn limit reached" : "Extinction");
+		System.out.println("Max seeds " + world.getMaxSeeds() + ", max trees " + world.getMaxTrees()
+				+ ", max generation " + world.getMaxGeneration());
+		reportSpecies(world.getSpeciesRegistry());
+		StringBuilder pools = new StringBuilder("Pools (live/free): ");
+		world.getPools().appendStats(pools);
+		System.out.println(pools);
+
+		world.dispose();
+		LogManager.close();
+	}
+
+	private static GameWorld loadWorld(String path) {
+		try (FileChannel channel = FileChannel.open(Paths.get(path))) {
+			return GameWorld.load(channel);
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't load world " + path, e);
+		}
+	}
+
+	private static void saveWorld(GameWorld world, String path) {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			world.save(channel);
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't save world " + path, e);
+		}
+		System.out.println("World is saved to " + path);
+	}
+
+	private static WorldJournal openJournal(String path, int keyframeInterval) {
+		try {
+			FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			return new WorldJournal(channel, keyframeInterval);
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't open journal " + path, e);
+		}
+	}
+
+	private static void record(WorldJournal journal, GameWorld world) {
+		try {
+			journal.record(world);
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't record turn " + world.getTurn(), e);
+		}
+	}
+
+	private static void closeJournal(WorldJournal journal, String path) {
+		try {
+			journal.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't write journal " + path, e);
+		}
+		System.out.println("Journal is written to " + path);
+	}
+
+	private static void report(GameWorld world, int turns, long nanos, String title) {
+		double seconds = nanos / 1_000_000_000d;
+		System.out.println(String.format("%s: %d turns in %.3f s (%.1f turns/sec), trees %d, seeds %d",
+				title, turns, seconds, seconds > 0 ? turns / seconds : 0, world.getTreeCount(), world.getSeedCount()));
+	}
+
+	private static void reportSpecies(SpeciesRegistry registry) {
+		Array<SpeciesRegistry.Species> top = new Array<>();
+		registry.getTopSpecies(TOP_SPECIES, top);
+		StringBuilder sb = new StringBuilder("Species ").append(registry.getSpeciesCount());
+		for (int i = 0; i < top.size; ++i) {
+			SpeciesRegistry.Species species = top.get(i);
+			sb.append(i == 0 ? ", top: " : ", ").append('#').append(species.getId())
+					.append(" (").append(species.getCount()).append(" trees since turn ")
+					.append(species.getFirstSeenTurn()).append(')');
+		}
+		System.out.println(sb);
+	}
+
+	static void loadProperties(String path, ConfigManager configManager) {
+		for (Map.Entry<Object, Object> entry : readProperties(path).entrySet()) {
+			configManager.setString(((String) entry.getKey()).trim(), ((String) entry.getValue()).trim());
+		}
+	}
+
+	static Properties readProperties(String path) {
+		Properties properties = new Properties();
+		try (InputStreamReader reader = new InputStreamReader(new FileInputStream(path), "UTF-8")) {
+			properties.load(reader);
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't load config from " + path, e);
+		}
+		return properties;
+	}
+}
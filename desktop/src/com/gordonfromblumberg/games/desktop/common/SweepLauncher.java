@@ -0,0 +1,305 @@
+package com.gordonfromblumberg.games.desktop.common;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglFiles;
+import com.badlogic.gdx.utils.Array;
+import com.gordonfromblumberg.games.core.common.factory.AbstractFactory;
+import com.gordonfromblumberg.games.core.common.log.LogLevel;
+import com.gordonfromblumberg.games.core.common.log.LogManager;
+import com.gordonfromblumberg.games.core.common.utils.ConfigManager;
+import com.gordonfromblumberg.games.core.common.world.GameWorld;
+import com.gordonfromblumberg.games.core.common.world.GameWorldParams;
+import com.gordonfromblumberg.games.core.common.world.ParameterSweep;
+import com.gordonfromblumberg.games.core.evotree.model.ChangeLightByTime;
+import com.gordonfromblumberg.games.core.evotree.model.ChangeLightByX;
+import com.gordonfromblumberg.games.desktop.common.factory.DesktopFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs worlds of a parameter sweep on a thread pool without window and writes one CSV row per run as soon as it finishes.
+ * Usage: SweepLauncher -sweep=file.properties [-config=file.properties] [-output=file.csv] [-threads=N] [-logLevel=LEVEL]
+ * <p>Properties of the sweep file:
+ * <ul>
+ *     <li>{@code vary.<property> = a,b,c} - values of a config property to sweep, e.g. {@code vary.world.sunLight = 40,50,60}</li>
+ *     <li>{@code sweep.seeds} - seeds of worlds, e.g. {@code 1-20,42}, every combination of values is run with every seed</li>
+ *     <li>{@code sweep.turns} - turn limit of a run</li>
+ *     <li>{@code sweep.maxTreelessTurns} - a run is stopped if there are no trees for so many turns, 0 to disable</li>
+ *     <li>{@code sweep.decorators} - comma-separated light distribution decorators</li>
+ *     <li>{@code sweep.threads}, {@code sweep.output} - defaults for the arguments</li>
+ * </ul>
+ * Other properties override the config of all runs. Sweep properties may be varied too, e.g. {@code vary.sweep.turns}.
+ * A run also stops on extinction. Runs already share the pool, so parallel lighting and update
+ * are turned off unless they are varied.
+ */
+public class SweepLauncher {
+	private static final String VARY_PREFIX = "vary.";
+	private static final int DEFAULT_TURNS = 10000;
+	private static final String[] PARALLEL_KEYS = {"world.parallelLighting", "world.parallelUpdate"};
+
+	public static void main(String[] args) {
+		String sweepPath = null;
+		String configPath = null;
+		String output = null;
+		Integer threads = null;
+		LogLevel logLevel = LogLevel.WARN;
+
+		for (String arg : args) {
+			String sweepPrefix = "-sweep=";
+			if (arg.startsWith(sweepPrefix)) {
+				sweepPath = arg.substring(sweepPrefix.length());
+				continue;
+			}
+			String configPrefix = "-config=";
+			if (arg.startsWith(configPrefix)) {
+				configPath = arg.substring(configPrefix.length());
+				continue;
+			}
+			String outputPrefix = "-output=";
+			if (arg.startsWith(outputPrefix)) {
+				output = arg.substring(outputPrefix.length());
+				continue;
+			}
+			String threadsPrefix = "-threads=";
+			if (arg.startsWith(threadsPrefix)) {
+				threads = Integer.parseInt(arg.substring(threadsPrefix.length()));
+				continue;
+			}
+			String logLevelPrefix = "-logLevel=";
+			if (arg.startsWith(logLevelPrefix)) {
+				logLevel = LogLevel.valueOf(arg.substring(logLevelPrefix.length()).toUpperCase());
+				continue;
+			}
+			System.err.println("Unknown argument " + arg);
+		}
+		if (sweepPath == null) {
+			System.err.println("Sweep definition is not set, use -sweep=file.properties");
+			return;
+		}
+
+		Gdx.files = new LwjglFiles();
+		DesktopFactory.init();
+		ConfigManager baseConfig = AbstractFactory.getInstance().configManager();
+		baseConfig.init();
+		if (configPath != null) {
+			HeadlessLauncher.loadProperties(configPath, baseConfig);
+		}
+		ParameterSweep sweep = new ParameterSweep();
+		Properties definition = HeadlessLauncher.readProperties(sweepPath);
+		// sorted, so columns do not depend on the hash order of the properties
+		for (String key : new TreeSet<>(definition.stringPropertyNames())) {
+			String value = definition.getProperty(key).trim();
+			if (key.startsWith(VARY_PREFIX)) {
+				sweep.vary(key.substring(VARY_PREFIX.length()).trim(), value);
+			} else if (key.equals("sweep.seeds")) {
+				sweep.addSeeds(value);
+			} else {
+				baseConfig.setString(key.trim(), value);
+			}
+		}
+		if (sweep.getRunCount() == 0) {
+			System.err.println("No seeds to run, set sweep.seeds");
+			return;
+		}
+		if (output == null) {
+			output = baseConfig.getString("sweep.output", "sweep.csv");
+		}
+		if (threads == null) {
+			threads = baseConfig.contains("sweep.threads")
+					? baseConfig.getInteger("sweep.threads")
+					: Runtime.getRuntime().availableProcessors();
+		}
+		if (threads < 1) {
+			System.err.println("Number of threads should be at least 1, got " + threads);
+			return;
+		}
+		// worlds would fan out to the common pool on top of the sweep threads
+		for (String key : PARALLEL_KEYS) {
+			if (!sweep.getKeys().contains(key, false)) {
+				baseConfig.setString(key, "false");
+			}
+		}
+
+		LogManager.setLevel(logLevel);
+		LogManager.init();
+		ChangeLightByTime.register();
+		ChangeLightByX.register();
+
+		final int runCount = sweep.getRunCount();
+		System.out.println("Sweep: " + runCount + " runs of " + sweep.getKeys() + " on " + threads + " threads to " + output);
+		final long start = System.nanoTime();
+		try (CsvWriter csv = new CsvWriter(output)) {
+			csv.writeHeader(sweep.getKeys());
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			for (int i = 0; i < runCount; ++i) {
+				final int run = i;
+				// the base config is copied here, so it is not read by several threads
+				final ConfigManager config = new ConfigManager(baseConfig);
+				sweep.apply(run, config);
+				executor.execute(() -> {
+					RunResult result = runWorld(config, sweep.getSeed(run));
+					csv.writeRow(run, sweep, result);
+					System.out.println(String.format("Run %d/%d, seed %d: %s after %d turns, trees %d, seeds %d, %.3f s",
+							run + 1, runCount, sweep.getSeed(run), result.stop, result.turns,
+							result.trees, result.seeds, result.seconds));
+				});
+			}
+			executor.shutdown();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't write results to " + output, e);
+		}
+		System.out.println(String.format("Sweep finished in %.3f s", (System.nanoTime() - start) / 1_000_000_000d));
+		LogManager.close();
+	}
+
+	private static RunResult runWorld(ConfigManager config, long seed) {
+		final RunResult result = new RunResult();
+		final long start = System.nanoTime();
+		GameWorld world = null;
+		try {
+			GameWorldParams params = new GameWorldParams();
+			params.load(config);
+			params.setSeed(seed);
+			String decorators = config.getString("sweep.decorators", "");
+			for (String decorator : decorators.split(",")) {
+				if (!decorator.trim().isEmpty()) {
+					params.addDecorator(decorator.trim());
+				}
+			}
+			final int maxTurns = config.contains("sweep.turns") ? config.getInteger("sweep.turns") : DEFAULT_TURNS;
+			final int maxTreelessTurns = config.getInteger("sweep.maxTreelessTurns");
+
+			world = new GameWorld(params, config);
+			world.initialize();
+			int lastTreeTurn = 0;
+			result.stop = "turns";
+			while (world.getTurn() < maxTurns) {
+				world.nextTurn();
+				if (!world.isRunning()) {
+					result.stop = "extinction";
+					break;
+				}
+				if (world.getTreeCount() > 0) {
+					lastTreeTurn = world.getTurn();
+				} else if (maxTreelessTurns > 0 && world.getTurn() - lastTreeTurn >= maxTreelessTurns) {
+					result.stop = "no trees";
+					break;
+				}
+			}
+			result.turns = world.getTurn();
+			result.trees = world.getTreeCount();
+			result.seeds = world.getSeedCount();
+			result.maxTrees = world.getMaxTrees();
+			result.maxSeeds = world.getMaxSeeds();
+			result.maxGeneration = world.getMaxGeneration();
+			result.species = world.getSpeciesRegistry().getSpeciesCount();
+		} catch (Throwable e) {
+			// errors are reported too, otherwise the run would have no row
+			System.err.println("Run with seed " + seed + " failed");
+			e.printStackTrace();
+			result.stop = "error: " + e;
+			if (world != null) {
+				result.turns = world.getTurn();
+			}
+		} finally {
+			if (world != null) {
+				world.dispose();
+			}
+		}
+		result.seconds = (System.nanoTime() - start) / 1_000_000_000d;
+		return result;
+	}
+
+	private static class RunResult {
+		String stop;
+		int turns;
+		int trees;
+		int seeds;
+		int maxTrees;
+		int maxSeeds;
+		int maxGeneration;
+		int species;
+		double seconds;
+	}
+
+	/**
+	 * Writes rows in the order runs finish, each row is flushed so results of a long sweep may be watched
+	 */
+	private static class CsvWriter implements AutoCloseable {
+		private final Writer writer;
+		private final StringBuilder sb = new StringBuilder();
+
+		CsvWriter(String path) throws IOException {
+			writer = new OutputStreamWriter(new FileOutputStream(path), "UTF-8");
+		}
+
+		synchronized void writeHeader(Array<String> keys) {
+			sb.setLength(0);
+			sb.append("run,seed");
+			for (String key : keys) {
+				sb.append(',');
+				appendValue(key);
+			}
+			sb.append(",stop,turns,trees,seeds,maxTrees,maxSeeds,maxGeneration,species,seconds");
+			write();
+		}
+
+		synchronized void writeRow(int run, ParameterSweep sweep, RunResult result) {
+			sb.setLength(0);
+			sb.append(run).append(',').append(sweep.getSeed(run));
+			for (int i = 0; i < sweep.getKeys().size; ++i) {
+				sb.append(',');
+				appendValue(sweep.getValue(run, i));
+			}
+			sb.append(',');
+			appendValue(result.stop);
+			sb.append(',').append(result.turns)
+					.append(',').append(result.trees)
+					.append(',').append(result.seeds)
+					.append(',').append(result.maxTrees)
+					.append(',').append(result.maxSeeds)
+					.append(',').append(result.maxGeneration)
+					.append(',').append(result.species)
+					.append(',').append(String.format(Locale.ROOT, "%.3f", result.seconds));
+			write();
+		}
+
+		private void appendValue(String value) {
+			if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+				sb.append(value);
+				return;
+			}
+			sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+		}
+
+		private void write() {
+			sb.append('\n');
+			try {
+				writer.write(sb.toString());
+				writer.flush();
+			} catch (IOException e) {
+				throw new RuntimeException("Couldn't write results", e);
+			}
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			writer.close();
+		}
+	}
+}